@@ -0,0 +1,77 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Measures the parsing of the messages a compiler wrote to its error stream. The messages hold only warnings, so
+ * that every line is classified, and are passed on to a log which discards them.
+ */
+@State(Scope.Benchmark)
+public class DiagnosticsBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    public int messageCount;
+
+    private Log log;
+    private byte[] err;
+
+    @Setup
+    public void createMessages() throws Exception {
+        log = new SystemStreamLog() {
+            @Override
+            public void info(CharSequence content) {
+            }
+
+            @Override
+            public void error(CharSequence content) {
+            }
+
+            @Override
+            public void debug(CharSequence content) {
+            }
+        };
+        ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        for (int i = 0; i < messageCount; i++) {
+            String message = i % 2 == 0
+                    ? "src/main/idl/file" + i + ".idl (line " + i + "): WARNING: Identifier collides with keyword.\n"
+                    : "    interface Identifier" + i + " {\n";
+            messages.write(message.getBytes("UTF-8"));
+        }
+        err = messages.toByteArray();
+    }
+
+    @Benchmark
+    public boolean hasErrors() throws Exception {
+        CompilerDiagnostics diagnostics = new CompilerDiagnostics(log);
+        diagnostics.getErr().write(err);
+        diagnostics.close();
+        return diagnostics.hasErrors();
+    }
+}
@@ -0,0 +1,43 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures a build in which no IDL file is stale, using the test doubles for the file system and compiler.
+ */
+@State(Scope.Benchmark)
+public class ExecuteBenchmark extends IDLJTestBase {
+
+    @Setup
+    public void setUpMojo() throws Exception {
+        setUp();
+        defineStaleSources();
+    }
+
+    @Benchmark
+    public void executeWithNoStaleSources() throws Exception {
+        mojo.execute();
+    }
+}
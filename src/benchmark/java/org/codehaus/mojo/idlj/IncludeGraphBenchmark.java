@@ -0,0 +1,79 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Set;
+
+/**
+ * Measures the construction of the include graph of a generated corpus, from scratch as in a first build, and the
+ * update of a complete graph when nothing has changed.
+ */
+@State(Scope.Benchmark)
+public class IncludeGraphBenchmark {
+
+    @Param({"10000", "50000"})
+    public int definitions;
+
+    private File root;
+    private File sourceDirectory;
+    private File[] includeDirs;
+    private File graphFile;
+
+    @Setup
+    public void createCorpus() throws Exception {
+        File target = new File("target");
+        target.mkdirs();
+        root = Files.createTempDirectory(target.toPath(), "includes").toFile();
+        sourceDirectory = new File(root, "idl");
+        includeDirs = new File[] {new File(root, "include")};
+        graphFile = new File(root, "includes.graph");
+        IdlCorpusGenerator.withDefinitions(definitions, definitions).sharedIncludes(50, 4).includesPerFile(5)
+                .generate(sourceDirectory, includeDirs[0]);
+
+        IncludeGraph graph = IncludeGraph.load(graphFile);
+        graph.update(sourceDirectory, includeDirs);
+        graph.save(graphFile);
+    }
+
+    @TearDown
+    public void deleteCorpus() throws Exception {
+        FileUtils.deleteDirectory(root);
+    }
+
+    @Benchmark
+    public Set<File> buildGraph() throws Exception {
+        return IncludeGraph.load(new File(root, "missing.graph")).update(sourceDirectory, includeDirs);
+    }
+
+    @Benchmark
+    public Set<File> updateUnchangedGraph() throws Exception {
+        return IncludeGraph.load(graphFile).update(sourceDirectory, includeDirs);
+    }
+}
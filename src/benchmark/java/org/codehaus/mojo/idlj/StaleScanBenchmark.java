@@ -0,0 +1,87 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Measures the scan of a source directory holding many IDL files: once selecting every file, as when the
+ * configuration has changed, and once selecting only stale files, when none of them has changed.
+ */
+@State(Scope.Benchmark)
+public class StaleScanBenchmark {
+
+    private static final int FILES_PER_DIRECTORY = 100;
+
+    @Param({"1000", "10000", "100000"})
+    public int fileCount;
+
+    private File root;
+    private File sourceDirectory;
+    private File targetDirectory;
+    private StalenessIndex index;
+    private Set<String> includes = Collections.singleton("**/*.idl");
+    private Set<String> excludes = Collections.emptySet();
+
+    @Setup
+    public void createSources() throws Exception {
+        File target = new File("target");
+        target.mkdirs();
+        root = Files.createTempDirectory(target.toPath(), "scan").toFile();
+        sourceDirectory = new File(root, "idl");
+        targetDirectory = new File(root, "generated");
+        index = StalenessIndex.open(new File(root, "staleness.index"));
+        for (int i = 0; i < fileCount; i++) {
+            File directory = new File(sourceDirectory, "module" + i / FILES_PER_DIRECTORY);
+            directory.mkdirs();
+            File file = new File(directory, "file" + i + ".idl");
+            FileUtils.fileWrite(file, "UTF-8", "interface I" + i + " {};\n");
+            index.record(file);
+        }
+    }
+
+    @TearDown
+    public void deleteSources() throws Exception {
+        index.close();
+        FileUtils.deleteDirectory(root);
+    }
+
+    @Benchmark
+    public Set<File> scanAllSources() throws Exception {
+        return new ParallelSourceScanner(includes, excludes).getIncludedSources(sourceDirectory, targetDirectory);
+    }
+
+    @Benchmark
+    public Set<File> scanStaleSources() throws Exception {
+        return new IndexedStaleSourceScanner(index, 0, includes, excludes)
+                .getIncludedSources(sourceDirectory, targetDirectory);
+    }
+}
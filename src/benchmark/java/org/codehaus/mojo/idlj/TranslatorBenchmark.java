@@ -0,0 +1,71 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Measures the selection and configuration of a translator, and the construction of its arguments for a source
+ * with many package prefixes, translations and defines.
+ */
+@State(Scope.Benchmark)
+public class TranslatorBenchmark extends IDLJTestBase {
+
+    @Param({"10", "1000"})
+    public int optionCount;
+
+    private Source source;
+    private AbstractTranslator translator;
+    private File[] includeDirs = {new File("src/main/include"), new File("target/include")};
+
+    @Setup
+    public void setUpSource() throws Exception {
+        setUp();
+        source = createSource();
+        for (int i = 0; i < optionCount; i++) {
+            createPrefix(source, "Type" + i, "com.example.prefix" + i);
+            createTranslation(source, "module" + i, "com.example.module" + i);
+            createDefine(source, "SYMBOL_" + i);
+        }
+        translator = TranslatorType.selectTranslator("glassfish");
+    }
+
+    @Benchmark
+    public AbstractTranslator selectTranslator() throws Exception {
+        AbstractTranslator selected = TranslatorType.selectTranslator(null);
+        selected.setDebug(false);
+        selected.setFailOnError(true);
+        selected.setForkReuse(true, 100, 256L * 1024 * 1024);
+        selected.setReport(new BuildReport());
+        return selected;
+    }
+
+    @Benchmark
+    public List<String> getArguments() throws Exception {
+        return translator.getArguments("src/main/idl", includeDirs, "target/generated-sources/idl", source);
+    }
+}
@@ -0,0 +1,25 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+File idlDir = new File(basedir, 'src/main/idl')
+File generatedDir = new File(basedir, 'target/generated-sources/idl')
+def modules = idlDir.list().findAll { it.endsWith('.idl') }.collect { it - '.idl' }
+assert !modules.isEmpty()
+modules.each { module ->
+    assert new File(generatedDir, "${module}/Service0.java").isFile()
+}
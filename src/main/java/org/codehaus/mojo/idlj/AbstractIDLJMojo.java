@@ -21,21 +21,38 @@ package org.codehaus.mojo.idlj;
 
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.project.MavenProjectHelper;
 import org.codehaus.plexus.compiler.util.scan.InclusionScanException;
 import org.codehaus.plexus.compiler.util.scan.SourceInclusionScanner;
-import org.codehaus.plexus.compiler.util.scan.StaleSourceScanner;
-import org.codehaus.plexus.compiler.util.scan.mapping.SuffixMapping;
 import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.SelectorUtils;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.net.URI;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Properties;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This is abstract class used to decrease the code needed to the creation of the compiler MOJO.
@@ -80,6 +97,16 @@ public abstract class AbstractIDLJMojo extends AbstractMojo
      */
     private int staleMillis;
 
+    /**
+     * How to decide whether an IDL file needs recompilation. With <code>timestamp</code>, a file is recompiled
+     * whenever it was modified since it was last compiled. With <code>content</code>, a file whose
+     * modification time changed is only recompiled if its contents changed as well, so that a checkout or a
+     * restore from a build cache does not cause every file to be recompiled.
+     *
+     * @parameter property="idlj.staleDetection" default-value="timestamp"
+     */
+    private String staleDetection;
+
     /**
      * The maven project helper class for adding resources.
      *
@@ -88,183 +115,1398 @@ public abstract class AbstractIDLJMojo extends AbstractMojo
     private MavenProjectHelper projectHelper;
 
     /**
-     * The directory to store the processed grammars. Used so that grammars are not constantly regenerated.
+     * The directory to store the state of the processed grammars. Used so that grammars are not constantly
+     * regenerated.
      *
      * @parameter default-value="${project.build.directory}/idlj-timestamp"
      */
     private File timestampDirectory;
 
     /**
-     * The compiler to use. Current options are the JDK idlj compiler, Glassfish and JacORB.
-     * Should be either "idlj", "glassfish", or "jacorb". If not specified, will select idlj or glassfish,
-     * based on Java version
+     * The compiler to use. Current options are the JDK idlj compiler, Glassfish and JacORB.
+     * Should be either "idlj", "glassfish", or "jacorb". If not specified, will select idlj or glassfish,
+     * based on Java version
+     *
+     * @parameter
+     */
+    private String compiler;
+
+    /**
+     * The number of IDL files to translate concurrently. Defaults to the number of available processors.
+     * Compilers which run in the build's own process and rely on shared static state are still invoked one at a time.
+     *
+     * @parameter property="idlj.threads"
+     */
+    private int threads;
+
+    /**
+     * The maximum number of IDL files to pass to a single compiler invocation, for compilers which accept several
+     * files at once (JacORB and OpenORB). Files are only grouped with others from the same <code>source</code>.
+     * This avoids starting a new process for every file when the compiler is forked. If a batch fails, its files are
+     * compiled one at a time so that only the files in error are left to be recompiled. When a file of a batch
+     * changes or is deleted, the other files of the batch are compiled again, so that the files generated only for it
+     * can be removed.
+     *
+     * @parameter property="idlj.batchSize" default-value="1"
+     */
+    private int batchSize;
+
+    /**
+     * Whether forked compilers (JacORB and OpenORB) should run in long-lived worker processes, which are reused
+     * for later files rather than starting a new JVM for each compilation.
+     *
+     * @parameter property="idlj.reuseForks" default-value="true"
+     */
+    private boolean reuseForks;
+
+    /**
+     * The number of compilations after which a forked worker process is replaced by a fresh one.
+     *
+     * @parameter property="idlj.maxJobsPerFork" default-value="100"
+     */
+    private int maxJobsPerFork;
+
+    /**
+     * The heap in use, in megabytes, beyond which a forked worker process is replaced after its current compilation.
+     *
+     * @parameter property="idlj.maxForkHeapMb" default-value="512"
+     */
+    private int maxForkHeapMb;
+
+    /**
+     * Whether forked compilers should start from a class data sharing archive of the classes they load. The first
+     * fork with a given compiler class path records the archive, and later forks, in this and later builds, map it
+     * rather than loading the classes again. Requires Java 13 or later, and is ignored otherwise.
+     *
+     * @parameter property="idlj.useClassDataSharing" default-value="true"
+     */
+    private boolean useClassDataSharing;
+
+    /**
+     * The directory holding the class data sharing archives of the forked compilers.
+     *
+     * @parameter property="idlj.classDataSharingDirectory" default-value="${user.home}/.m2/idlj-cds"
+     */
+    private File classDataSharingDirectory;
+
+    /**
+     * Whether the idlj compilers (built-in and Glassfish) may translate several files at the same time inside the
+     * Maven process. Each thread then uses a private copy of the compiler, loaded from its jar by a class loader of
+     * its own. Otherwise, these compilers, which keep static state, are invoked one file at a time.
+     *
+     * @parameter property="idlj.isolatedCompilers" default-value="false"
+     */
+    private boolean isolatedCompilers;
+
+    /**
+     * The private copies of the compilers used during this execution, or null if compilers are shared.
+     */
+    private IsolatedCompilerLoaders isolatedLoaders;
+
+    /**
+     * Whether to take the sources generated from an IDL file from a cache shared by all builds, if the same file has
+     * been compiled before with the same includes, compiler and arguments. Files which miss the cache are compiled
+     * one at a time, so that their generated sources can be added to the cache.
+     *
+     * @parameter property="idlj.useCache" default-value="false"
+     */
+    private boolean useCache;
+
+    /**
+     * The directory holding the cache of generated sources.
+     *
+     * @parameter property="idlj.cacheDirectory" default-value="${user.home}/.m2/idlj-cache"
+     */
+    private File cacheDirectory;
+
+    /**
+     * The directory holding the IDL files extracted from dependency jars, in a directory per jar named after its
+     * checksum.
+     *
+     * @parameter property="idlj.includeCacheDirectory" default-value="${user.home}/.m2/idlj-includes"
+     */
+    private File includeCacheDirectory;
+
+    /**
+     * The size, in megabytes, beyond which the least recently used entries are removed from the cache.
+     *
+     * @parameter property="idlj.cacheMaxSizeMb" default-value="1024"
+     */
+    private int cacheMaxSizeMb;
+
+    /**
+     * The file to which the time spent in each phase of the build, and on each IDL file, is written as JSON.
+     *
+     * @parameter property="idlj.reportFile" default-value="${project.build.directory}/idlj-report.json"
+     */
+    private File reportFile;
+
+    /**
+     * The number of IDL files which took longest to translate to list in the build log.
+     *
+     * @parameter property="idlj.reportTopFiles" default-value="10"
+     */
+    private int reportTopFiles;
+
+    /**
+     * The amount of output, in kilobytes, which each compilation may send to the build log. The compiler output is
+     * passed on to the log as it is printed; beyond this amount, the rest is written to a file in the
+     * <code>compiler-output</code> directory of the timestamp directory instead. A value of 0 or less removes the
+     * limit.
+     *
+     * @parameter property="idlj.maxLoggedOutputKb" default-value="1024"
+     */
+    private int maxLoggedOutputKb;
+
+    /**
+     * Whether to rewrite the synchronized <code>type()</code> method of the helpers generated by the idlj compilers
+     * (built-in and Glassfish) so that it only locks the helper class until the type code has been created. Helpers
+     * are otherwise unchanged; the generated protection against recursive types is kept.
+     *
+     * @parameter property="idlj.lockFreeHelperTypes" default-value="false"
+     */
+    private boolean lockFreeHelperTypes;
+
+    /**
+     * Whether to rewrite the operation dispatch of the skeletons, POA or <code>ImplBase</code>, generated by the idlj
+     * compilers (built-in and Glassfish). The generated <code>_invoke</code> looks the operation up in a static map
+     * of boxed indexes; it is rewritten to switch on the hash code of the operation name instead. Unknown operations
+     * still raise <code>BAD_OPERATION</code>.
+     *
+     * @parameter property="idlj.fastSkeletonDispatch" default-value="false"
+     */
+    private boolean fastSkeletonDispatch;
+
+    /**
+     * The time spent in each phase of this build.
+     */
+    private BuildReport report;
+
+    /**
+     * The name of the directory, in the timestamp directory, in which files are compiled before being moved to the
+     * output directory.
+     */
+    private static final String SCRATCH_DIRECTORY_NAME = ".scratch";
+
+    /**
+     * The name of the directory, in the timestamp directory, holding the compiler output beyond the logging limit.
+     */
+    private static final String COMPILER_OUTPUT_DIRECTORY_NAME = "compiler-output";
+
+    /**
+     * Stands for the source and output directories in cache keys, which must not depend on the project location.
+     */
+    private static final String SOURCE_DIRECTORY_PLACEHOLDER = "${sourceDirectory}";
+
+    private static final String OUTPUT_DIRECTORY_PLACEHOLDER = "${outputDirectory}";
+
+    /**
+     * The cache of generated sources, or null if not used.
+     */
+    private GeneratedSourcesCache cache;
+
+    /**
+     * The name of the file, in the state directory of the execution, which records the files generated from each IDL
+     * file.
+     */
+    private static final String OUTPUT_MANIFEST_FILE_NAME = "outputs.manifest";
+
+    /**
+     * The files generated from each IDL file, updated as the files are compiled.
+     */
+    private OutputManifest outputManifest;
+
+    /**
+     * The directories searched for included files: the include directories, followed by those to which dependency
+     * jars are extracted.
+     */
+    private File[] includeDirectories;
+
+    /**
+     * The name of the directory, in the timestamp directory, holding the state directory of each execution.
+     */
+    private static final String EXECUTIONS_DIRECTORY_NAME = "executions";
+
+    /**
+     * The number of hexadecimal digits of the hash identifying an execution used to name its state directory.
+     */
+    private static final int EXECUTION_KEY_LENGTH = 16;
+
+    /**
+     * The directory holding the state recorded by this execution.
+     */
+    private File executionStateDirectory;
+
+    /**
+     * The name of the file, in the state directory of the execution, which records the include relationships between
+     * IDL files.
+     */
+    private static final String INCLUDE_GRAPH_FILE_NAME = "includes.graph";
+
+    /**
+     * The IDL files in the source directory which include a file changed since the last build.
+     */
+    private Set<File> affectedByIncludes = Collections.emptySet();
+
+    /**
+     * The include relationships between the IDL files, as of this build.
+     */
+    private IncludeGraph includeGraph;
+
+    /**
+     * True if all of the IDL files could be read to build the include graph.
+     */
+    private boolean includesKnown;
+
+    private static final String TIMESTAMP_STALE_DETECTION = "timestamp";
+
+    private static final String CONTENT_STALE_DETECTION = "content";
+
+    /**
+     * The name of the file, in the state directory of the execution, which records the state of the translated IDL
+     * files.
+     */
+    private static final String STALENESS_INDEX_FILE_NAME = "staleness.index";
+
+    /**
+     * The name of the file in which earlier versions recorded the contents of the translated IDL files.
+     */
+    private static final String LEGACY_CONTENT_DIGESTS_FILE_NAME = "contents.digests";
+
+    /**
+     * The state of the IDL files as of their last translation.
+     */
+    private StalenessIndex stalenessIndex;
+
+    /**
+     * True if a modified IDL file is only translated again if its contents changed.
+     */
+    private boolean compareContents;
+
+    /**
+     * The files read by the include graph whose contents changed since the last build.
+     */
+    private Set<File> changedIncludes = Collections.emptySet();
+
+    /**
+     * The name of the file, in the state directory of the execution, which records the compiler configuration of each
+     * source.
+     */
+    private static final String CONFIGURATION_FINGERPRINTS_FILE_NAME = "sources.fingerprints";
+
+    /**
+     * The compiler configuration of each source, keyed by its position in the list of sources. Read from the last
+     * build, and updated as the sources are processed.
+     */
+    private Properties configurationFingerprints;
+
+    /**
+     * The interface between this class and the rest of the world - unit tests replace the default implementation.
+     */
+    private DependenciesFacade dependencies;
+
+    /**
+     * The default implementation of the dependencies.
+     */
+    private static final DependenciesFacade DEPENDENCIES_FACADE = new DependenciesFacadeImpl();
+
+
+    /**
+     * Creates the abstract class using a production implementation of the dependencies.
+     */
+    protected AbstractIDLJMojo()
+    {
+        this( DEPENDENCIES_FACADE );
+    }
+
+    AbstractIDLJMojo( DependenciesFacade dependencies )
+    {
+        this.dependencies = dependencies;
+    }
+
+    /**
+     * @return the source directory that contains the IDL files
+     */
+    protected abstract File getSourceDirectory();
+
+    /**
+     * @return the <code>File[]</code> of the directories to use as include directories for the compilation
+     */
+    protected abstract File[] getIncludeDirs();
+
+    /**
+     * @return the path of the directory that will contains the results of the compilation
+     */
+    protected abstract File getOutputDirectory();
+
+    /**
+     * @return the jars holding IDL files to include, searched after the include directories
+     * @throws MojoExecutionException if the jars cannot be determined
+     */
+    protected List<File> getIncludeJars() throws MojoExecutionException
+    {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Execute the goal of the MOJO that is: compiling the IDL files
+     *
+     * @throws MojoExecutionException if the compilation fails or the compiler crashes
+     */
+    public void execute() throws MojoExecutionException
+    {
+        report = new BuildReport();
+        prepareGeneratedSourceDirectory( getOutputDirectory() );
+        createIfAbsent( timestampDirectory );
+        executionStateDirectory = getExecutionStateDirectory();
+        executionStateDirectory.mkdirs();
+        compareContents = isContentStaleDetection();
+        stalenessIndex = openStalenessIndex();
+        isolatedLoaders = isolatedCompilers ? new IsolatedCompilerLoaders() : null;
+        try
+        {
+            configurationFingerprints = loadConfigurationFingerprints();
+            includeDirectories = resolveIncludeDirectories();
+            includeGraph = updateIncludeGraph();
+            cache = useCache && includesKnown
+                    ? new GeneratedSourcesCache( cacheDirectory, cacheMaxSizeMb * 1024L * 1024L ) : null;
+
+            outputManifest = OutputManifest.load( getOutputManifestFile() );
+            Set<String> previousOutputs = outputManifest.getAllOutputs();
+
+            try
+            {
+                if ( isSourceSpecified() )
+                {
+                    translateSources( createTranslator( getLog() ), sources );
+                }
+                else
+                {
+                    translateInferredSource( createTranslator( getLog() ) );
+                }
+            }
+            finally
+            {
+                removeOrphanedOutputs( previousOutputs );
+            }
+
+            saveIncludeGraph( includeGraph );
+            recordChangedIncludes();
+            saveConfigurationFingerprints();
+            reportCacheUse();
+        }
+        finally
+        {
+            closeIsolatedLoaders();
+            closeStalenessIndex();
+            writeReport();
+        }
+    }
+
+    private void closeIsolatedLoaders()
+    {
+        if ( isolatedLoaders != null )
+        {
+            getLog().debug( "Loaded " + isolatedLoaders.getLoadedCount() + " private copies of the IDL compiler" );
+            try
+            {
+                isolatedLoaders.close();
+            }
+            catch ( IOException e )
+            {
+                getLog().debug( "Failed to close compiler class loaders: " + e );
+            }
+            isolatedLoaders = null;
+        }
+    }
+
+    private void writeReport()
+    {
+        report.logSummary( getLog(), reportTopFiles );
+        if ( reportFile != null )
+        {
+            try
+            {
+                report.write( reportFile );
+            }
+            catch ( IOException e )
+            {
+                getLog().warn( "Failed to write build report: " + e );
+            }
+        }
+    }
+
+    /**
+     * Deletes the generated files which no longer belong to any IDL file, and saves the manifest. This is also done
+     * after a failed build, since the manifest then describes the files generated before the failure.
+     *
+     * @param previousOutputs the generated files recorded by the last build
+     */
+    private void removeOrphanedOutputs( Set<String> previousOutputs )
+    {
+        outputManifest.retainExistingSources( getSourceDirectory() );
+        Set<String> orphans = new TreeSet<>( previousOutputs );
+        orphans.removeAll( outputManifest.getAllOutputs() );
+        for ( String orphan : orphans )
+        {
+            File file = new File( getOutputDirectory(), orphan );
+            if ( file.delete() )
+            {
+                getLog().debug( "Removed obsolete generated file: " + file );
+            }
+        }
+
+        try
+        {
+            outputManifest.save( getOutputManifestFile() );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to record generated files: " + e );
+        }
+    }
+
+    /**
+     * Returns the directory holding the state of this execution: the state of the files it compiled, the files it
+     * generated from them, their includes and the configuration they were compiled with. Executions sharing the
+     * timestamp directory, such as <code>generate</code> and <code>generate-test</code>, or several executions
+     * compiling their own sources, each have their own, identified by their source and output directories and by
+     * the files their sources select. Their state would otherwise overwrite each other's.
+     */
+    private File getExecutionStateDirectory()
+    {
+        StringBuilder identity = new StringBuilder();
+        identity.append( getSourceDirectory().getAbsolutePath() ).append( '\n' );
+        identity.append( getOutputDirectory().getAbsolutePath() );
+        if ( sources != null )
+        {
+            for ( Source source : sources )
+            {
+                identity.append( '\n' ).append( toSortedString( source.getIncludes() ) );
+                identity.append( '\t' ).append( toSortedString( source.getExcludes() ) );
+            }
+        }
+
+        MessageDigest digest = GeneratedSourcesCache.createKeyDigest();
+        digest.update( identity.toString().getBytes( StandardCharsets.UTF_8 ) );
+        String key = GeneratedSourcesCache.toKey( digest ).substring( 0, EXECUTION_KEY_LENGTH );
+        return new File( new File( timestampDirectory, EXECUTIONS_DIRECTORY_NAME ), key );
+    }
+
+    private static String toSortedString( Set<String> patterns )
+    {
+        return patterns == null ? "" : new TreeSet<>( patterns ).toString();
+    }
+
+    private File getOutputManifestFile()
+    {
+        return new File( executionStateDirectory, OUTPUT_MANIFEST_FILE_NAME );
+    }
+
+    private void reportCacheUse()
+    {
+        if ( cache == null )
+        {
+            return;
+        }
+        if ( cache.getHits() + cache.getMisses() > 0 )
+        {
+            getLog().info( "Generated sources cache: " + cache.getHits() + " hits, " + cache.getMisses() + " misses" );
+        }
+        try
+        {
+            cache.evict();
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to trim generated sources cache: " + e );
+        }
+    }
+
+    private Properties loadConfigurationFingerprints()
+    {
+        Properties fingerprints = new Properties();
+        File file = getConfigurationFingerprintsFile();
+        if ( file.isFile() )
+        {
+            try ( InputStream in = new FileInputStream( file ) )
+            {
+                fingerprints.load( in );
+            }
+            catch ( IOException e )
+            {
+                getLog().debug( "Failed to read compiler configurations: " + e );
+                fingerprints.clear();
+            }
+        }
+        return fingerprints;
+    }
+
+    private void saveConfigurationFingerprints()
+    {
+        try ( OutputStream out = new FileOutputStream( getConfigurationFingerprintsFile() ) )
+        {
+            configurationFingerprints.store( out, "Compiler configuration of each source" );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to record compiler configurations: " + e );
+        }
+    }
+
+    private File getConfigurationFingerprintsFile()
+    {
+        return new File( executionStateDirectory, CONFIGURATION_FINGERPRINTS_FILE_NAME );
+    }
+
+    private boolean isContentStaleDetection() throws MojoExecutionException
+    {
+        if ( staleDetection == null || staleDetection.equals( TIMESTAMP_STALE_DETECTION ) )
+        {
+            return false;
+        }
+        else if ( staleDetection.equals( CONTENT_STALE_DETECTION ) )
+        {
+            return true;
+        }
+        throw new MojoExecutionException( "Unknown staleDetection '" + staleDetection + "': should be '"
+                + TIMESTAMP_STALE_DETECTION + "' or '" + CONTENT_STALE_DETECTION + "'" );
+    }
+
+    /**
+     * Opens the staleness index in the timestamp directory. When the index is first created, the state recorded by
+     * earlier versions of the plugin - a copy of each translated IDL file - is moved into it.
+     *
+     * @return the index, or an empty index held in memory if the index file cannot be used
+     */
+    private StalenessIndex openStalenessIndex()
+    {
+        File indexFile = new File( executionStateDirectory, STALENESS_INDEX_FILE_NAME );
+        boolean created = !indexFile.exists();
+        StalenessIndex index;
+        try
+        {
+            index = StalenessIndex.open( indexFile );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to open staleness index - all idl files will be compiled: " + e );
+            return StalenessIndex.createInMemory();
+        }
+
+        if ( created )
+        {
+            try
+            {
+                int migrated = index.migrate( timestampDirectory, getSourceDirectory(),
+                                              new File( timestampDirectory, LEGACY_CONTENT_DIGESTS_FILE_NAME ) );
+                if ( migrated > 0 )
+                {
+                    getLog().info( "Moved the state of " + migrated + " idl files into " + indexFile );
+                }
+            }
+            catch ( IOException e )
+            {
+                getLog().warn( "Failed to read the timestamp directory: " + e );
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Forgets the IDL files which no longer exist, then writes the index. This is also done after a failed build,
+     * since the files recorded until the failure have been translated.
+     */
+    private void closeStalenessIndex()
+    {
+        int removed = stalenessIndex.retainExistingFiles();
+        if ( removed > 0 )
+        {
+            getLog().debug( "Forgot the state of " + removed + " deleted idl files" );
+        }
+        try
+        {
+            stalenessIndex.close();
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to record IDL file states: " + e );
+        }
+    }
+
+    /**
+     * Records the contents of the changed included files, so that the files including them are not compiled again
+     * by the next build.
+     */
+    private void recordChangedIncludes()
+    {
+        try
+        {
+            for ( File file : changedIncludes )
+            {
+                if ( file.isFile() )
+                {
+                    stalenessIndex.record( file );
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to record IDL file contents: " + e );
+        }
+    }
+
+    /**
+     * Adds the directories to which dependency jars are extracted to the include directories, extracting the files
+     * which the IDL files include from the jars.
+     *
+     * @return the directories to search for included files
+     */
+    private File[] resolveIncludeDirectories() throws MojoExecutionException
+    {
+        List<File> jars = getIncludeJars();
+        if ( jars.isEmpty() )
+        {
+            return getIncludeDirs();
+        }
+
+        long start = System.nanoTime();
+        List<File> directories = new ArrayList<>();
+        if ( getIncludeDirs() != null )
+        {
+            directories.addAll( Arrays.asList( getIncludeDirs() ) );
+        }
+        try
+        {
+            DependencyIncludes dependencyIncludes = new DependencyIncludes( includeCacheDirectory );
+            directories.addAll( dependencyIncludes.extract( getSourceDirectory(), getIncludeDirs(), jars ) );
+            getLog().debug( "Extracted " + dependencyIncludes.getExtractedCount() + " included IDL files from "
+                                    + jars.size() + " jars" );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Failed to read included IDL files from " + jars, e );
+        }
+        report.addPhaseTime( BuildReport.INCLUDES, start );
+        return directories.toArray( new File[directories.size()] );
+    }
+
+    /**
+     * Reads the include graph recorded by the last build and brings it up to date, noting which IDL files include
+     * a file which has changed since then. Those files will be compiled even if they have not changed themselves.
+     *
+     * @return the updated graph, to be saved once all files have been compiled
+     */
+    private IncludeGraph updateIncludeGraph()
+    {
+        long start = System.nanoTime();
+        IncludeGraph includeGraph = IncludeGraph.load( getIncludeGraphFile() );
+        try
+        {
+            Set<File> changed = includeGraph.update( getSourceDirectory(), includeDirectories );
+            if ( compareContents )
+            {
+                changed = selectChangedContents( changed );
+            }
+            affectedByIncludes = toSourceFiles( includeGraph.getIncluders( changed ) );
+            includesKnown = true;
+            getLog().debug( "Including changed files: " + affectedByIncludes );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to read included IDL files: " + e );
+            affectedByIncludes = Collections.emptySet();
+            includesKnown = false;
+        }
+        report.addPhaseTime( BuildReport.INCLUDES, start );
+        return includeGraph;
+    }
+
+    /**
+     * Selects the files in the source directory, expressed relative to that directory as the source scanner does.
+     */
+    private Set<File> toSourceFiles( Set<File> files ) throws IOException
+    {
+        Set<File> result = new HashSet<>();
+        String sourcePath = getSourceDirectory().getCanonicalPath() + File.separator;
+        for ( File file : files )
+        {
+            if ( file.getPath().startsWith( sourcePath ) )
+            {
+                result.add( new File( getSourceDirectory(), file.getPath().substring( sourcePath.length() ) ) );
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Selects the files whose contents have changed since they were recorded. Their new contents are recorded
+     * once the build succeeds.
+     */
+    private Set<File> selectChangedContents( Set<File> files ) throws IOException
+    {
+        Set<File> result = new HashSet<>();
+        for ( File file : files )
+        {
+            if ( !stalenessIndex.isUnchanged( file ) )
+            {
+                result.add( file );
+            }
+        }
+        changedIncludes = result;
+        return result;
+    }
+
+    private void saveIncludeGraph( IncludeGraph includeGraph )
+    {
+        try
+        {
+            includeGraph.save( getIncludeGraphFile() );
+        }
+        catch ( IOException e )
+        {
+            getLog().warn( "Failed to record included IDL files: " + e );
+        }
+    }
+
+    private File getIncludeGraphFile()
+    {
+        return new File( executionStateDirectory, INCLUDE_GRAPH_FILE_NAME );
+    }
+
+    private void prepareGeneratedSourceDirectory( File directory ) throws MojoExecutionException
+    {
+        createIfAbsent( directory );
+        failIfNotWriteable( directory );
+        addCompileSourceRoot( directory );
+    }
+
+    private boolean isSourceSpecified()
+    {
+        return sources != null;
+    }
+
+    private void translateInferredSource( AbstractTranslator translator ) throws MojoExecutionException
+    {
+        processSource( new Source(), 0, translator );
+    }
+
+    private void translateSources( AbstractTranslator translator, List<Source> sourceList )
+            throws MojoExecutionException
+    {
+        for ( int i = 0; i < sourceList.size(); i++ )
+        {
+            processSource( sourceList.get( i ), i, translator );
+        }
+    }
+
+    private AbstractTranslator createTranslator( Log log ) throws MojoExecutionException
+    {
+        AbstractTranslator translator = TranslatorType.selectTranslator( compiler );
+
+        translator.setDebug( debug );
+        translator.setFailOnError( failOnError );
+        translator.setLog( log );
+        translator.setForkReuse( reuseForks, maxJobsPerFork, maxForkHeapMb * 1024L * 1024L );
+        translator.setReport( report );
+        translator.setIsolatedLoaders( isolatedLoaders );
+        translator.setClassDataSharingDirectory( useClassDataSharing ? classDataSharingDirectory : null );
+        if ( maxLoggedOutputKb > 0 )
+        {
+            translator.setOutputLimit( getCompilerOutputDirectory(), maxLoggedOutputKb * 1024L );
+        }
+        return translator;
+    }
+
+    private File getCompilerOutputDirectory()
+    {
+        return new File( timestampDirectory, COMPILER_OUTPUT_DIRECTORY_NAME );
+    }
+
+    /**
+     * Creates a log holding on to the messages sent to it until they are replayed into the specified log. The
+     * messages beyond those it holds in memory are written to the compiler output directory meanwhile.
+     */
+    private BufferedLog createBufferedLog( Log target )
+    {
+        return new BufferedLog( target, getCompilerOutputDirectory(), BufferedLog.MAX_BUFFERED_CHARS );
+    }
+
+    private void failIfNotWriteable( File directory ) throws MojoExecutionException
+    {
+        if ( !dependencies.isWriteable( directory ) )
+        {
+            throw new MojoExecutionException( "Cannot write in : " + directory );
+        }
+    }
+
+    private void createIfAbsent( File directory )
+    {
+        if ( !dependencies.exists( directory ) )
+        {
+            dependencies.createDirectory( directory );
+        }
+    }
+
+    /**
+     * Compile the IDL files located in the given source path.
+     *
+     * @param source     the <code>Source</code> that specify which file compile with arguments to use for the source
+     * @param index      the position of the source in the configuration
+     * @param translator the <code>CompilerTranslator</code> that raprresents idl compiler backend that will be used
+     * @throws MojoExecutionException if the compilation fails or the compiler crashes
+     */
+    private void processSource( Source source, int index, AbstractTranslator translator )
+            throws MojoExecutionException
+    {
+        Set<File> selectedGrammars;
+        long start = System.nanoTime();
+        boolean configurationChanged = isConfigurationChanged( source, index, translator );
+        report.addPhaseTime( BuildReport.STALE, start );
+        if ( configurationChanged )
+        {
+            selectedGrammars = getAllSources( source );
+        }
+        else
+        {
+            selectedGrammars = computeStaleGrammars( source );
+        }
+        List<File> staleGrammars = new ArrayList<>( selectedGrammars );
+        Collections.sort( staleGrammars );
+        reportProcessingNeeded( staleGrammars );
+
+        List<List<File>> batches = createBatches( staleGrammars, translator );
+        int poolSize = Math.min( getThreadCount(), batches.size() );
+        if ( poolSize <= 1 )
+        {
+            for ( List<File> batch : batches )
+            {
+                processBatch( source, batch, getLog() );
+            }
+        }
+        else
+        {
+            processConcurrently( source, batches, poolSize );
+        }
+    }
+
+    private int getThreadCount()
+    {
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Splits the stale files into groups to be passed to the compiler together. Unless the compiler accepts several
+     * files per invocation, each file is in a group of its own.
+     *
+     * @param staleGrammars the files to compile, in order
+     * @param translator    the translator which will compile them
+     * @return the files grouped for compilation, preserving their order
+     */
+    private List<List<File>> createBatches( List<File> staleGrammars, AbstractTranslator translator )
+    {
+        int size = translator.isBatchSupported() && cache == null ? Math.max( 1, batchSize ) : 1;
+        List<List<File>> batches = new ArrayList<>();
+        for ( int i = 0; i < staleGrammars.size(); i += size )
+        {
+            batches.add( staleGrammars.subList( i, Math.min( i + size, staleGrammars.size() ) ) );
+        }
+        return batches;
+    }
+
+    /**
+     * Translates groups of IDL files using a bounded pool of worker threads. Each group gets its own translator
+     * and a buffered log; the logs are replayed in the order of the files, so that the output does not depend on
+     * the order in which the workers happen to finish. The group whose messages are due next logs them as they come.
+     * After the first failure, groups not yet started are skipped and the failure is reported once the running
+     * translations complete.
+     *
+     * @param source   the <code>Source</code> that specify which file compile with arguments to use for the source
+     * @param batches  the groups of IDL files to translate, in the order in which they should be reported
+     * @param poolSize the number of worker threads to use
+     * @throws MojoExecutionException if the compilation fails or the compiler crashes
+     */
+    private void processConcurrently( final Source source, List<List<File>> batches, int poolSize )
+            throws MojoExecutionException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( poolSize );
+        try
+        {
+            List<Future<Void>> results = new ArrayList<>();
+            List<BufferedLog> logs = new ArrayList<>();
+            for ( final List<File> batch : batches )
+            {
+                final BufferedLog log = createBufferedLog( getLog() );
+                logs.add( log );
+                results.add( executor.submit( new Callable<Void>()
+                {
+                    public Void call() throws MojoExecutionException
+                    {
+                        processBatch( source, batch, log );
+                        return null;
+                    }
+                } ) );
+            }
+
+            MojoExecutionException failure = null;
+            for ( int i = 0; i < results.size(); i++ )
+            {
+                logs.get( i ).passThrough();
+                try
+                {
+                    awaitTranslation( results.get( i ) );
+                }
+                catch ( MojoExecutionException e )
+                {
+                    if ( failure == null )
+                    {
+                        failure = e;
+                        cancelPending( results );
+                    }
+                }
+            }
+
+            if ( failure != null )
+            {
+                throw failure;
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private void awaitTranslation( Future<Void> result ) throws MojoExecutionException
+    {
+        try
+        {
+            result.get();
+        }
+        catch ( CancellationException e )
+        {
+            // skipped after an earlier failure
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException( "Thread interrupted unexpectedly", e );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof MojoExecutionException )
+            {
+                throw (MojoExecutionException) e.getCause();
+            }
+            throw new MojoExecutionException( "IDL compilation failed", e.getCause() );
+        }
+    }
+
+    private void cancelPending( List<Future<Void>> results )
+    {
+        for ( Future<Void> result : results )
+        {
+            result.cancel( false );
+        }
+    }
+
+    /**
+     * Translates a group of IDL files with a single compiler invocation. If that fails, the messages from the
+     * combined run are discarded and the files are translated one at a time, so that the files which compiled
+     * cleanly are recorded as up to date and the failure is reported against the right file.
      *
-     * @parameter
-     */
-    private String compiler;
-
-    /**
-     * The interface between this class and the rest of the world - unit tests replace the default implementation.
+     * @param source   the <code>Source</code> that specify which file compile with arguments to use for the source
+     * @param idlFiles the files to translate
+     * @param log      the log to receive messages about the translation
+     * @throws MojoExecutionException if the compilation fails or the compiler crashes
      */
-    private DependenciesFacade dependencies;
+    private void processBatch( Source source, List<File> idlFiles, Log log )
+            throws MojoExecutionException
+    {
+        if ( idlFiles.size() == 1 )
+        {
+            processIdlFile( source, createTranslator( log ), idlFiles.get( 0 ), log );
+            return;
+        }
 
-    /**
-     * The default implementation of the dependencies.
-     */
-    private static final DependenciesFacade DEPENDENCIES_FACADE = new DependenciesFacadeImpl();
+        long start = System.nanoTime();
+        List<FlightRecorderEvents.Event> events = new ArrayList<>();
+        for ( int i = 0; i < idlFiles.size(); i++ )
+        {
+            events.add( FlightRecorderEvents.TRANSLATION.begin() );
+        }
+        BufferedLog batchLog = createBufferedLog( log );
+        AbstractTranslator translator = createTranslator( batchLog );
+        List<StalenessIndex.Snapshot> snapshots = takeSnapshots( idlFiles, log );
+        List<String> generated;
+        try
+        {
+            generated = translateInScratchDirectory( idlFiles, source, translator, batchLog );
+        }
+        catch ( MojoExecutionException e )
+        {
+            batchLog.discard();
+            log.debug( "Batch of " + idlFiles.size() + " files failed; compiling each file separately" );
+            for ( File idlFile : idlFiles )
+            {
+                processIdlFile( source, createTranslator( log ), idlFile, log );
+            }
+            return;
+        }
 
+        batchLog.replay();
+        recordTranslated( idlFiles, snapshots, generated, log );
+        for ( int i = 0; i < idlFiles.size(); i++ )
+        {
+            File idlFile = idlFiles.get( i );
+            report.addFile( getRelativePath( idlFile ), start, idlFiles.size(), generated.size() );
+            commitTranslationEvent( events.get( i ), translator, idlFile );
+        }
+    }
 
-    /**
-     * Creates the abstract class using a production implementation of the dependencies.
-     */
-    protected AbstractIDLJMojo()
+    private void processIdlFile( Source source, AbstractTranslator translator, File idlFile, Log log )
+            throws MojoExecutionException
     {
-        this( DEPENDENCIES_FACADE );
+        long start = System.nanoTime();
+        FlightRecorderEvents.Event event = FlightRecorderEvents.TRANSLATION.begin();
+        List<File> idlFiles = Collections.singletonList( idlFile );
+        List<StalenessIndex.Snapshot> snapshots = takeSnapshots( idlFiles, log );
+        List<String> generated;
+        try
+        {
+            if ( cache != null )
+            {
+                generated = translateIdlFileWithCache( idlFile, source, translator, log );
+            }
+            else
+            {
+                generated = translateInScratchDirectory( idlFiles, source, translator, log );
+            }
+        }
+        finally
+        {
+            commitTranslationEvent( event, translator, idlFile );
+        }
+        recordTranslated( idlFiles, snapshots, generated, log );
+        report.addFile( getRelativePath( idlFile ), start, 1, generated.size() );
     }
 
-    AbstractIDLJMojo( DependenciesFacade dependencies )
+    private void commitTranslationEvent( FlightRecorderEvents.Event event, AbstractTranslator translator,
+                                         File idlFile )
     {
-        this.dependencies = dependencies;
+        Integer exitCode = translator.getLastExitCode();
+        event.commit( translator.getClass().getSimpleName(), getRelativePath( idlFile ), idlFile.length(),
+                      exitCode == null ? 0 : exitCode, exitCode == null );
     }
 
     /**
-     * @return the source directory that contains the IDL files
+     * Compiles IDL files in a scratch directory, then moves the generated files whose contents changed into the
+     * output directory. Unchanged files are left untouched, so that incremental compilers do not compile them again.
+     *
+     * @param idlFiles   the files to compile
+     * @param source     the <code>Source</code> that specify which file compile with arguments to use for the source
+     * @param translator the translator which will compile the files
+     * @param log        the log to receive messages about the translation
+     * @return the paths of the generated files, relative to the output directory
+     * @throws MojoExecutionException if the compilation fails or the compiler crashes
      */
-    protected abstract File getSourceDirectory();
+    private List<String> translateInScratchDirectory( List<File> idlFiles, Source source,
+                                                      AbstractTranslator translator, Log log )
+            throws MojoExecutionException
+    {
+        File scratchDirectory = createScratchDirectory();
+        try
+        {
+            translateIdlFiles( idlFiles, source, translator, scratchDirectory, log );
+            return publishGenerated( scratchDirectory );
+        }
+        finally
+        {
+            deleteScratchDirectory( scratchDirectory );
+        }
+    }
 
     /**
-     * @return the <code>File[]</code> of the directories to use as include directories for the compilation
+     * Restores the sources generated from an IDL file from the cache if possible. Otherwise, compiles the file in a
+     * scratch directory, adds the result to the cache and copies it into the output directory. The results of a
+     * failed compilation are not cached.
+     *
+     * @return the paths of the generated files, relative to the output directory
      */
-    protected abstract File[] getIncludeDirs();
+    private List<String> translateIdlFileWithCache( File idlFile, Source source, AbstractTranslator translator,
+                                                    Log log )
+            throws MojoExecutionException
+    {
+        long start = System.nanoTime();
+        String key;
+        try
+        {
+            key = getCacheKey( idlFile, source, translator );
+            List<String> restored = cache.restore( key, getOutputDirectory() );
+            if ( restored != null )
+            {
+                log.debug( "Restored from cache: " + idlFile );
+                return restored;
+            }
+        }
+        catch ( IOException e )
+        {
+            log.warn( "Failed to use generated sources cache: " + e );
+            return translateInScratchDirectory( Collections.singletonList( idlFile ), source, translator, log );
+        }
+        finally
+        {
+            report.addPhaseTime( BuildReport.CACHE, start );
+        }
 
-    /**
-     * @return the path of the directory that will contains the results of the compilation
-     */
-    protected abstract File getOutputDirectory();
+        File scratchDirectory = createScratchDirectory();
+        try
+        {
+            boolean failOnError = translator.isFailOnError();
+            translator.setFailOnError( true );
+            try
+            {
+                translateIdlFile( idlFile, source, translator, scratchDirectory, log );
+            }
+            catch ( MojoExecutionException e )
+            {
+                List<String> generated = publishGenerated( scratchDirectory );
+                if ( failOnError )
+                {
+                    throw e;
+                }
+                return generated;
+            }
+            finally
+            {
+                translator.setFailOnError( failOnError );
+            }
+
+            start = System.nanoTime();
+            try
+            {
+                cache.store( key, scratchDirectory );
+            }
+            catch ( IOException e )
+            {
+                log.warn( "Failed to add to generated sources cache: " + e );
+            }
+            report.addPhaseTime( BuildReport.CACHE, start );
+            return publishGenerated( scratchDirectory );
+        }
+        finally
+        {
+            deleteScratchDirectory( scratchDirectory );
+        }
+    }
 
     /**
-     * Execute the goal of the MOJO that is: compiling the IDL files
-     *
-     * @throws MojoExecutionException if the compilation fails or the compiler crashes
+     * Computes the cache key for an IDL file: a hash of its path and contents, the contents of the files it
+     * includes, and the compiler configuration. Project-specific directories are left out, so that the same file
+     * compiled in another checkout shares the same entry.
      */
-    public void execute() throws MojoExecutionException
+    private String getCacheKey( File idlFile, Source source, AbstractTranslator translator )
+            throws IOException, MojoExecutionException
     {
-        prepareGeneratedSourceDirectory( getOutputDirectory() );
-        createIfAbsent( timestampDirectory );
+        File[] includeDirs = includeDirectories;
+        File[] includePlaceholders = new File[includeDirs == null ? 0 : includeDirs.length];
+        for ( int i = 0; i < includePlaceholders.length; i++ )
+        {
+            includePlaceholders[i] = new File( "${includeDir" + i + "}" );
+        }
+
+        MessageDigest digest = GeneratedSourcesCache.createKeyDigest();
+        digest.update( getConfigurationFingerprint( translator, SOURCE_DIRECTORY_PLACEHOLDER, includePlaceholders,
+                                                    OUTPUT_DIRECTORY_PLACEHOLDER, source )
+                               .getBytes( StandardCharsets.UTF_8 ) );
+        digest.update( getRelativePath( idlFile ).getBytes( StandardCharsets.UTF_8 ) );
+        digest.update( Files.readAllBytes( idlFile.toPath() ) );
 
-        if ( isSourceSpecified() )
+        List<String> includeHashes = new ArrayList<>();
+        for ( File include : includeGraph.getIncludes( idlFile ) )
         {
-            translateSources( createTranslator(), sources );
+            MessageDigest includeDigest = GeneratedSourcesCache.createKeyDigest();
+            includeDigest.update( Files.readAllBytes( include.toPath() ) );
+            includeHashes.add( GeneratedSourcesCache.toKey( includeDigest ) );
         }
-        else
+        Collections.sort( includeHashes );
+        for ( String includeHash : includeHashes )
         {
-            translateInferredSource( createTranslator() );
+            digest.update( includeHash.getBytes( StandardCharsets.UTF_8 ) );
         }
+        return GeneratedSourcesCache.toKey( digest );
     }
 
-    private void prepareGeneratedSourceDirectory( File directory ) throws MojoExecutionException
+    private File createScratchDirectory() throws MojoExecutionException
     {
-        createIfAbsent( directory );
-        failIfNotWriteable( directory );
-        addCompileSourceRoot( directory );
+        try
+        {
+            File parent = new File( timestampDirectory, SCRATCH_DIRECTORY_NAME );
+            FileUtils.forceMkdir( parent );
+            return Files.createTempDirectory( parent.toPath(), "idl" ).toFile();
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Failed to create scratch directory", e );
+        }
     }
 
-    private boolean isSourceSpecified()
+    private void deleteScratchDirectory( File scratchDirectory )
     {
-        return sources != null;
+        try
+        {
+            FileUtils.deleteDirectory( scratchDirectory );
+        }
+        catch ( IOException e )
+        {
+            getLog().debug( "Failed to delete " + scratchDirectory + ": " + e );
+        }
     }
 
-    private void translateInferredSource( CompilerTranslator translator ) throws MojoExecutionException
+    private List<String> publishGenerated( File scratchDirectory ) throws MojoExecutionException
     {
-        processSource( new Source(), translator );
+        long start = System.nanoTime();
+        try
+        {
+            return GeneratedFiles.publish( scratchDirectory, getOutputDirectory() );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Failed to copy generated sources to " + getOutputDirectory(), e );
+        }
+        finally
+        {
+            report.addPhaseTime( BuildReport.PUBLISH, start );
+        }
     }
 
-    private void translateSources( CompilerTranslator translator, List<Source> sourceList )
-            throws MojoExecutionException
+    /**
+     * Reads the state of IDL files about to be translated, so that the state recorded once they are translated is the
+     * one the compiler saw, and a change made in the meantime is translated by the next build.
+     */
+    private List<StalenessIndex.Snapshot> takeSnapshots( List<File> idlFiles, Log log )
     {
-        for ( Source source : sourceList )
+        long start = System.nanoTime();
+        List<StalenessIndex.Snapshot> snapshots = new ArrayList<>();
+        for ( File idlFile : idlFiles )
         {
-            processSource( source, translator );
+            try
+            {
+                snapshots.add( dependencies.snapshot( idlFile ) );
+            }
+            catch ( IOException e )
+            {
+                log.warn( "Failed to read IDL file contents: " + e );
+            }
         }
+        report.addPhaseTime( BuildReport.RECORD, start );
+        return snapshots;
     }
 
-    private CompilerTranslator createTranslator() throws MojoExecutionException
+    private void recordTranslated( List<File> idlFiles, List<StalenessIndex.Snapshot> snapshots,
+                                   List<String> generated, Log log )
+            throws MojoExecutionException
     {
-        CompilerTranslator translator = TranslatorType.selectTranslator( compiler );
+        long start = System.nanoTime();
+        if ( idlFiles.size() == 1 )
+        {
+            outputManifest.record( getRelativePath( idlFiles.get( 0 ) ), generated );
+        }
+        else
+        {
+            List<String> paths = new ArrayList<>();
+            for ( File idlFile : idlFiles )
+            {
+                paths.add( getRelativePath( idlFile ) );
+            }
+            outputManifest.recordBatch( paths, generated );
+        }
 
-        translator.setDebug( debug );
-        translator.setFailOnError( failOnError );
-        translator.setLog( getLog() );
-        return translator;
+        for ( StalenessIndex.Snapshot snapshot : snapshots )
+        {
+            try
+            {
+                dependencies.record( stalenessIndex, snapshot );
+            }
+            catch ( IOException e )
+            {
+                log.warn( "Failed to record IDL file contents: " + e );
+            }
+        }
+        report.addPhaseTime( BuildReport.RECORD, start );
     }
 
-    private void failIfNotWriteable( File directory ) throws MojoExecutionException
+    private void translateIdlFile( File idlFile, Source source, AbstractTranslator translator, File outputDirectory,
+                                   Log log )
+            throws MojoExecutionException
     {
-        if ( !dependencies.isWriteable( directory ) )
-        {
-            throw new MojoExecutionException( "Cannot write in : " + directory );
-        }
+        log.debug( "Processing: " + idlFile.toString() );
+        translator.invokeCompiler( getSourceDirectory().getAbsolutePath(),
+                                   includeDirectories,
+                                   outputDirectory.getAbsolutePath(),
+                                   idlFile.toString(), source );
+        rewriteGenerated( outputDirectory, log );
     }
 
-    private void createIfAbsent( File directory )
+    private void translateIdlFiles( List<File> idlFiles, Source source, AbstractTranslator translator,
+                                    File outputDirectory, Log log )
+            throws MojoExecutionException
     {
-        if ( !dependencies.exists( directory ) )
+        if ( idlFiles.size() == 1 )
         {
-            dependencies.createDirectory( directory );
+            translateIdlFile( idlFiles.get( 0 ), source, translator, outputDirectory, log );
+            return;
+        }
+
+        List<String> paths = new ArrayList<>();
+        for ( File idlFile : idlFiles )
+        {
+            log.debug( "Processing: " + idlFile.toString() );
+            paths.add( idlFile.toString() );
         }
+        translator.invokeCompiler( getSourceDirectory().getAbsolutePath(),
+                                   includeDirectories,
+                                   outputDirectory.getAbsolutePath(),
+                                   paths, source );
+        rewriteGenerated( outputDirectory, log );
     }
 
     /**
-     * Compile the IDL files located in the given source path.
-     *
-     * @param source     the <code>Source</code> that specify which file compile with arguments to use for the source
-     * @param translator the <code>CompilerTranslator</code> that raprresents idl compiler backend that will be used
-     * @throws MojoExecutionException if the compilation fails or the compiler crashes
+     * Applies the requested changes to the files just generated, before they are cached or published.
      */
-    private void processSource( Source source, CompilerTranslator translator )
-            throws MojoExecutionException
+    private void rewriteGenerated( File outputDirectory, Log log ) throws MojoExecutionException
     {
-        Set<File> staleGrammars = computeStaleGrammars( source );
-        reportProcessingNeeded( staleGrammars );
-
-        for ( File idlFile : staleGrammars )
+        List<SourceRewriter> rewriters = getSourceRewriters();
+        if ( rewriters.isEmpty() || !outputDirectory.isDirectory() )
         {
-            processIdlFile( source, translator, idlFile );
+            return;
         }
-    }
 
-    private void processIdlFile( Source source, CompilerTranslator translator, File idlFile )
-            throws MojoExecutionException
-    {
+        long start = System.nanoTime();
         try
         {
-            translateIdlFile( idlFile, source, translator );
-            copyToTimestampDirectory( idlFile );
+            int count = GeneratedFiles.rewrite( outputDirectory, rewriters );
+            log.debug( "Rewrote " + count + " generated files" );
         }
         catch ( IOException e )
         {
-            getLog().warn( "Failed to copy IDL file to timestamp directory: " + e );
+            throw new MojoExecutionException( "Failed to rewrite generated helpers in " + outputDirectory, e );
+        }
+        finally
+        {
+            report.addPhaseTime( BuildReport.OUTPUT, start );
         }
     }
 
-    private void translateIdlFile( File idlFile, Source source, CompilerTranslator translator )
-            throws MojoExecutionException
-    {
-        getLog().debug( "Processing: " + idlFile.toString() );
-        translator.invokeCompiler( getSourceDirectory().getAbsolutePath(),
-                                   getIncludeDirs(),
-                                   getOutputDirectory().getAbsolutePath(),
-                                   idlFile.toString(), source );
-    }
-
-    private void copyToTimestampDirectory( File idlFile ) throws MojoExecutionException, IOException
+    /**
+     * @return the path of an IDL file relative to the source directory, with forward slashes
+     */
+    private String getRelativePath( File idlFile )
     {
-        URI relativeURI = getSourceDirectory().toURI().relativize( idlFile.toURI() );
-        File timestampFile = new File( timestampDirectory.toURI().resolve( relativeURI ) );
-        dependencies.copyFile( idlFile, timestampFile );
+        return getSourceDirectory().toURI().relativize( idlFile.toURI() ).getPath();
     }
 
-    private void reportProcessingNeeded( Set<File> staleGrammars ) throws MojoExecutionException
+    private void reportProcessingNeeded( List<File> staleGrammars ) throws MojoExecutionException
     {
         if ( staleGrammars.size() > 0 )
         {
@@ -276,6 +1518,73 @@ public abstract class AbstractIDLJMojo extends AbstractMojo
         }
     }
 
+    /**
+     * Records the compiler configuration of a source, and returns true if it differs from the configuration recorded
+     * by the last build. Files compiled with a different configuration must be compiled again even if they have not
+     * changed. If the configuration cannot be determined, the files to compile are left to the compiler to reject.
+     *
+     * @param source     the source configuration
+     * @param index      the position of the source in the configuration
+     * @param translator the translator which will compile the source
+     * @return true if all of the files selected by the source should be compiled
+     */
+    private boolean isConfigurationChanged( Source source, int index, AbstractTranslator translator )
+    {
+        String fingerprint;
+        try
+        {
+            fingerprint = getConfigurationFingerprint( translator, getSourceDirectory().getAbsolutePath(),
+                                                       includeDirectories, getOutputDirectory().getAbsolutePath(),
+                                                       source );
+        }
+        catch ( MojoExecutionException | UnsupportedOperationException e )
+        {
+            getLog().debug( "Unable to determine compiler configuration: " + e.getMessage() );
+            return false;
+        }
+
+        String key = "source." + index;
+        Object previous = configurationFingerprints.setProperty( key, fingerprint );
+        if ( previous != null && !fingerprint.equals( previous ) )
+        {
+            getLog().info( "Compiler configuration changed - all idl files will be compiled" );
+        }
+        return !fingerprint.equals( previous );
+    }
+
+    /**
+     * @return the changes to apply to the generated files
+     */
+    private List<SourceRewriter> getSourceRewriters()
+    {
+        List<SourceRewriter> rewriters = new ArrayList<>();
+        if ( lockFreeHelperTypes )
+        {
+            rewriters.add( new HelperTypeRewriter() );
+        }
+        if ( fastSkeletonDispatch )
+        {
+            rewriters.add( new SkeletonDispatchRewriter() );
+        }
+        return rewriters;
+    }
+
+    /**
+     * Returns the compiler configuration for a source, including the processing of the generated files.
+     */
+    private String getConfigurationFingerprint( AbstractTranslator translator, String sourceDirectory,
+                                                File[] includeDirs, String outputDirectory, Source source )
+            throws MojoExecutionException
+    {
+        String fingerprint =
+                translator.getConfigurationFingerprint( sourceDirectory, includeDirs, outputDirectory, source );
+        for ( SourceRewriter rewriter : getSourceRewriters() )
+        {
+            fingerprint += "\n" + rewriter.getName();
+        }
+        return fingerprint;
+    }
+
     /**
      * Determine which idl files need to be compiled.
      *
@@ -288,20 +1597,131 @@ public abstract class AbstractIDLJMojo extends AbstractMojo
         File sourceDir = getSourceDirectory();
         getLog().debug( "sourceDir : " + sourceDir );
 
-        return getStaleSources( createIdlScanner( source ), sourceDir );
+        Set<File> staleGrammars = new HashSet<>( getStaleSources( createIdlScanner( source ), sourceDir ) );
+        long start = System.nanoTime();
+        if ( compareContents )
+        {
+            removeUnchangedContents( staleGrammars );
+        }
+        for ( File includer : affectedByIncludes )
+        {
+            if ( isSelected( source, includer ) )
+            {
+                staleGrammars.add( includer );
+            }
+        }
+        for ( File batchMate : getBatchMatesToRecompile( staleGrammars ) )
+        {
+            if ( isSelected( source, batchMate ) )
+            {
+                staleGrammars.add( batchMate );
+            }
+        }
+        report.addPhaseTime( BuildReport.STALE, start );
+        return staleGrammars;
+    }
+
+    /**
+     * Selects the files compiled in the same invocation as a stale or deleted file, whose generated files can only be
+     * told apart from those of that file by compiling them again.
+     */
+    private Set<File> getBatchMatesToRecompile( Set<File> staleGrammars )
+    {
+        Set<String> changed = new HashSet<>();
+        for ( File staleGrammar : staleGrammars )
+        {
+            changed.add( getRelativePath( staleGrammar ) );
+        }
+
+        Set<File> result = new HashSet<>();
+        for ( String batchMate : outputManifest.getBatchMatesToRecompile( changed, getSourceDirectory() ) )
+        {
+            result.add( new File( getSourceDirectory(), batchMate ) );
+        }
+        if ( !result.isEmpty() )
+        {
+            getLog().debug( "Including files compiled with changed files: " + result );
+        }
+        return result;
+    }
+
+    /**
+     * Removes the files which were modified, but whose contents have not changed since they were last translated.
+     * Their new modification time is recorded, so that they are not reported as stale again.
+     *
+     * @param staleGrammars the files modified since they were last translated
+     */
+    private void removeUnchangedContents( Set<File> staleGrammars )
+    {
+        for ( Iterator<File> iterator = staleGrammars.iterator(); iterator.hasNext(); )
+        {
+            File idlFile = iterator.next();
+            try
+            {
+                if ( stalenessIndex.isUnchanged( idlFile ) )
+                {
+                    getLog().debug( "Contents unchanged: " + idlFile );
+                    iterator.remove();
+                }
+            }
+            catch ( IOException e )
+            {
+                getLog().debug( "Failed to read " + idlFile + ": " + e );
+            }
+        }
+    }
+
+    /**
+     * Returns true if the source's include and exclude patterns select the specified file.
+     *
+     * @param source the source configuration
+     * @param file   a file in the source directory
+     * @return true if the source would compile the file
+     */
+    private boolean isSelected( Source source, File file )
+    {
+        String relativePath = getSourceDirectory().toURI().relativize( file.toURI() ).getPath();
+        relativePath = relativePath.replace( '/', File.separatorChar );
+        return matchesAny( getNonNullSet( "includes", source.getIncludes(), "**/*.idl" ), relativePath )
+                && !matchesAny( getNonNullSet( "excludes", source.getExcludes() ), relativePath );
+    }
+
+    private boolean matchesAny( Set<String> patterns, String relativePath )
+    {
+        for ( String pattern : patterns )
+        {
+            String normalized = pattern.replace( '/', File.separatorChar ).replace( '\\', File.separatorChar );
+            if ( normalized.endsWith( File.separator ) )
+            {
+                normalized += "**";
+            }
+            if ( SelectorUtils.matchPath( normalized, relativePath ) )
+            {
+                return true;
+            }
+        }
+        return false;
     }
 
     private Set<File> getStaleSources( SourceInclusionScanner scanner, File sourceDir ) throws MojoExecutionException
     {
+        long start = System.nanoTime();
+        FlightRecorderEvents.Event event = FlightRecorderEvents.SCAN.begin();
         try
         {
-            return tryToGetStaleSources( scanner, sourceDir );
+            Set<File> staleSources = tryToGetStaleSources( scanner, sourceDir );
+            event.commit( sourceDir.getPath(), staleSources.size() );
+            return staleSources;
         }
         catch ( InclusionScanException e )
         {
             throw new MojoExecutionException( "Error scanning source root: \'" + sourceDir
                     + "\' for stale CORBA IDL files to reprocess.", e );
         }
+        finally
+        {
+            report.addPhaseTime( BuildReport.SCAN, start );
+        }
     }
 
     private Set<File> tryToGetStaleSources( SourceInclusionScanner scanner,
@@ -323,14 +1743,29 @@ public abstract class AbstractIDLJMojo extends AbstractMojo
         return dependencies.exists( sourceDir ) && dependencies.isDirectory( sourceDir );
     }
 
+    /**
+     * Returns all of the idl files selected by a source, whether or not they are up to date.
+     *
+     * @param source the <code>Source</code> that represents which files to compile
+     * @return the selected files
+     * @throws MojoExecutionException if the selection of the files fails
+     */
+    private Set<File> getAllSources( Source source ) throws MojoExecutionException
+    {
+        Set<String> includes = getNonNullSet( "includes", source.getIncludes(), "**/*.idl" );
+        Set<String> excludes = getNonNullSet( "excludes", source.getExcludes() );
+
+        SourceInclusionScanner scanner = dependencies.createAllSourcesScanner( includes, excludes, getThreadCount() );
+        return getStaleSources( scanner, getSourceDirectory() );
+    }
+
     private SourceInclusionScanner createIdlScanner( Source source )
     {
         Set<String> includes = getNonNullSet( "includes", source.getIncludes(), "**/*.idl" );
         Set<String> excludes = getNonNullSet( "excludes", source.getExcludes() );
 
-        SourceInclusionScanner scanner = dependencies.createSourceInclusionScanner( staleMillis, includes, excludes );
-        scanner.addSourceMapping( new SuffixMapping( ".idl", ".idl" ) );
-        return scanner;
+        return dependencies.createSourceInclusionScanner( staleMillis, stalenessIndex, includes, excludes,
+                                                          getThreadCount() );
     }
 
     private Set<String> getNonNullSet( String comment, Set<String> set, String... defaultValues )
@@ -373,10 +1808,16 @@ public abstract class AbstractIDLJMojo extends AbstractMojo
 
     interface DependenciesFacade
     {
-        SourceInclusionScanner createSourceInclusionScanner( int updatedWithinMsecs, Set<String> includes,
-                                                             Set<String> excludes );
+        SourceInclusionScanner createSourceInclusionScanner( int updatedWithinMsecs, StalenessIndex index,
+                                                             Set<String> includes, Set<String> excludes,
+                                                             int parallelism );
 
-        void copyFile( File sourceFile, File targetFile ) throws IOException;
+        SourceInclusionScanner createAllSourcesScanner( Set<String> includes, Set<String> excludes,
+                                                        int parallelism );
+
+        StalenessIndex.Snapshot snapshot( File file ) throws IOException;
+
+        void record( StalenessIndex index, StalenessIndex.Snapshot snapshot ) throws IOException;
 
         boolean exists( File outputDirectory );
 
@@ -393,15 +1834,27 @@ public abstract class AbstractIDLJMojo extends AbstractMojo
 
     static class DependenciesFacadeImpl implements DependenciesFacade
     {
-        public void copyFile( File sourceFile, File targetFile ) throws IOException
+        public StalenessIndex.Snapshot snapshot( File file ) throws IOException
+        {
+            return StalenessIndex.snapshot( file );
+        }
+
+        public void record( StalenessIndex index, StalenessIndex.Snapshot snapshot ) throws IOException
+        {
+            index.record( snapshot );
+        }
+
+        public SourceInclusionScanner createSourceInclusionScanner( int updatedWithinMsecs, StalenessIndex index,
+                                                                    Set<String> includes, Set<String> excludes,
+                                                                    int parallelism )
         {
-            FileUtils.copyFile( sourceFile, targetFile );
+            return new IndexedStaleSourceScanner( index, updatedWithinMsecs, includes, excludes, parallelism );
         }
 
-        public SourceInclusionScanner createSourceInclusionScanner( int updatedWithinMsecs, Set<String> includes,
-                                                                    Set<String> excludes )
+        public SourceInclusionScanner createAllSourcesScanner( Set<String> includes, Set<String> excludes,
+                                                               int parallelism )
         {
-            return new StaleSourceScanner( updatedWithinMsecs, includes, excludes );
+            return new ParallelSourceScanner( includes, excludes, parallelism );
         }
 
         public boolean exists( File file )
@@ -21,13 +21,24 @@ package org.codehaus.mojo.idlj;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.StringUtils;
 
-import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 /**
  * Shared capabilities for translators.
@@ -54,6 +65,52 @@ abstract class AbstractTranslator
      */
     private Log log;
 
+    /**
+     * Set to true to run forked compilations in long-lived worker processes.
+     */
+    private boolean reuseForks;
+
+    /**
+     * The directory holding the class data sharing archives used by forked compilers, or null if none are used.
+     */
+    private File classDataSharingDirectory;
+
+    /**
+     * The directory in which compiler output beyond {@link #maxLoggedOutputChars} is written, or null to log it all.
+     */
+    private File outputSpillDirectory;
+
+    /**
+     * The number of characters of compiler output logged for each compilation before the rest is written to a file.
+     */
+    private long maxLoggedOutputChars = Long.MAX_VALUE;
+
+    /**
+     * The number of compilations after which a worker process is replaced.
+     */
+    private int maxJobsPerFork = Integer.MAX_VALUE;
+
+    /**
+     * The heap size, in bytes, beyond which a worker process is replaced.
+     */
+    private long maxForkHeapBytes = Long.MAX_VALUE;
+
+    /**
+     * The report to which the time spent in each phase of the translation is added.
+     */
+    private BuildReport report = new BuildReport();
+
+    /**
+     * The exit code of the latest compilation, or null if the compiler has not run.
+     */
+    private Integer lastExitCode;
+
+    /**
+     * The private copies of compilers which allow in-process compilations to run concurrently, or null if
+     * in-process compilations with the same compiler run one at a time.
+     */
+    private IsolatedCompilerLoaders isolatedLoaders;
+
     /* A facade to enable unit testing to control compiler access. */
     private static ClassLoaderFacade classLoaderFacade = new ClassLoaderFacadeImpl();
 
@@ -62,6 +119,22 @@ abstract class AbstractTranslator
      */
     private static boolean fork = true;
 
+    /**
+     * Locks which keep in-process compilers that rely on static state from running concurrently. There is one
+     * lock per loaded compiler class, so that unrelated compilers do not wait for one another.
+     */
+    private static final Map<Class<?>, Object> COMPILER_LOCKS = new WeakHashMap<>();
+
+    /**
+     * The size of the buffer used to pass the output of a forked compiler on as it is read.
+     */
+    private static final int TRANSFER_BUFFER_SIZE = 8192;
+
+    /**
+     * The exit code recorded for a compilation which failed without one of its own.
+     */
+    static final int CRASHED = -1;
+
     /**
      * @return the debug
      */
@@ -110,6 +183,69 @@ abstract class AbstractTranslator
         this.failOnError = failOnError;
     }
 
+    /**
+     * @param report the report to which the time spent in each phase of the translation is added
+     */
+    void setReport( BuildReport report )
+    {
+        this.report = report;
+    }
+
+    /**
+     * @return the exit code of the latest compilation, non-zero if the compiler reported errors, or null if this
+     *         translator has not run the compiler
+     */
+    Integer getLastExitCode()
+    {
+        return lastExitCode;
+    }
+
+    /**
+     * Specifies the private copies of compilers to use for in-process compilations, if the compiler supports it.
+     *
+     * @param isolatedLoaders the copies, or null to run in-process compilations with the same compiler one at a time
+     */
+    void setIsolatedLoaders( IsolatedCompilerLoaders isolatedLoaders )
+    {
+        this.isolatedLoaders = isolatedLoaders;
+    }
+
+    /**
+     * Specifies whether forked compilations run in reusable worker processes, and when those are replaced.
+     *
+     * @param reuseForks       true to keep worker processes for later compilations
+     * @param maxJobsPerFork   the number of compilations after which a worker is replaced
+     * @param maxForkHeapBytes the heap in use after a compilation beyond which a worker is replaced
+     */
+    void setForkReuse( boolean reuseForks, int maxJobsPerFork, long maxForkHeapBytes )
+    {
+        this.reuseForks = reuseForks;
+        this.maxJobsPerFork = maxJobsPerFork;
+        this.maxForkHeapBytes = maxForkHeapBytes;
+    }
+
+    /**
+     * Specifies where forked compilers keep the archives of the classes they load, so that later forks start faster.
+     *
+     * @param classDataSharingDirectory the directory holding the archives, or null to use no archives
+     */
+    void setClassDataSharingDirectory( File classDataSharingDirectory )
+    {
+        this.classDataSharingDirectory = classDataSharingDirectory;
+    }
+
+    /**
+     * Limits the amount of compiler output sent to the log for each compilation.
+     *
+     * @param outputSpillDirectory the directory in which to write the output beyond the limit
+     * @param maxLoggedOutputChars the number of characters of output to log
+     */
+    void setOutputLimit( File outputSpillDirectory, long maxLoggedOutputChars )
+    {
+        this.outputSpillDirectory = outputSpillDirectory;
+        this.maxLoggedOutputChars = maxLoggedOutputChars;
+    }
+
     /**
      * Returns true if the translator is allowed to create a new forked process.
      * @return true if forking is permitted
@@ -127,6 +263,18 @@ abstract class AbstractTranslator
     {
         AbstractTranslator.classLoaderFacade = classLoaderFacade;
         AbstractTranslator.fork = false;
+        CompilerRegistry.clear();
+    }
+
+    /**
+     * Adds locations in which to look for compiler classes ahead of those already searched.
+     *
+     * @param urls the locations to search first
+     */
+    static void prependCompilerUrls( URL... urls )
+    {
+        classLoaderFacade.prependUrls( urls );
+        CompilerRegistry.forgetClassNames();
     }
 
     /**
@@ -138,6 +286,164 @@ abstract class AbstractTranslator
         return classLoaderFacade;
     }
 
+    /**
+     * Returns true if the compiler can translate several IDL files in a single invocation.
+     *
+     * @return true if {@link #invokeCompiler(String, File[], String, List, Source)} passes all files at once
+     */
+    boolean isBatchSupported()
+    {
+        return false;
+    }
+
+    /**
+     * Returns true if the compiler depends only on the classes in its own jar, so that a private copy of it can be
+     * loaded for each concurrent in-process compilation.
+     *
+     * @return true if the compiler can run in an isolated class loader
+     */
+    boolean isIsolationSupported()
+    {
+        return false;
+    }
+
+    /**
+     * Translates several IDL files which share the same source configuration. Compilers which do not accept more
+     * than one file are invoked once per file.
+     *
+     * @param sourceDirectory the path to the sources
+     * @param includeDirs     the <code>File[]</code> of directories where to find the includes
+     * @param targetDirectory the path to the destination of the compilation
+     * @param idlFiles        the paths to the files to compile
+     * @param source          the source set on which to run the compiler
+     * @throws MojoExecutionException the exception is thrown whenever the compilation fails or crashes
+     */
+    void invokeCompiler( String sourceDirectory, File[] includeDirs, String targetDirectory, List<String> idlFiles,
+                         Source source )
+            throws MojoExecutionException
+    {
+        for ( String idlFile : idlFiles )
+        {
+            invokeCompiler( sourceDirectory, includeDirs, targetDirectory, idlFile, source );
+        }
+    }
+
+    /**
+     * Returns the arguments passed to the compiler for the specified source configuration, other than the names of
+     * the files to compile.
+     *
+     * @param sourceDirectory the path to the sources
+     * @param includeDirs     the <code>File[]</code> of directories where to find the includes
+     * @param targetDirectory the path to the destination of the compilation
+     * @param source          the source set on which to run the compiler
+     * @return the compiler arguments
+     * @throws MojoExecutionException if the compiler does not support the configuration
+     */
+    abstract List<String> getArguments( String sourceDirectory, File[] includeDirs, String targetDirectory,
+                                        Source source )
+            throws MojoExecutionException;
+
+    /**
+     * @return the <code>Class</code> that implements the compiler
+     * @throws MojoExecutionException if the compiler is not available
+     */
+    abstract Class<?> getCompilerClass() throws MojoExecutionException;
+
+    /**
+     * Returns the arguments passed to the compiler, as {@link #getArguments}, and reports the time taken.
+     *
+     * @param sourceDirectory the path to the sources
+     * @param includeDirs     the <code>File[]</code> of directories where to find the includes
+     * @param targetDirectory the path to the destination of the compilation
+     * @param source          the source set on which to run the compiler
+     * @return the compiler arguments
+     * @throws MojoExecutionException if the compiler does not support the configuration
+     */
+    List<String> buildArguments( String sourceDirectory, File[] includeDirs, String targetDirectory, Source source )
+            throws MojoExecutionException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            return getArguments( sourceDirectory, includeDirs, targetDirectory, source );
+        }
+        finally
+        {
+            report.addPhaseTime( BuildReport.ARGUMENTS, start );
+        }
+    }
+
+    /**
+     * Returns the compiler, as {@link #getCompilerClass}, and reports the time taken to load it.
+     *
+     * @return the <code>Class</code> that implements the compiler
+     * @throws MojoExecutionException if the compiler is not available
+     */
+    Class<?> loadCompilerClass() throws MojoExecutionException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            return getCompilerClass();
+        }
+        finally
+        {
+            report.addPhaseTime( BuildReport.CLASS_LOADING, start );
+        }
+    }
+
+    /**
+     * Returns a description of everything, other than the IDL files themselves, which determines the code generated
+     * for a source configuration: the translator, the compiler and its version, and the compiler arguments.
+     * Generated code is out of date whenever this description changes.
+     *
+     * @param sourceDirectory the path to the sources
+     * @param includeDirs     the <code>File[]</code> of directories where to find the includes
+     * @param targetDirectory the path to the destination of the compilation
+     * @param source          the source set on which to run the compiler
+     * @return the description, one item per line
+     * @throws MojoExecutionException if the compiler does not support the configuration
+     */
+    String getConfigurationFingerprint( String sourceDirectory, File[] includeDirs, String targetDirectory,
+                                        Source source )
+            throws MojoExecutionException
+    {
+        StringBuilder fingerprint = new StringBuilder( getClass().getName() );
+        fingerprint.append( '\n' ).append( getCompilerIdentity() );
+        for ( String arg : getArguments( sourceDirectory, includeDirs, targetDirectory, source ) )
+        {
+            fingerprint.append( '\n' ).append( arg );
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * Identifies the compiler by its class and version. The version is that declared by the compiler's jar if any,
+     * otherwise the location from which the compiler was loaded, or for a compiler in the JDK, the java version.
+     */
+    private String getCompilerIdentity()
+    {
+        Class<?> compilerClass;
+        try
+        {
+            compilerClass = getCompilerClass();
+        }
+        catch ( MojoExecutionException e )
+        {
+            return "unavailable";
+        }
+
+        Package compilerPackage = compilerClass.getPackage();
+        String version = compilerPackage == null ? null : compilerPackage.getImplementationVersion();
+        if ( version == null )
+        {
+            CodeSource codeSource = compilerClass.getProtectionDomain().getCodeSource();
+            version = codeSource != null && codeSource.getLocation() != null
+                    ? codeSource.getLocation().toString() : System.getProperty( "java.version" );
+        }
+        return compilerClass.getName() + " " + version;
+    }
+
     /**
      * Invokes the configured compiler and throws an exception if anything goes wrong
      * @param compilerClass the class representing the compiler to invoke
@@ -150,28 +456,81 @@ abstract class AbstractTranslator
 
         getLog().debug( getCommandLine( compilerClass, arguments ) );
 
-        // Local channels
-        ByteArrayOutputStream err = new ByteArrayOutputStream();
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompilerDiagnostics diagnostics = createDiagnostics();
+
+        long start = System.nanoTime();
+        int exitCode;
+        lastExitCode = CRASHED;
+        try
+        {
+            exitCode = runCompilerAndRecordOutput( compilerClass, arguments, diagnostics );
+        }
+        finally
+        {
+            report.addPhaseTime( BuildReport.COMPILE, start );
+        }
+
+        start = System.nanoTime();
+        try
+        {
+            diagnostics.close();
+            boolean failed = exitCode != 0 || diagnostics.hasErrors();
+            lastExitCode = failed && exitCode == 0 ? CRASHED : exitCode;
+            if ( isFailOnError() && failed )
+            {
+                throw new MojoExecutionException( "IDL compilation failed" );
+            }
+        }
+        finally
+        {
+            report.addPhaseTime( BuildReport.OUTPUT, start );
+        }
+    }
 
-        int exitCode = runCompilerAndRecordOutput( compilerClass, arguments, err, out );
-        logOutputMessages( err, out );
+    private int runCompilerAndRecordOutput( Class<?> compilerClass, String[] arguments,
+                                            CompilerDiagnostics diagnostics ) throws MojoExecutionException
+    {
+        Class<?> isolatedClass = borrowIsolatedCompiler( compilerClass );
+        if ( isolatedClass != null )
+        {
+            try
+            {
+                return runCapturingOutput( isolatedClass, arguments, diagnostics );
+            }
+            finally
+            {
+                isolatedLoaders.release( compilerClass, isolatedClass );
+            }
+        }
 
-        if ( isFailOnError() && isCompilationFailed( err, exitCode ) )
+        synchronized ( getCompilerLock( compilerClass ) )
         {
-            throw new MojoExecutionException( "IDL compilation failed" );
+            return runCapturingOutput( compilerClass, arguments, diagnostics );
         }
     }
 
-    private int runCompilerAndRecordOutput( Class<?> compilerClass, String[] arguments, ByteArrayOutputStream err,
-                                            ByteArrayOutputStream out ) throws MojoExecutionException
+    private Class<?> borrowIsolatedCompiler( Class<?> compilerClass )
     {
-        // Backup std channels
-        PrintStream stdErr = System.err;
-        PrintStream stdOut = System.out;
+        if ( isolatedLoaders == null || !isIsolationSupported() )
+        {
+            return null;
+        }
 
-        System.setErr( new PrintStream( err ) );
-        System.setOut( new PrintStream( out ) );
+        try
+        {
+            return isolatedLoaders.borrow( compilerClass );
+        }
+        catch ( IOException e )
+        {
+            getLog().debug( "Running the shared compiler: " + e );
+            return null;
+        }
+    }
+
+    private int runCapturingOutput( Class<?> compilerClass, String[] arguments, CompilerDiagnostics diagnostics )
+            throws MojoExecutionException
+    {
+        OutputCapture capture = OutputCapture.start( diagnostics.getOut(), diagnostics.getErr() );
         try
         {
             return runCompiler( compilerClass, arguments );
@@ -190,57 +549,250 @@ abstract class AbstractTranslator
         }
         finally
         {
-            // Restore std channels
-            System.setErr( stdErr );
-            System.setOut( stdOut );
+            capture.stop();
+        }
+    }
+
+    private static Object getCompilerLock( Class<?> compilerClass )
+    {
+        synchronized ( COMPILER_LOCKS )
+        {
+            Object lock = COMPILER_LOCKS.get( compilerClass );
+            if ( lock == null )
+            {
+                lock = new Object();
+                COMPILER_LOCKS.put( compilerClass, lock );
+            }
+            return lock;
         }
     }
 
     /**
-     * Runs the IDL compiler
-     * @param compilerClass the class which implements the compiler
-     * @param arguments the arguments to pass to the compiler
-     * @return the return status (a non-zero value indicates an error)
-     * @throws NoSuchMethodException if the method which should run the compiler does not exist
-     * @throws IllegalAccessException if no constructor is available
-     * @throws InvocationTargetException if an error occurs while invoking the compiler
+     * Runs the configured compiler in a separate java process, using the classpath of this plugin, and throws an
+     * exception if it fails. The output of the process is sent to the log. Unless reuse has been disabled, the
+     * compilation runs in a worker process kept from an earlier compilation.
+     *
+     * @param compilerClass the class containing the compiler
+     * @param entryPoint the name of the static method which runs the compiler in a worker process
+     * @param args the arguments to pass to the compiler
+     * @throws MojoExecutionException if any error occurs
      */
-    protected abstract int runCompiler( Class<?> compilerClass, String... arguments )
-            throws NoSuchMethodException, IllegalAccessException, InvocationTargetException;
-
-    private boolean isCompilationFailed( ByteArrayOutputStream err, int exitCode )
+    void invokeCompilerInForkedProcess( Class<?> compilerClass, String entryPoint, List<String> args )
+            throws MojoExecutionException
     {
-        return exitCode != 0 || hasErrors( err );
+        if ( reuseForks )
+        {
+            invokeCompilerInWorker( compilerClass, entryPoint, args );
+        }
+        else
+        {
+            invokeCompilerInNewProcess( compilerClass, args );
+        }
     }
 
-    private boolean hasErrors( ByteArrayOutputStream err )
+    private void invokeCompilerInWorker( Class<?> compilerClass, String entryPoint, List<String> args )
+            throws MojoExecutionException
     {
-        for ( String message : err.toString().split( "\n" ) )
+        if ( isDebug() )
+        {
+            getLog().debug( getCommandLine( compilerClass, args.toArray( new String[args.size()] ) ) );
+        }
+
+        lastExitCode = CRASHED;
+        try
         {
-            if ( message.contains( "(line " ) && !message.contains( "WARNING" ) )
+            long start = System.nanoTime();
+            ForkedCompilerPool.Result result;
+            try
+            {
+                List<String> javaCommand = getJavaCommand();
+                result = ForkedCompilerPool.getPool( javaCommand, getClassDataSharing( javaCommand ) )
+                        .compile( compilerClass.getName(), entryPoint, args, maxJobsPerFork, maxForkHeapBytes );
+            }
+            finally
             {
-                getLog().debug( "Failed due to error: <" + message + ">" );
-                return true;
+                report.addPhaseTime( BuildReport.COMPILE, start );
+            }
+
+            start = System.nanoTime();
+            CompilerDiagnostics diagnostics = createDiagnostics();
+            diagnostics.getOut().write( result.getOut() );
+            diagnostics.getErr().write( result.getErr() );
+            diagnostics.close();
+            report.addPhaseTime( BuildReport.OUTPUT, start );
+
+            lastExitCode = result.getExitCode();
+            if ( isFailOnError() && result.getExitCode() != 0 )
+            {
+                throw new MojoExecutionException( "IDL Compilation failure" );
             }
         }
-        return false;
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Error running forked compiler", e );
+        }
     }
 
-    private void logOutputMessages( ByteArrayOutputStream err, ByteArrayOutputStream out )
+    private void invokeCompilerInNewProcess( Class<?> compilerClass, List<String> args ) throws MojoExecutionException
     {
-        if ( isNotEmpty( out ) )
+        // Construct list of arguments
+        List<String> binArgs = new ArrayList<>( getJavaCommand() );
+        ClassDataSharing classDataSharing = getClassDataSharing( binArgs );
+        List<String> archiveOptions =
+                classDataSharing == null ? Collections.<String>emptyList() : classDataSharing.startJvm();
+        binArgs.addAll( 1, archiveOptions );
+
+        // Add class containing main method to arg list
+        binArgs.add( compilerClass.getName() );
+
+        // Add java arguments
+        binArgs.addAll( args );
+
+        // Convert arg list to array
+        String[] argArray = binArgs.toArray( new String[binArgs.size()] );
+
+        if ( isDebug() )
+        {
+            getLog().debug( StringUtils.join( argArray, " " ) );
+        }
+
+        long start = System.nanoTime();
+        lastExitCode = CRASHED;
+        try
+        {
+            FlightRecorderEvents.Event event = FlightRecorderEvents.FORK.begin();
+            Process p = Runtime.getRuntime().exec( argArray );
+            event.commit( StringUtils.join( argArray, " " ), false );
+            CompilerDiagnostics diagnostics = createDiagnostics();
+            Thread errTransfer = redirectStream( p.getErrorStream(), diagnostics.getErr() );
+            Thread outTransfer = redirectStream( p.getInputStream(), diagnostics.getOut() );
+
+            p.waitFor();
+            errTransfer.join();
+            outTransfer.join();
+            if ( ClassDataSharing.isRecording( archiveOptions ) )
+            {
+                classDataSharing.recordingComplete();
+            }
+            report.addPhaseTime( BuildReport.COMPILE, start );
+
+            start = System.nanoTime();
+            diagnostics.close();
+            report.addPhaseTime( BuildReport.OUTPUT, start );
+
+            lastExitCode = p.exitValue();
+            if ( isFailOnError() && p.exitValue() != 0 )
+            {
+                throw new MojoExecutionException( "IDL Compilation failure" );
+            }
+        }
+        catch ( IOException e )
         {
-            getLog().info( out.toString() );
+            throw new MojoExecutionException( "Error forking compiler", e );
         }
-        if ( isNotEmpty( err ) )
+        catch ( InterruptedException e )
         {
-            getLog().error( err.toString() );
+            throw new MojoExecutionException( "Thread interrupted unexpectedly", e );
         }
     }
 
-    private boolean isNotEmpty( ByteArrayOutputStream outputStream )
+    /**
+     * Returns the class data sharing archive for JVMs started with the specified command.
+     *
+     * @param javaCommand the command returned by {@link #getJavaCommand}
+     * @return the archive, or null if none is to be used
+     */
+    private ClassDataSharing getClassDataSharing( List<String> javaCommand )
     {
-        return !"".equals( outputStream.toString() );
+        return classDataSharingDirectory == null ? null
+                : ClassDataSharing.forClassPath( classDataSharingDirectory, javaCommand.get( 2 ) );
+    }
+
+    /**
+     * Returns the command which starts a java process with the classpath of this plugin.
+     *
+     * @return the java executable followed by its classpath option
+     */
+    private List<String> getJavaCommand()
+    {
+        // Get path to java binary
+        File javaHome = new File( System.getProperty( "java.home" ) );
+        File javaBin = new File( new File( javaHome, "bin" ), "java" );
+
+        // Get current class path
+        URLClassLoader cl = (URLClassLoader) this.getClass().getClassLoader();
+        URL[] classPathUrls = cl.getURLs();
+
+        List<String> command = new ArrayList<>();
+
+        // First argument is the java binary to run
+        command.add( javaBin.getPath() );
+
+        // Add the classpath to argument list
+        command.add( "-classpath" );
+        String classPath = "" + new File( classPathUrls[0].getPath().replaceAll( "%20", " " ) );
+        for ( URL url : classPathUrls )
+        {
+            classPath += File.pathSeparator + new File( url.getPath().replaceAll( "%20", " " ) );
+        }
+        command.add( classPath );
+        return command;
+    }
+
+    /**
+     * Copies the bytes read from an <code>InputStream</code> to an <code>OutputStream</code>
+     * on a separate thread.
+     *
+     * @param in  the <code>InputStream</code> to read from
+     * @param out the <code>OutputStream</code> to write into
+     * @return the thread performing the copy
+     */
+    private static Thread redirectStream( final InputStream in, final OutputStream out )
+    {
+        Thread transferThread = new Thread()
+        {
+            public void run()
+            {
+                PrintStream ps = new PrintStream( out, true );
+                try
+                {
+                    byte[] buffer = new byte[TRANSFER_BUFFER_SIZE];
+                    int count;
+                    while ( ( count = in.read( buffer ) ) != -1 )
+                    {
+                        ps.write( buffer, 0, count );
+                    }
+                }
+                catch ( IOException e )
+                {
+                    ps.println( e );
+                }
+            }
+        };
+        transferThread.start();
+        return transferThread;
+    }
+
+    /**
+     * Runs the IDL compiler
+     * @param compilerClass the class which implements the compiler
+     * @param arguments the arguments to pass to the compiler
+     * @return the return status (a non-zero value indicates an error)
+     * @throws NoSuchMethodException if the method which should run the compiler does not exist
+     * @throws IllegalAccessException if no constructor is available
+     * @throws InvocationTargetException if an error occurs while invoking the compiler
+     */
+    protected abstract int runCompiler( Class<?> compilerClass, String... arguments )
+            throws NoSuchMethodException, IllegalAccessException, InvocationTargetException;
+
+    /**
+     * Creates the parser for the output of a compilation, which passes the output on to the log as it is written.
+     *
+     * @return the parser
+     */
+    CompilerDiagnostics createDiagnostics()
+    {
+        return new CompilerDiagnostics( getLog(), outputSpillDirectory, maxLoggedOutputChars );
     }
 
     private String getCommandLine( Class<?> compilerClass, String[] arguments )
@@ -282,12 +834,25 @@ abstract class AbstractTranslator
     {
         ClassLoader classLoader = getClass().getClassLoader();
 
-        public void prependUrls( URL... urls )
+        private final Set<URL> prependedUrls = new HashSet<>();
+
+        public synchronized void prependUrls( URL... urls )
         {
-            classLoader = new URLClassLoader( urls, classLoader );
+            List<URL> newUrls = new ArrayList<>();
+            for ( URL url : urls )
+            {
+                if ( prependedUrls.add( url ) )
+                {
+                    newUrls.add( url );
+                }
+            }
+            if ( !newUrls.isEmpty() )
+            {
+                classLoader = new URLClassLoader( newUrls.toArray( new URL[newUrls.size()] ), classLoader );
+            }
         }
 
-        public Class<?> loadClass( String idlCompilerClass ) throws ClassNotFoundException
+        public synchronized Class<?> loadClass( String idlCompilerClass ) throws ClassNotFoundException
         {
             return classLoader.loadClass( idlCompilerClass );
         }
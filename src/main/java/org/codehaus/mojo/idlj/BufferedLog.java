@@ -0,0 +1,437 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A <code>Log</code> which holds on to its messages until they are replayed into another log. Used so that
+ * IDL files translated concurrently still report their messages in a predictable order.
+ * <p>
+ * Only a bounded amount of text is held in memory. Beyond it, messages are written to a file, and read back when
+ * they are replayed; the stack trace of an error written to the file is replayed as part of its message. Once the
+ * log is told to pass its messages through, it replays what it holds and sends later messages straight to the
+ * target log.
+ */
+class BufferedLog
+        implements Log
+{
+    /**
+     * The severity of a recorded message, which knows how to write it to a log.
+     */
+    private enum Level
+    {
+        DEBUG
+        {
+            @Override
+            void write( Log log, CharSequence message, Throwable error )
+            {
+                if ( error == null )
+                {
+                    log.debug( message );
+                }
+                else if ( message == null )
+                {
+                    log.debug( error );
+                }
+                else
+                {
+                    log.debug( message, error );
+                }
+            }
+        },
+        INFO
+        {
+            @Override
+            void write( Log log, CharSequence message, Throwable error )
+            {
+                if ( error == null )
+                {
+                    log.info( message );
+                }
+                else if ( message == null )
+                {
+                    log.info( error );
+                }
+                else
+                {
+                    log.info( message, error );
+                }
+            }
+        },
+        WARN
+        {
+            @Override
+            void write( Log log, CharSequence message, Throwable error )
+            {
+                if ( error == null )
+                {
+                    log.warn( message );
+                }
+                else if ( message == null )
+                {
+                    log.warn( error );
+                }
+                else
+                {
+                    log.warn( message, error );
+                }
+            }
+        },
+        ERROR
+        {
+            @Override
+            void write( Log log, CharSequence message, Throwable error )
+            {
+                if ( error == null )
+                {
+                    log.error( message );
+                }
+                else if ( message == null )
+                {
+                    log.error( error );
+                }
+                else
+                {
+                    log.error( message, error );
+                }
+            }
+        };
+
+        abstract void write( Log log, CharSequence message, Throwable error );
+    }
+
+    /**
+     * The number of characters of messages held in memory before the rest are written to a file.
+     */
+    static final long MAX_BUFFERED_CHARS = 64 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private static final Level[] LEVELS = Level.values();
+
+    /**
+     * The log to which messages will eventually be written. Only consulted for the enabled levels.
+     */
+    private final Log target;
+
+    private final File spillDirectory;
+
+    private final long maxBufferedChars;
+
+    /**
+     * The messages recorded before any were written to the spill file.
+     */
+    private final List<Entry> entries = new ArrayList<>();
+
+    /**
+     * The messages which could not be written to the spill file, which follow those written to it.
+     */
+    private final List<Entry> unspilled = new ArrayList<>();
+
+    private long bufferedChars;
+
+    private File spillFile;
+
+    private DataOutputStream spillOutput;
+
+    private int spilledCount;
+
+    private boolean passingThrough;
+
+    /**
+     * Creates a buffer for messages to be sent to the specified log.
+     *
+     * @param target           the log which will receive the messages when they are replayed
+     * @param spillDirectory   the directory in which to create the file receiving the messages beyond the limit, or
+     *                         null to hold all of them in memory
+     * @param maxBufferedChars the number of characters of messages to hold in memory
+     */
+    BufferedLog( Log target, File spillDirectory, long maxBufferedChars )
+    {
+        this.target = target;
+        this.spillDirectory = spillDirectory;
+        this.maxBufferedChars = spillDirectory == null ? Long.MAX_VALUE : maxBufferedChars;
+    }
+
+    /**
+     * Writes all buffered messages to the target log, in the order in which they were recorded.
+     */
+    synchronized void replay()
+    {
+        for ( Entry entry : entries )
+        {
+            entry.writeTo( target );
+        }
+        entries.clear();
+        bufferedChars = 0;
+        replaySpilled();
+        for ( Entry entry : unspilled )
+        {
+            entry.writeTo( target );
+        }
+        unspilled.clear();
+    }
+
+    /**
+     * Writes all buffered messages to the target log, and sends the messages recorded from now on straight to it.
+     */
+    synchronized void passThrough()
+    {
+        replay();
+        passingThrough = true;
+    }
+
+    /**
+     * Forgets all buffered messages.
+     */
+    synchronized void discard()
+    {
+        entries.clear();
+        unspilled.clear();
+        bufferedChars = 0;
+        closeSpillFile();
+    }
+
+    private synchronized void record( Level level, CharSequence message, Throwable error )
+    {
+        if ( passingThrough )
+        {
+            level.write( target, message, error );
+        }
+        else if ( spillOutput == null && bufferedChars < maxBufferedChars )
+        {
+            entries.add( new Entry( level, message, error ) );
+            bufferedChars += message == null ? 0 : message.length();
+        }
+        else if ( !unspilled.isEmpty() || !spill( level, message, error ) )
+        {
+            unspilled.add( new Entry( level, message, error ) );
+        }
+    }
+
+    /**
+     * Writes a message to the spill file.
+     *
+     * @return false if the message could not be written
+     */
+    private boolean spill( Level level, CharSequence message, Throwable error )
+    {
+        try
+        {
+            if ( spillOutput == null )
+            {
+                spillDirectory.mkdirs();
+                spillFile = File.createTempFile( "buffered-log", ".log", spillDirectory );
+                spillOutput = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( spillFile ) ) );
+            }
+            byte[] text = toText( message, error ).getBytes( UTF_8 );
+            spillOutput.writeByte( level.ordinal() );
+            spillOutput.writeInt( text.length );
+            spillOutput.write( text );
+            spilledCount++;
+            return true;
+        }
+        catch ( IOException e )
+        {
+            return false;
+        }
+    }
+
+    private static String toText( CharSequence message, Throwable error )
+    {
+        if ( error == null )
+        {
+            return message.toString();
+        }
+        StringWriter trace = new StringWriter();
+        error.printStackTrace( new PrintWriter( trace ) );
+        return message == null ? trace.toString() : message + System.lineSeparator() + trace;
+    }
+
+    private void replaySpilled()
+    {
+        if ( spillOutput == null )
+        {
+            return;
+        }
+
+        try
+        {
+            spillOutput.close();
+            try ( DataInputStream input =
+                          new DataInputStream( new BufferedInputStream( new FileInputStream( spillFile ) ) ) )
+            {
+                for ( int i = 0; i < spilledCount; i++ )
+                {
+                    Level level = LEVELS[input.readByte()];
+                    byte[] text = new byte[input.readInt()];
+                    input.readFully( text );
+                    level.write( target, new String( text, UTF_8 ), null );
+                }
+            }
+        }
+        catch ( IOException e )
+        {
+            target.warn( "Unable to read buffered messages from " + spillFile + ": " + e );
+        }
+        finally
+        {
+            closeSpillFile();
+        }
+    }
+
+    private void closeSpillFile()
+    {
+        if ( spillOutput != null )
+        {
+            try
+            {
+                spillOutput.close();
+            }
+            catch ( IOException e )
+            {
+                // the file is deleted anyway
+            }
+            spillFile.delete();
+            spillOutput = null;
+            spillFile = null;
+            spilledCount = 0;
+        }
+    }
+
+    public boolean isDebugEnabled()
+    {
+        return target.isDebugEnabled();
+    }
+
+    public void debug( CharSequence content )
+    {
+        record( Level.DEBUG, content, null );
+    }
+
+    public void debug( CharSequence content, Throwable error )
+    {
+        record( Level.DEBUG, content, error );
+    }
+
+    public void debug( Throwable error )
+    {
+        record( Level.DEBUG, null, error );
+    }
+
+    public boolean isInfoEnabled()
+    {
+        return target.isInfoEnabled();
+    }
+
+    public void info( CharSequence content )
+    {
+        record( Level.INFO, content, null );
+    }
+
+    public void info( CharSequence content, Throwable error )
+    {
+        record( Level.INFO, content, error );
+    }
+
+    public void info( Throwable error )
+    {
+        record( Level.INFO, null, error );
+    }
+
+    public boolean isWarnEnabled()
+    {
+        return target.isWarnEnabled();
+    }
+
+    public void warn( CharSequence content )
+    {
+        record( Level.WARN, content, null );
+    }
+
+    public void warn( CharSequence content, Throwable error )
+    {
+        record( Level.WARN, content, error );
+    }
+
+    public void warn( Throwable error )
+    {
+        record( Level.WARN, null, error );
+    }
+
+    public boolean isErrorEnabled()
+    {
+        return target.isErrorEnabled();
+    }
+
+    public void error( CharSequence content )
+    {
+        record( Level.ERROR, content, null );
+    }
+
+    public void error( CharSequence content, Throwable error )
+    {
+        record( Level.ERROR, content, error );
+    }
+
+    public void error( Throwable error )
+    {
+        record( Level.ERROR, null, error );
+    }
+
+    /**
+     * A single recorded message.
+     */
+    private static class Entry
+    {
+        private final Level level;
+
+        private final CharSequence message;
+
+        private final Throwable error;
+
+        Entry( Level level, CharSequence message, Throwable error )
+        {
+            this.level = level;
+            this.message = message;
+            this.error = error;
+        }
+
+        void writeTo( Log log )
+        {
+            level.write( log, message, error );
+        }
+    }
+}
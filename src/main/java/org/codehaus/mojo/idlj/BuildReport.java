@@ -0,0 +1,264 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The time spent in each phase of a build, and on each IDL file. Phase times are summed over all of the threads
+ * translating files, so with several threads they can add up to more than the duration of the build. The report is
+ * written as JSON, and its highlights are logged.
+ */
+class BuildReport
+{
+    static final String SCAN = "scan";
+
+    static final String INCLUDES = "includes";
+
+    static final String STALE = "stale";
+
+    static final String ARGUMENTS = "arguments";
+
+    static final String CLASS_LOADING = "classLoading";
+
+    static final String COMPILE = "compile";
+
+    static final String OUTPUT = "output";
+
+    static final String CACHE = "cache";
+
+    static final String PUBLISH = "publish";
+
+    static final String RECORD = "record";
+
+    /**
+     * The phases in the order in which they are reported.
+     */
+    private static final List<String> PHASES =
+            Arrays.asList( SCAN, INCLUDES, STALE, ARGUMENTS, CLASS_LOADING, COMPILE, OUTPUT, CACHE, PUBLISH, RECORD );
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private final long startNanos = System.nanoTime();
+
+    private final ConcurrentMap<String, AtomicLong> phaseNanos = new ConcurrentHashMap<>();
+
+    private final List<FileTime> files = Collections.synchronizedList( new ArrayList<FileTime>() );
+
+    /**
+     * Adds the time since the specified start to a phase.
+     *
+     * @param phase      the name of the phase
+     * @param startNanos the start of the period, as returned by {@link System#nanoTime()}
+     */
+    void addPhaseTime( String phase, long startNanos )
+    {
+        long elapsed = System.nanoTime() - startNanos;
+        AtomicLong total = phaseNanos.get( phase );
+        if ( total == null )
+        {
+            AtomicLong created = new AtomicLong();
+            total = phaseNanos.putIfAbsent( phase, created );
+            if ( total == null )
+            {
+                total = created;
+            }
+        }
+        total.addAndGet( elapsed );
+    }
+
+    /**
+     * Records the translation of an IDL file. The files translated together in one batch are each reported with
+     * the time and generated files of the whole batch.
+     *
+     * @param idlFile        the path of the IDL file
+     * @param startNanos     the start of the translation, as returned by {@link System#nanoTime()}
+     * @param batchSize      the number of files translated together
+     * @param generatedFiles the number of files generated
+     */
+    void addFile( String idlFile, long startNanos, int batchSize, int generatedFiles )
+    {
+        files.add( new FileTime( idlFile, System.nanoTime() - startNanos, batchSize, generatedFiles ) );
+    }
+
+    /**
+     * Writes the report as a JSON document.
+     *
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    void write( File file ) throws IOException
+    {
+        file.getParentFile().mkdirs();
+        try ( Writer writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( file ), UTF_8 ) ) )
+        {
+            writer.write( "{\n  \"totalMillis\": " + toMillis( System.nanoTime() - startNanos ) + ",\n" );
+            writer.write( "  \"phaseMillis\": {" );
+            String separator = "\n";
+            for ( String phase : getPhases() )
+            {
+                writer.write( separator + "    " + quote( phase ) + ": " + toMillis( phaseNanos.get( phase ).get() ) );
+                separator = ",\n";
+            }
+            writer.write( "\n  },\n  \"files\": [" );
+            separator = "\n";
+            for ( FileTime fileTime : getSlowestFiles( Integer.MAX_VALUE ) )
+            {
+                writer.write( separator + "    { \"file\": " + quote( fileTime.idlFile )
+                                      + ", \"millis\": " + toMillis( fileTime.nanos )
+                                      + ", \"batchSize\": " + fileTime.batchSize
+                                      + ", \"generatedFiles\": " + fileTime.generatedFiles + " }" );
+                separator = ",\n";
+            }
+            writer.write( "\n  ]\n}\n" );
+        }
+    }
+
+    /**
+     * Logs the time spent in each phase, and the files which took longest to translate.
+     *
+     * @param log      the log to write to
+     * @param topFiles the number of files to list
+     */
+    void logSummary( Log log, int topFiles )
+    {
+        if ( files.isEmpty() )
+        {
+            return;
+        }
+
+        StringBuilder phases = new StringBuilder( "Time by phase:" );
+        for ( String phase : getPhases() )
+        {
+            phases.append( ' ' ).append( phase ).append( ' ' ).append( toMillis( phaseNanos.get( phase ).get() ) )
+                    .append( " ms," );
+        }
+        log.info( phases.substring( 0, phases.length() - 1 ) );
+
+        List<FileTime> slowest = getSlowestFiles( topFiles );
+        if ( !slowest.isEmpty() )
+        {
+            log.info( "Slowest idl files:" );
+            for ( FileTime fileTime : slowest )
+            {
+                log.info( "  " + toMillis( fileTime.nanos ) + " ms  " + fileTime.idlFile
+                                  + ( fileTime.batchSize > 1 ? " (batch of " + fileTime.batchSize + ")" : "" ) );
+            }
+        }
+    }
+
+    private Set<String> getPhases()
+    {
+        Set<String> phases = new LinkedHashSet<>();
+        for ( String phase : PHASES )
+        {
+            if ( phaseNanos.containsKey( phase ) )
+            {
+                phases.add( phase );
+            }
+        }
+        phases.addAll( phaseNanos.keySet() );
+        return phases;
+    }
+
+    private List<FileTime> getSlowestFiles( int count )
+    {
+        List<FileTime> sorted;
+        synchronized ( files )
+        {
+            sorted = new ArrayList<>( files );
+        }
+        Collections.sort( sorted, new Comparator<FileTime>()
+        {
+            public int compare( FileTime first, FileTime second )
+            {
+                return Long.compare( second.nanos, first.nanos );
+            }
+        } );
+        return sorted.subList( 0, Math.min( count, sorted.size() ) );
+    }
+
+    private static long toMillis( long nanos )
+    {
+        return TimeUnit.NANOSECONDS.toMillis( nanos );
+    }
+
+    private static String quote( String text )
+    {
+        StringBuilder quoted = new StringBuilder( "\"" );
+        for ( char c : text.toCharArray() )
+        {
+            if ( c == '"' || c == '\\' )
+            {
+                quoted.append( '\\' ).append( c );
+            }
+            else if ( c < ' ' )
+            {
+                quoted.append( String.format( "\\u%04x", (int) c ) );
+            }
+            else
+            {
+                quoted.append( c );
+            }
+        }
+        return quoted.append( '"' ).toString();
+    }
+
+    /**
+     * The time taken to translate a single IDL file.
+     */
+    private static class FileTime
+    {
+        private final String idlFile;
+
+        private final long nanos;
+
+        private final int batchSize;
+
+        private final int generatedFiles;
+
+        FileTime( String idlFile, long nanos, int batchSize, int generatedFiles )
+        {
+            this.idlFile = idlFile;
+            this.nanos = nanos;
+            this.batchSize = batchSize;
+            this.generatedFiles = generatedFiles;
+        }
+    }
+}
@@ -53,7 +53,7 @@ class BuiltInTranslator
     @Override
     void invokeCompiler( List<String> args ) throws MojoExecutionException
     {
-        Class<?> compilerClass = getCompilerClass();
+        Class<?> compilerClass = loadCompilerClass();
         invokeCompiler( compilerClass, args );
     }
 
@@ -61,19 +61,20 @@ class BuiltInTranslator
      * @return the <code>Class</code> that implements the idlj compiler
      * @throws MojoExecutionException if the search for the class fails
      */
-    private static Class<?> getCompilerClass()
+    @Override
+    Class<?> getCompilerClass()
             throws MojoExecutionException
     {
         try
         {
-            return getClassLoaderFacade().loadClass( getIDLCompilerClassName() );
+            return CompilerRegistry.loadClass( getIDLCompilerClassName() );
         }
         catch ( ClassNotFoundException e )
         {
             try
             {
                 addToolsJarToPath();
-                return getClassLoaderFacade().loadClass( getIDLCompilerClassName() );
+                return CompilerRegistry.loadClass( getIDLCompilerClassName() );
             }
             catch ( Exception e2 )
             {
@@ -112,7 +113,7 @@ class BuiltInTranslator
         File javaHome = new File( System.getProperty( "java.home" ) );
         File toolsJar = new File( javaHome, "../lib/tools.jar" );
         URL toolsJarUrl = toolsJar.toURI().toURL();
-        getClassLoaderFacade().prependUrls( toolsJarUrl );
+        prependCompilerUrls( toolsJarUrl );
 
         // Unfortunately the idlj compiler reads messages using the system class path.
         // Therefore this really nasty hack is required.
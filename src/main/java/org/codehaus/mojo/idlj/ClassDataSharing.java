@@ -0,0 +1,246 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A class data sharing archive for the JVMs forked to run a compiler. The first JVM forked with a given class path
+ * records the classes it loads in a new archive when it exits; later JVMs map that archive rather than loading and
+ * verifying the same classes again. Each archive is identified by the JDK and by the path, size and modification
+ * time of every class path entry, so a change to any of these leads to a new archive. Archives require Java 13 or
+ * later, and a class path made only of jars: a JVM asked to record an archive refuses to start if its class path
+ * holds a directory.
+ */
+class ClassDataSharing
+{
+    private static final int FIRST_SUPPORTED_VERSION = 13;
+
+    /**
+     * The number of archives, most recently used first, kept in the archive directory.
+     */
+    private static final int MAX_ARCHIVES = 8;
+
+    private static final String ARCHIVE_SUFFIX = ".jsa";
+
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private static final Map<File, ClassDataSharing> INSTANCES = new HashMap<>();
+
+    /**
+     * Created here rather than where it is used, since archives may be removed from a shutdown hook, once the class
+     * loader of the plugin can no longer load classes.
+     */
+    private static final Comparator<File> NEWEST_FIRST = new Comparator<File>()
+    {
+        public int compare( File first, File second )
+        {
+            return Long.compare( second.lastModified(), first.lastModified() );
+        }
+    };
+
+    private final File archive;
+
+    /**
+     * The file to which a JVM started by this process is recording a new archive, or null if none is.
+     */
+    private File archiveInProgress;
+
+    private ClassDataSharing( File archive )
+    {
+        this.archive = archive;
+    }
+
+    /**
+     * Returns the archive for JVMs started with the specified class path.
+     *
+     * @param directory the directory holding the archives
+     * @param classPath the class path of the forked JVMs
+     * @return the archive, or null if class data sharing is not supported by this JDK or for this class path
+     */
+    static ClassDataSharing forClassPath( File directory, String classPath )
+    {
+        if ( !isSupported() || containsDirectory( classPath ) )
+        {
+            return null;
+        }
+
+        File archive = new File( directory, "compilers-" + computeKey( classPath ) + ARCHIVE_SUFFIX );
+        synchronized ( INSTANCES )
+        {
+            ClassDataSharing instance = INSTANCES.get( archive );
+            if ( instance == null )
+            {
+                instance = new ClassDataSharing( archive );
+                INSTANCES.put( archive, instance );
+            }
+            return instance;
+        }
+    }
+
+    static boolean isSupported()
+    {
+        String version = System.getProperty( "java.specification.version" );
+        try
+        {
+            int major = Integer.parseInt( version.startsWith( "1." ) ? version.substring( 2 ) : version );
+            return major >= FIRST_SUPPORTED_VERSION;
+        }
+        catch ( NumberFormatException e )
+        {
+            return false;
+        }
+    }
+
+    private static boolean containsDirectory( String classPath )
+    {
+        for ( String entry : classPath.split( File.pathSeparator ) )
+        {
+            if ( new File( entry ).isDirectory() )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String computeKey( String classPath )
+    {
+        MessageDigest digest = GeneratedSourcesCache.createKeyDigest();
+        digest.update( System.getProperty( "java.home" ).getBytes( UTF_8 ) );
+        digest.update( System.getProperty( "java.vm.version" ).getBytes( UTF_8 ) );
+        for ( String entry : classPath.split( File.pathSeparator ) )
+        {
+            File file = new File( entry );
+            digest.update( ( entry + '\0' + file.length() + '\0' + file.lastModified() + '\n' ).getBytes( UTF_8 ) );
+        }
+        return GeneratedSourcesCache.toKey( digest ).substring( 0, 32 );
+    }
+
+    /**
+     * Returns the options with which to start a JVM. If the archive exists, the JVM uses it. Otherwise, unless
+     * another JVM is already recording it, the JVM records it as it exits; {@link #recordingComplete} must then be
+     * called once it has.
+     *
+     * @return the JVM options
+     */
+    synchronized List<String> startJvm()
+    {
+        if ( archive.isFile() )
+        {
+            archive.setLastModified( System.currentTimeMillis() );
+            return withLoggingOptions( "-XX:SharedArchiveFile=" + archive.getPath() );
+        }
+        if ( archiveInProgress != null || !archive.getParentFile().isDirectory() && !archive.getParentFile().mkdirs() )
+        {
+            return Collections.emptyList();
+        }
+        archiveInProgress = new File( archive.getPath() + "." + System.nanoTime() + ".tmp" );
+        return withLoggingOptions( "-XX:ArchiveClassesAtExit=" + archiveInProgress.getPath() );
+    }
+
+    /**
+     * Returns true if a JVM started with the specified options records the archive.
+     *
+     * @param jvmOptions the options returned by {@link #startJvm}
+     * @return true if {@link #recordingComplete} must be called once the JVM exits
+     */
+    static boolean isRecording( List<String> jvmOptions )
+    {
+        return !jvmOptions.isEmpty() && jvmOptions.get( 0 ).startsWith( "-XX:ArchiveClassesAtExit=" );
+    }
+
+    /**
+     * Keeps the archive recorded by a JVM which has exited, unless it exited without writing one.
+     */
+    synchronized void recordingComplete()
+    {
+        if ( archiveInProgress == null )
+        {
+            return;
+        }
+        try
+        {
+            if ( archiveInProgress.length() > 0 )
+            {
+                Files.move( archiveInProgress.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE );
+                removeOldArchives();
+            }
+        }
+        catch ( IOException e )
+        {
+            // the next build records the archive again
+        }
+        finally
+        {
+            archiveInProgress.delete();
+            archiveInProgress = null;
+        }
+    }
+
+    File getArchive()
+    {
+        return archive;
+    }
+
+    /**
+     * Warnings, such as an archive which no longer matches the JDK, would mix with the compiler output, so that only
+     * errors are reported. A JVM which cannot use an archive runs without one.
+     */
+    private static List<String> withLoggingOptions( String archiveOption )
+    {
+        return Arrays.asList( archiveOption, "-Xshare:auto", "-Xlog:disable", "-Xlog:all=error:stderr" );
+    }
+
+    private void removeOldArchives()
+    {
+        File[] archives = archive.getParentFile().listFiles();
+        if ( archives == null )
+        {
+            return;
+        }
+        List<File> sorted = new ArrayList<>();
+        for ( File file : archives )
+        {
+            if ( file.getName().endsWith( ARCHIVE_SUFFIX ) )
+            {
+                sorted.add( file );
+            }
+        }
+        Collections.sort( sorted, NEWEST_FIRST );
+        for ( int i = MAX_ARCHIVES; i < sorted.size(); i++ )
+        {
+            sorted.get( i ).delete();
+        }
+    }
+}
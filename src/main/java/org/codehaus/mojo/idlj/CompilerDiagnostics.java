@@ -0,0 +1,345 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Parses the output of a compiler as it is written, rather than once the compiler has finished. Each line is
+ * classified as it completes: on the error stream, a line which refers to a position in an IDL file -
+ * <code>(line N)</code> - is an error, unless it is a warning. Lines are passed on to the log in chunks of bounded
+ * size, standard output at info level and standard error at error level. Once more than a given amount of output
+ * has been logged, the rest is written to a file instead, so that the memory used does not depend on how much the
+ * compiler prints.
+ */
+class CompilerDiagnostics
+{
+    /**
+     * The number of characters of output gathered before they are passed on to the log.
+     */
+    static final int CHUNK_SIZE = 8192;
+
+    private static final String POSITION_MARKER = "(line ";
+
+    private static final String WARNING_MARKER = "WARNING";
+
+    private final Log log;
+
+    private final File spillDirectory;
+
+    private final long maxLoggedChars;
+
+    private final LineStream out = new LineStream( false );
+
+    private final LineStream err = new LineStream( true );
+
+    private long loggedChars;
+
+    private File spillFile;
+
+    private Writer spillWriter;
+
+    private int spilledLines;
+
+    private int errorCount;
+
+    private int warningCount;
+
+    private String firstError;
+
+    /**
+     * Creates a parser which logs all of the output.
+     *
+     * @param log the log to which the output is passed on
+     */
+    CompilerDiagnostics( Log log )
+    {
+        this( log, null, Long.MAX_VALUE );
+    }
+
+    /**
+     * Creates a parser.
+     *
+     * @param log            the log to which the output is passed on
+     * @param spillDirectory the directory in which to create the file receiving the output beyond the limit, or
+     *                       null to log all of the output
+     * @param maxLoggedChars the number of characters of output to log before the rest is written to a file
+     */
+    CompilerDiagnostics( Log log, File spillDirectory, long maxLoggedChars )
+    {
+        this.log = log;
+        this.spillDirectory = spillDirectory;
+        this.maxLoggedChars = spillDirectory == null ? Long.MAX_VALUE : maxLoggedChars;
+    }
+
+    /**
+     * @return the stream to which the compiler writes its standard output
+     */
+    OutputStream getOut()
+    {
+        return out;
+    }
+
+    /**
+     * @return the stream to which the compiler writes its standard error
+     */
+    OutputStream getErr()
+    {
+        return err;
+    }
+
+    /**
+     * Passes on the output not yet logged, including any incomplete last line, and closes the spill file.
+     */
+    void close()
+    {
+        out.finish();
+        err.finish();
+        synchronized ( this )
+        {
+            if ( firstError != null )
+            {
+                log.debug( "Failed due to error: <" + firstError + ">" );
+            }
+            if ( spillWriter != null )
+            {
+                try
+                {
+                    spillWriter.close();
+                }
+                catch ( IOException e )
+                {
+                    log.warn( "Unable to write compiler output to " + spillFile + ": " + e );
+                }
+                log.warn( "The compiler printed more than " + maxLoggedChars + " characters; the remaining "
+                                  + spilledLines + " lines were written to " + spillFile );
+                spillWriter = null;
+            }
+        }
+    }
+
+    /**
+     * @return true if the compiler reported an error on its error stream
+     */
+    synchronized boolean hasErrors()
+    {
+        return errorCount > 0;
+    }
+
+    /**
+     * @return the number of errors reported on the error stream
+     */
+    synchronized int getErrorCount()
+    {
+        return errorCount;
+    }
+
+    /**
+     * @return the number of warnings reported on the error stream
+     */
+    synchronized int getWarningCount()
+    {
+        return warningCount;
+    }
+
+    /**
+     * @return the file holding the output beyond the logging limit, or null if all of the output was logged
+     */
+    synchronized File getSpillFile()
+    {
+        return spillFile;
+    }
+
+    private synchronized void classify( String line )
+    {
+        if ( line.contains( POSITION_MARKER ) )
+        {
+            if ( line.contains( WARNING_MARKER ) )
+            {
+                warningCount++;
+            }
+            else
+            {
+                errorCount++;
+                if ( firstError == null )
+                {
+                    firstError = line;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends a chunk of output to the log, or to the spill file once the log has received its share.
+     */
+    private synchronized void emit( StringBuilder chunk, int lineCount, boolean isError )
+    {
+        if ( spillWriter == null && loggedChars + chunk.length() <= maxLoggedChars )
+        {
+            loggedChars += chunk.length();
+            writeToLog( chunk, isError );
+            return;
+        }
+
+        try
+        {
+            if ( spillWriter == null )
+            {
+                spillDirectory.mkdirs();
+                spillFile = File.createTempFile( "compiler-output", ".log", spillDirectory );
+                spillWriter = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( spillFile ),
+                                                                          Charset.defaultCharset() ) );
+            }
+            spillWriter.append( chunk ).append( '\n' );
+            spilledLines += lineCount;
+        }
+        catch ( IOException e )
+        {
+            writeToLog( chunk, isError );
+        }
+    }
+
+    /**
+     * Writes to the log. Output capture is suspended meanwhile, since the log may print to the very stream being
+     * captured.
+     */
+    private void writeToLog( StringBuilder chunk, boolean isError )
+    {
+        OutputCapture suspended = OutputCapture.suspend();
+        try
+        {
+            if ( isError )
+            {
+                log.error( chunk );
+            }
+            else
+            {
+                log.info( chunk );
+            }
+        }
+        finally
+        {
+            OutputCapture.resume( suspended );
+        }
+    }
+
+    /**
+     * One of the compiler's output streams, split into lines.
+     */
+    private class LineStream
+            extends OutputStream
+    {
+        private final boolean isError;
+
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream( 256 );
+
+        private StringBuilder chunk = new StringBuilder();
+
+        private int chunkLines;
+
+        LineStream( boolean isError )
+        {
+            this.isError = isError;
+        }
+
+        @Override
+        public void write( int b )
+        {
+            if ( b == '\n' )
+            {
+                endLine();
+            }
+            else
+            {
+                line.write( b );
+            }
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len )
+        {
+            int start = off;
+            for ( int i = off; i < off + len; i++ )
+            {
+                if ( b[i] == '\n' )
+                {
+                    line.write( b, start, i - start );
+                    endLine();
+                    start = i + 1;
+                }
+            }
+            line.write( b, start, off + len - start );
+        }
+
+        private void endLine()
+        {
+            String text = line.toString();
+            line.reset();
+            if ( text.endsWith( "\r" ) )
+            {
+                text = text.substring( 0, text.length() - 1 );
+            }
+            if ( isError )
+            {
+                classify( text );
+            }
+
+            if ( chunk.length() > 0 )
+            {
+                chunk.append( '\n' );
+            }
+            chunk.append( text );
+            chunkLines++;
+            if ( chunk.length() >= CHUNK_SIZE )
+            {
+                flushChunk();
+            }
+        }
+
+        private void flushChunk()
+        {
+            if ( chunkLines > 0 )
+            {
+                emit( chunk, chunkLines, isError );
+                chunk = new StringBuilder();
+                chunkLines = 0;
+            }
+        }
+
+        void finish()
+        {
+            if ( line.size() > 0 )
+            {
+                endLine();
+            }
+            flushChunk();
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The compilers loaded by this process, shared by every execution of the plugin. Maven daemons and IDEs keep the
+ * plugin loaded from one build to the next, so a compiler class, once found, is kept along with handles on its entry
+ * points; later executions neither search the class path again nor look the methods up by reflection. Since the
+ * compiler classes stay loaded, the static state in which a compiler keeps the results of a compilation is cleared
+ * after each run, so that it neither holds on to memory nor leaks into the next build.
+ */
+final class CompilerRegistry
+{
+    /**
+     * The type to which every entry point is adapted: it accepts the compiler arguments and returns the compiler's
+     * result, or null if the entry point returns nothing.
+     */
+    private static final MethodType ENTRY_POINT_TYPE = MethodType.methodType( Object.class, String[].class );
+
+    /**
+     * The static fields, by compiler class name, which hold the state of the latest compilation. Each field is named
+     * by the class which declares it, loaded alongside the compiler, and the field name, separated by a '#'.
+     */
+    private static final Map<String, List<String>> COMPILATION_STATE = new HashMap<>();
+
+    static
+    {
+        addIdljCompilationState( "com.sun.tools.corba.ee.idl.toJavaPortable" );
+        addIdljCompilationState( "com.sun.tools.corba.se.idl.toJavaPortable" );
+        addIdljCompilationState( "com.ibm.idl.toJavaPortable" );
+    }
+
+    /**
+     * The idlj compilers keep the latest compiler in Compile, and its symbol table and package translations in Util;
+     * each compilation sets all three again before using them.
+     */
+    private static void addIdljCompilationState( String packageName )
+    {
+        COMPILATION_STATE.put( packageName + ".Compile",
+                               Arrays.asList( packageName + ".Compile#compiler", packageName + ".Util#symbolTable",
+                                              packageName + ".Util#packageTranslation" ) );
+    }
+
+    private static final Map<String, Class<?>> compilerClasses = new HashMap<>();
+
+    private static final Map<Class<?>, LoadedCompiler> loadedCompilers = new WeakHashMap<>();
+
+    private CompilerRegistry()
+    {
+    }
+
+    /**
+     * Returns a compiler class, loading it through the class loader facade the first time it is requested.
+     *
+     * @param className the name of the compiler class
+     * @return the compiler class
+     * @throws ClassNotFoundException if the class cannot be found
+     */
+    static Class<?> loadClass( String className ) throws ClassNotFoundException
+    {
+        synchronized ( compilerClasses )
+        {
+            Class<?> compilerClass = compilerClasses.get( className );
+            if ( compilerClass == null )
+            {
+                compilerClass = AbstractTranslator.getClassLoaderFacade().loadClass( className );
+                compilerClasses.put( className, compilerClass );
+            }
+            return compilerClass;
+        }
+    }
+
+    /**
+     * Runs a compiler through a static entry point which accepts the compiler arguments, then clears the static
+     * state it kept.
+     *
+     * @param compilerClass the class containing the compiler
+     * @param entryPoint    the name of the static method to invoke
+     * @param arguments     the arguments to pass to the compiler
+     * @return the value returned by the entry point, or null if it returns nothing
+     * @throws NoSuchMethodException     if there is no such entry point
+     * @throws IllegalAccessException    if the entry point is not accessible
+     * @throws InvocationTargetException if the compiler throws an exception
+     */
+    static Object run( Class<?> compilerClass, String entryPoint, String... arguments )
+            throws NoSuchMethodException, IllegalAccessException, InvocationTargetException
+    {
+        LoadedCompiler compiler = getLoadedCompiler( compilerClass );
+        MethodHandle handle = compiler.getEntryPoint( entryPoint );
+        try
+        {
+            return (Object) handle.invokeExact( arguments );
+        }
+        catch ( Throwable e )
+        {
+            throw new InvocationTargetException( e );
+        }
+        finally
+        {
+            compiler.clearCompilationState();
+        }
+    }
+
+    private static LoadedCompiler getLoadedCompiler( Class<?> compilerClass ) throws IllegalAccessException
+    {
+        synchronized ( loadedCompilers )
+        {
+            LoadedCompiler compiler = loadedCompilers.get( compilerClass );
+            if ( compiler == null )
+            {
+                compiler = new LoadedCompiler( compilerClass );
+                loadedCompilers.put( compilerClass, compiler );
+            }
+            return compiler;
+        }
+    }
+
+    /**
+     * Forgets the compilers loaded by a class loader which is about to be discarded.
+     *
+     * @param loader the class loader
+     */
+    static void forget( ClassLoader loader )
+    {
+        synchronized ( loadedCompilers )
+        {
+            for ( Iterator<Class<?>> iterator = loadedCompilers.keySet().iterator(); iterator.hasNext(); )
+            {
+                if ( iterator.next().getClassLoader() == loader )
+                {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets which class each compiler name stands for, so that the names are looked up again when the class loader
+     * facade may find different classes for them. A class found again keeps its entry points; a different class, such
+     * as another version of the compiler, gets its own.
+     */
+    static void forgetClassNames()
+    {
+        synchronized ( compilerClasses )
+        {
+            compilerClasses.clear();
+        }
+    }
+
+    /**
+     * Forgets all of the compilers loaded, so that they are loaded again, through the current class loader facade,
+     * when next used.
+     */
+    static void clear()
+    {
+        forgetClassNames();
+        synchronized ( loadedCompilers )
+        {
+            loadedCompilers.clear();
+        }
+    }
+
+    /**
+     * The entry points of a compiler class, and the means of clearing its static state.
+     */
+    private static class LoadedCompiler
+    {
+        private final Class<?> compilerClass;
+
+        private final Map<String, MethodHandle> entryPoints = new HashMap<>();
+
+        private final List<MethodHandle> stateClearers = new ArrayList<>();
+
+        LoadedCompiler( Class<?> compilerClass ) throws IllegalAccessException
+        {
+            this.compilerClass = compilerClass;
+            List<String> stateFields = COMPILATION_STATE.get( compilerClass.getName() );
+            for ( String stateField : stateFields == null ? Collections.<String>emptyList() : stateFields )
+            {
+                Field field = findStaticField( stateField );
+                if ( field != null )
+                {
+                    stateClearers.add( MethodHandles.insertArguments( MethodHandles.lookup().unreflectSetter( field ),
+                                                                      0, (Object) null ) );
+                }
+            }
+        }
+
+        private Field findStaticField( String stateField )
+        {
+            int separator = stateField.indexOf( '#' );
+            try
+            {
+                Class<?> declaringClass =
+                    Class.forName( stateField.substring( 0, separator ), false, compilerClass.getClassLoader() );
+                Field field = declaringClass.getDeclaredField( stateField.substring( separator + 1 ) );
+                int modifiers = field.getModifiers();
+                if ( !Modifier.isStatic( modifiers ) || Modifier.isFinal( modifiers ) || field.getType().isPrimitive() )
+                {
+                    return null;
+                }
+                field.setAccessible( true );
+                return field;
+            }
+            catch ( ClassNotFoundException | NoSuchFieldException | RuntimeException e )
+            {
+                return null;
+            }
+        }
+
+        synchronized MethodHandle getEntryPoint( String name ) throws NoSuchMethodException, IllegalAccessException
+        {
+            MethodHandle handle = entryPoints.get( name );
+            if ( handle == null )
+            {
+                handle = MethodHandles.lookup().unreflect( compilerClass.getMethod( name, String[].class ) )
+                        .asType( ENTRY_POINT_TYPE );
+                entryPoints.put( name, handle );
+            }
+            return handle;
+        }
+
+        void clearCompilationState()
+        {
+            for ( MethodHandle clearer : stateClearers )
+            {
+                try
+                {
+                    clearer.invoke();
+                }
+                catch ( Throwable e )
+                {
+                    // the state is left for the next compilation to replace
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * The main class of a long-lived compiler process. It reads compile requests from its standard input, runs the
+ * requested compiler entry point and writes the exit status and the compiler's output to its standard output.
+ * The process ends when its standard input is closed.
+ * <p>
+ * A request consists of the compiler class name, the name of its static entry point taking a <code>String[]</code>,
+ * the number of arguments and the arguments themselves. A response consists of the exit status, the number of
+ * bytes of heap in use after the compilation, and the bytes written to standard output and standard error.
+ */
+class CompilerWorker
+{
+    private final DataInputStream requests;
+
+    private final DataOutputStream responses;
+
+    private CompilerWorker( DataInputStream requests, DataOutputStream responses )
+    {
+        this.requests = requests;
+        this.responses = responses;
+    }
+
+    /**
+     * Serves compile requests until the standard input is closed.
+     *
+     * @param args ignored
+     * @throws IOException if the connection to the parent process fails
+     */
+    public static void main( String[] args ) throws IOException
+    {
+        DataInputStream requests =
+                new DataInputStream( new BufferedInputStream( new FileInputStream( FileDescriptor.in ) ) );
+        DataOutputStream responses =
+                new DataOutputStream( new BufferedOutputStream( new FileOutputStream( FileDescriptor.out ) ) );
+
+        // anything written outside of a compilation must not corrupt the responses
+        System.setOut( new PrintStream( new FileOutputStream( FileDescriptor.err ), true ) );
+
+        new CompilerWorker( requests, responses ).serve();
+    }
+
+    private void serve() throws IOException
+    {
+        while ( true )
+        {
+            String compilerClassName;
+            try
+            {
+                compilerClassName = requests.readUTF();
+            }
+            catch ( EOFException e )
+            {
+                return;
+            }
+            String entryPoint = requests.readUTF();
+            String[] arguments = new String[requests.readInt()];
+            for ( int i = 0; i < arguments.length; i++ )
+            {
+                arguments[i] = requests.readUTF();
+            }
+
+            compile( compilerClassName, entryPoint, arguments );
+        }
+    }
+
+    private void compile( String compilerClassName, String entryPoint, String[] arguments ) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream stdOut = System.out;
+        PrintStream stdErr = System.err;
+        PrintStream errStream = new PrintStream( err, true );
+
+        System.setOut( new PrintStream( out, true ) );
+        System.setErr( errStream );
+        int exitCode;
+        try
+        {
+            exitCode = runCompiler( compilerClassName, entryPoint, arguments );
+        }
+        catch ( InvocationTargetException e )
+        {
+            e.getTargetException().printStackTrace( errStream );
+            exitCode = 1;
+        }
+        catch ( Throwable e )
+        {
+            e.printStackTrace( errStream );
+            exitCode = 1;
+        }
+        finally
+        {
+            System.setOut( stdOut );
+            System.setErr( stdErr );
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        responses.writeInt( exitCode );
+        responses.writeLong( runtime.totalMemory() - runtime.freeMemory() );
+        writeBytes( out );
+        writeBytes( err );
+        responses.flush();
+    }
+
+    /**
+     * Invokes the compiler. An entry point returning <code>false</code> or a non-zero number indicates failure.
+     */
+    private static int runCompiler( String compilerClassName, String entryPoint, String[] arguments )
+            throws ReflectiveOperationException
+    {
+        Class<?> compilerClass = Class.forName( compilerClassName );
+        Object result = CompilerRegistry.run( compilerClass, entryPoint, arguments );
+        if ( result instanceof Boolean )
+        {
+            return (Boolean) result ? 0 : 1;
+        }
+        return result instanceof Integer ? (Integer) result : 0;
+    }
+
+    private void writeBytes( ByteArrayOutputStream buffer ) throws IOException
+    {
+        responses.writeInt( buffer.size() );
+        buffer.writeTo( responses );
+    }
+}
@@ -0,0 +1,312 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The IDL files included from dependency jars. The jars are read in place through the zip file system, and only
+ * the files which the IDL sources include, directly or through other included files, are extracted so that the
+ * compilers can find them. Each jar is extracted to a directory of a cache shared by all builds, named after the
+ * checksum of the jar: the files extracted by one build are reused by the next, until the jar changes.
+ */
+class DependencyIncludes
+{
+    private static final String IDL_SUFFIX = ".idl";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File cacheDirectory;
+
+    private int extractedCount;
+
+    /**
+     * Creates an object which extracts included files to the specified cache.
+     *
+     * @param cacheDirectory the directory holding the files extracted from each jar
+     */
+    DependencyIncludes( File cacheDirectory )
+    {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Extracts the files which the IDL files of a source directory include from the jars. Names are looked up as
+     * the compilers do: relative to the including file, then in the source and include directories, then in the
+     * jars, in order.
+     *
+     * @param sourceDirectory the directory containing the files to compile
+     * @param includeDirs     the include directories, searched before the jars; may be null
+     * @param jars            the jars to search for included files
+     * @return the directories to which the jars are extracted, in the order of the jars
+     * @throws IOException if a jar cannot be read, or a file cannot be extracted
+     */
+    List<File> extract( File sourceDirectory, File[] includeDirs, List<File> jars ) throws IOException
+    {
+        List<File> searchPath = new ArrayList<>();
+        searchPath.add( sourceDirectory );
+        if ( includeDirs != null )
+        {
+            for ( File includeDir : includeDirs )
+            {
+                searchPath.add( includeDir );
+            }
+        }
+
+        List<JarRoot> roots = new ArrayList<>();
+        try
+        {
+            for ( File jar : jars )
+            {
+                roots.add( new JarRoot( jar, new File( cacheDirectory, getChecksum( jar ) ) ) );
+            }
+
+            Deque<File> pending = new ArrayDeque<>();
+            collectIdlFiles( sourceDirectory, pending );
+            Set<File> read = new HashSet<>();
+            while ( !pending.isEmpty() )
+            {
+                File file = pending.pop();
+                if ( read.add( file.getCanonicalFile() ) )
+                {
+                    for ( String name : IncludeGraph.readIncludeNames( file ) )
+                    {
+                        File included = resolve( name, file, searchPath, roots );
+                        if ( included != null )
+                        {
+                            pending.push( included );
+                        }
+                    }
+                }
+            }
+        }
+        finally
+        {
+            for ( JarRoot root : roots )
+            {
+                root.close();
+            }
+        }
+
+        List<File> directories = new ArrayList<>();
+        for ( JarRoot root : roots )
+        {
+            directories.add( root.directory );
+        }
+        return directories;
+    }
+
+    /**
+     * @return the number of files extracted from the jars, rather than found in the cache
+     */
+    int getExtractedCount()
+    {
+        return extractedCount;
+    }
+
+    private File resolve( String name, File includingFile, List<File> searchPath, List<JarRoot> roots )
+            throws IOException
+    {
+        File candidate = new File( includingFile.getParentFile(), name );
+        if ( candidate.isFile() )
+        {
+            return candidate;
+        }
+        for ( JarRoot root : roots )
+        {
+            String directory = root.getPathInJar( includingFile.getParentFile() );
+            if ( directory != null )
+            {
+                File extracted = root.extract( directory.isEmpty() ? name : directory + "/" + name );
+                if ( extracted != null )
+                {
+                    return extracted;
+                }
+            }
+        }
+
+        for ( File directory : searchPath )
+        {
+            candidate = new File( directory, name );
+            if ( candidate.isFile() )
+            {
+                return candidate;
+            }
+        }
+        for ( JarRoot root : roots )
+        {
+            File extracted = root.extract( name );
+            if ( extracted != null )
+            {
+                return extracted;
+            }
+        }
+        return null;
+    }
+
+    private static void collectIdlFiles( File directory, Deque<File> files )
+    {
+        File[] children = directory.listFiles();
+        if ( children == null )
+        {
+            return;
+        }
+        for ( File child : children )
+        {
+            if ( child.isDirectory() )
+            {
+                collectIdlFiles( child, files );
+            }
+            else if ( child.getName().endsWith( IDL_SUFFIX ) )
+            {
+                files.push( child );
+            }
+        }
+    }
+
+    private static String getChecksum( File jar ) throws IOException
+    {
+        MessageDigest digest = GeneratedSourcesCache.createKeyDigest();
+        try ( InputStream in = new FileInputStream( jar ) )
+        {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ( ( count = in.read( buffer ) ) > 0 )
+            {
+                digest.update( buffer, 0, count );
+            }
+        }
+        return GeneratedSourcesCache.toKey( digest );
+    }
+
+    /**
+     * A jar, mounted as a file system, and the directory to which its files are extracted.
+     */
+    private class JarRoot
+    {
+        private final File directory;
+
+        private final FileSystem fileSystem;
+
+        private final String directoryPath;
+
+        JarRoot( File jar, File directory ) throws IOException
+        {
+            this.directory = directory;
+            this.directoryPath = directory.getCanonicalPath();
+            this.fileSystem = FileSystems.newFileSystem( jar.toPath(), (ClassLoader) null );
+        }
+
+        /**
+         * Returns the path, within the jar, of a directory to which the jar is extracted.
+         *
+         * @return the path, empty for the root of the jar, or null if the directory is not within the extraction
+         * directory
+         */
+        String getPathInJar( File extractedDirectory ) throws IOException
+        {
+            String path = extractedDirectory.getCanonicalPath();
+            if ( path.equals( directoryPath ) )
+            {
+                return "";
+            }
+            if ( path.startsWith( directoryPath + File.separator ) )
+            {
+                return path.substring( directoryPath.length() + 1 ).replace( File.separatorChar, '/' );
+            }
+            return null;
+        }
+
+        /**
+         * Extracts a file from the jar, unless an earlier build already has. The file is copied under a temporary
+         * name and then renamed, so that concurrent builds never see it partly written.
+         *
+         * @param name the path of the file within the jar
+         * @return the extracted file, or null if the jar has no such file
+         */
+        File extract( String name ) throws IOException
+        {
+            Path entry = fileSystem.getPath( "/" ).resolve( name ).normalize();
+            String path = entry.toString().substring( 1 );
+            if ( path.isEmpty() || path.startsWith( ".." ) )
+            {
+                return null;
+            }
+
+            File extracted = new File( directory, path );
+            if ( extracted.isFile() )
+            {
+                return extracted;
+            }
+            if ( !Files.isRegularFile( entry ) )
+            {
+                return null;
+            }
+
+            FileUtils.forceMkdir( extracted.getParentFile() );
+            Path incomplete = Files.createTempFile( extracted.getParentFile().toPath(), extracted.getName(), ".tmp" );
+            try
+            {
+                Files.copy( entry, incomplete, StandardCopyOption.REPLACE_EXISTING );
+                Files.move( incomplete, extracted.toPath(), StandardCopyOption.ATOMIC_MOVE );
+                extractedCount++;
+            }
+            catch ( FileAlreadyExistsException e )
+            {
+                // extracted by a concurrent build
+            }
+            finally
+            {
+                Files.deleteIfExists( incomplete );
+            }
+            return extracted;
+        }
+
+        void close()
+        {
+            try
+            {
+                fileSystem.close();
+            }
+            catch ( IOException e )
+            {
+                // nothing was written to the jar
+            }
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Java Flight Recorder events describing the work of the plugin, so that a recording of a build shows IDL
+ * translation next to garbage collection, class loading and I/O. The plugin runs on Java versions without the
+ * flight recorder API, so the event types are defined at run time through <code>jdk.jfr.EventFactory</code>. Where
+ * the API is not available, or no recording is active, events are not created and cost a single check.
+ */
+final class FlightRecorderEvents
+{
+    private static final String[] CATEGORY = { "Maven", "IDL" };
+
+    /**
+     * The translation of an IDL file.
+     */
+    static final Type TRANSLATION = new Type( "org.codehaus.mojo.idlj.Translation", "IDL Translation",
+                                              "translator", String.class, "file", String.class,
+                                              "bytes", long.class, "exitCode", int.class,
+                                              "fromCache", boolean.class );
+
+    /**
+     * The start of a process running a compiler.
+     */
+    static final Type FORK = new Type( "org.codehaus.mojo.idlj.Fork", "IDL Compiler Process Start",
+                                       "command", String.class, "reusable", boolean.class );
+
+    /**
+     * A scan of a directory for the IDL files to translate.
+     */
+    static final Type SCAN = new Type( "org.codehaus.mojo.idlj.Scan", "IDL Source Scan",
+                                       "directory", String.class, "selectedFiles", int.class );
+
+    private FlightRecorderEvents()
+    {
+    }
+
+    /**
+     * A type of event, defined when the flight recorder API is available.
+     */
+    static final class Type
+    {
+        /**
+         * The factory of events of this type, or null if the flight recorder API is not available.
+         */
+        private final Object factory;
+
+        private final Object eventType;
+
+        Type( String name, String label, Object... fields )
+        {
+            Object createdFactory = null;
+            Object createdEventType = null;
+            try
+            {
+                createdFactory = createFactory( name, label, fields );
+                createdEventType = Api.getEventType.invoke( createdFactory );
+            }
+            catch ( Throwable e )
+            {
+                createdFactory = null;
+            }
+            factory = createdFactory;
+            eventType = createdEventType;
+        }
+
+        /**
+         * Starts timing an event. The event is only created if it will be recorded.
+         *
+         * @return the event, to be committed once the activity it describes is complete
+         */
+        Event begin()
+        {
+            try
+            {
+                if ( factory != null && (Boolean) Api.isEnabled.invoke( eventType ) )
+                {
+                    Object event = Api.newEvent.invoke( factory );
+                    Api.begin.invoke( event );
+                    return new Event( event );
+                }
+            }
+            catch ( Throwable e )
+            {
+                // the event is lost, but the build is not affected
+            }
+            return Event.DISABLED;
+        }
+    }
+
+    /**
+     * An event in progress.
+     */
+    static class Event
+    {
+        private static final Event DISABLED = new Event( null );
+
+        private final Object event;
+
+        private Event( Object event )
+        {
+            this.event = event;
+        }
+
+        /**
+         * Records the event with the specified field values, in the order in which the fields were defined.
+         *
+         * @param values the values of the fields
+         */
+        void commit( Object... values )
+        {
+            if ( event == null )
+            {
+                return;
+            }
+            try
+            {
+                for ( int i = 0; i < values.length; i++ )
+                {
+                    Api.set.invoke( event, i, values[i] );
+                }
+                Api.commit.invoke( event );
+            }
+            catch ( Throwable e )
+            {
+                // the event is lost, but the build is not affected
+            }
+        }
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private static Object createFactory( String name, String label, Object[] fields ) throws Exception
+    {
+        List<Object> annotations = new ArrayList<>();
+        annotations.add( Api.newAnnotation( "jdk.jfr.Name", name ) );
+        annotations.add( Api.newAnnotation( "jdk.jfr.Label", label ) );
+        annotations.add( Api.newAnnotation( "jdk.jfr.Category", CATEGORY ) );
+
+        List<Object> descriptors = new ArrayList<>();
+        for ( int i = 0; i < fields.length; i += 2 )
+        {
+            descriptors.add( Api.newValueDescriptor.newInstance( fields[i + 1], fields[i] ) );
+        }
+        return Api.create.invoke( null, annotations, descriptors );
+    }
+
+    /**
+     * The parts of the flight recorder API used to define and record events. Loading this class fails if the API
+     * is not available.
+     */
+    private static final class Api
+    {
+        private static final Constructor<?> newAnnotationElement;
+
+        private static final Constructor<?> newValueDescriptor;
+
+        private static final Method create;
+
+        private static final Method getEventType;
+
+        private static final Method isEnabled;
+
+        private static final Method newEvent;
+
+        private static final Method begin;
+
+        private static final Method set;
+
+        private static final Method commit;
+
+        static
+        {
+            try
+            {
+                Class<?> annotationElement = Class.forName( "jdk.jfr.AnnotationElement" );
+                Class<?> valueDescriptor = Class.forName( "jdk.jfr.ValueDescriptor" );
+                Class<?> eventFactory = Class.forName( "jdk.jfr.EventFactory" );
+                Class<?> event = Class.forName( "jdk.jfr.Event" );
+
+                newAnnotationElement = annotationElement.getConstructor( Class.class, Object.class );
+                newValueDescriptor = valueDescriptor.getConstructor( Class.class, String.class );
+                create = eventFactory.getMethod( "create", List.class, List.class );
+                getEventType = eventFactory.getMethod( "getEventType" );
+                isEnabled = Class.forName( "jdk.jfr.EventType" ).getMethod( "isEnabled" );
+                newEvent = eventFactory.getMethod( "newEvent" );
+                begin = event.getMethod( "begin" );
+                set = event.getMethod( "set", int.class, Object.class );
+                commit = event.getMethod( "commit" );
+            }
+            catch ( ClassNotFoundException | NoSuchMethodException e )
+            {
+                throw new IllegalStateException( "Flight recorder API not available", e );
+            }
+        }
+
+        private static Object newAnnotation( String annotationClass, Object value ) throws Exception
+        {
+            Class<? extends Annotation> type = Class.forName( annotationClass ).asSubclass( Annotation.class );
+            return newAnnotationElement.newInstance( type, value );
+        }
+    }
+}
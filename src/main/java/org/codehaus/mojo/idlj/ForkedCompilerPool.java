@@ -0,0 +1,343 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.StringUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A pool of long-lived java processes running {@link CompilerWorker}, so that forked compilations do not pay
+ * for starting a JVM and loading the compiler every time. There is one pool per java command line; idle workers
+ * are kept until the build process exits, and a worker is replaced after it has run a set number of jobs or
+ * its heap has grown beyond a set size.
+ */
+class ForkedCompilerPool
+{
+    private static final Map<List<String>, ForkedCompilerPool> POOLS = new HashMap<>();
+
+    /**
+     * The time allowed for a worker recording a class data sharing archive to write it once asked to exit.
+     */
+    private static final long ARCHIVE_WRITE_TIMEOUT_MILLIS = 60000;
+
+    static
+    {
+        Runtime.getRuntime().addShutdownHook( new Thread()
+        {
+            public void run()
+            {
+                shutdownAll();
+            }
+        } );
+    }
+
+    /**
+     * The command used to start a worker process.
+     */
+    private final List<String> command;
+
+    private final Deque<Worker> idleWorkers = new ArrayDeque<>();
+
+    /**
+     * The archive of the classes loaded by workers, or null if workers load their classes themselves.
+     */
+    private final ClassDataSharing classDataSharing;
+
+    private ForkedCompilerPool( List<String> command, ClassDataSharing classDataSharing )
+    {
+        this.command = command;
+        this.classDataSharing = classDataSharing;
+    }
+
+    /**
+     * Returns the pool of workers started with the specified java executable and options.
+     *
+     * @param javaCommand the java executable followed by the JVM options, including the classpath
+     * @return the pool for that command
+     */
+    static ForkedCompilerPool getPool( List<String> javaCommand )
+    {
+        return getPool( javaCommand, null );
+    }
+
+    /**
+     * Returns the pool of workers started with the specified java executable and options.
+     *
+     * @param javaCommand      the java executable followed by the JVM options, including the classpath
+     * @param classDataSharing the archive of the classes loaded by the workers, or null if none is to be used. Only
+     *                         applies when the pool is created
+     * @return the pool for that command
+     */
+    static synchronized ForkedCompilerPool getPool( List<String> javaCommand, ClassDataSharing classDataSharing )
+    {
+        ForkedCompilerPool pool = POOLS.get( javaCommand );
+        if ( pool == null )
+        {
+            List<String> command = new ArrayList<>( javaCommand );
+            command.add( CompilerWorker.class.getName() );
+            pool = new ForkedCompilerPool( command, classDataSharing );
+            POOLS.put( new ArrayList<>( javaCommand ), pool );
+        }
+        return pool;
+    }
+
+    private static synchronized void shutdownAll()
+    {
+        for ( ForkedCompilerPool pool : POOLS.values() )
+        {
+            pool.shutdown();
+        }
+        POOLS.clear();
+    }
+
+    /**
+     * Runs a compiler in one of the workers, starting a new worker if none is idle.
+     *
+     * @param compilerClass the name of the class containing the compiler entry point
+     * @param entryPoint    the name of a static method taking a <code>String[]</code> which runs the compiler
+     * @param args          the arguments to pass to the compiler
+     * @param maxJobs       the number of jobs after which a worker is retired
+     * @param maxHeapBytes  the heap in use after a job beyond which the worker is retired
+     * @return the outcome of the compilation
+     * @throws IOException if the worker could not be started or terminated unexpectedly
+     */
+    Result compile( String compilerClass, String entryPoint, List<String> args, int maxJobs, long maxHeapBytes )
+            throws IOException
+    {
+        Worker worker = borrowWorker();
+        boolean reusable = false;
+        try
+        {
+            Result result = worker.compile( compilerClass, entryPoint, args );
+            reusable = worker.jobCount < maxJobs && result.usedHeapBytes < maxHeapBytes;
+            return result;
+        }
+        finally
+        {
+            if ( reusable )
+            {
+                returnWorker( worker );
+            }
+            else
+            {
+                worker.close();
+            }
+        }
+    }
+
+    private Worker borrowWorker() throws IOException
+    {
+        synchronized ( idleWorkers )
+        {
+            Worker worker = idleWorkers.pollFirst();
+            if ( worker != null )
+            {
+                return worker;
+            }
+        }
+        List<String> workerCommand = new ArrayList<>( command );
+        List<String> archiveOptions =
+                classDataSharing == null ? Collections.<String>emptyList() : classDataSharing.startJvm();
+        workerCommand.addAll( 1, archiveOptions );
+
+        FlightRecorderEvents.Event event = FlightRecorderEvents.FORK.begin();
+        Process process;
+        try
+        {
+            process = new ProcessBuilder( workerCommand ).redirectError( ProcessBuilder.Redirect.INHERIT ).start();
+        }
+        catch ( IOException e )
+        {
+            if ( ClassDataSharing.isRecording( archiveOptions ) )
+            {
+                classDataSharing.recordingComplete();
+            }
+            throw e;
+        }
+        event.commit( StringUtils.join( workerCommand.iterator(), " " ), true );
+        return new Worker( process, ClassDataSharing.isRecording( archiveOptions ) ? classDataSharing : null );
+    }
+
+    private void returnWorker( Worker worker )
+    {
+        synchronized ( idleWorkers )
+        {
+            idleWorkers.addFirst( worker );
+        }
+    }
+
+    private void shutdown()
+    {
+        synchronized ( idleWorkers )
+        {
+            for ( Worker worker : idleWorkers )
+            {
+                worker.close();
+            }
+            idleWorkers.clear();
+        }
+    }
+
+    /**
+     * The outcome of a compilation in a worker process.
+     */
+    static class Result
+    {
+        private final int exitCode;
+
+        private final long usedHeapBytes;
+
+        private final byte[] out;
+
+        private final byte[] err;
+
+        Result( int exitCode, long usedHeapBytes, byte[] out, byte[] err )
+        {
+            this.exitCode = exitCode;
+            this.usedHeapBytes = usedHeapBytes;
+            this.out = out;
+            this.err = err;
+        }
+
+        int getExitCode()
+        {
+            return exitCode;
+        }
+
+        byte[] getOut()
+        {
+            return out;
+        }
+
+        byte[] getErr()
+        {
+            return err;
+        }
+    }
+
+    /**
+     * A single worker process and its connection.
+     */
+    private static class Worker
+    {
+        private final Process process;
+
+        private final DataOutputStream requests;
+
+        private final DataInputStream responses;
+
+        private int jobCount;
+
+        /**
+         * The archive this worker records as it exits, or null if it records none.
+         */
+        private final ClassDataSharing recordedArchive;
+
+        Worker( Process process, ClassDataSharing recordedArchive )
+        {
+            this.process = process;
+            this.recordedArchive = recordedArchive;
+            this.requests = new DataOutputStream( new BufferedOutputStream( process.getOutputStream() ) );
+            this.responses = new DataInputStream( new BufferedInputStream( process.getInputStream() ) );
+        }
+
+        Result compile( String compilerClass, String entryPoint, List<String> args ) throws IOException
+        {
+            jobCount++;
+            requests.writeUTF( compilerClass );
+            requests.writeUTF( entryPoint );
+            requests.writeInt( args.size() );
+            for ( String arg : args )
+            {
+                requests.writeUTF( arg );
+            }
+            requests.flush();
+
+            int exitCode = responses.readInt();
+            long usedHeap = responses.readLong();
+            return new Result( exitCode, usedHeap, readBytes(), readBytes() );
+        }
+
+        private byte[] readBytes() throws IOException
+        {
+            byte[] bytes = new byte[responses.readInt()];
+            responses.readFully( bytes );
+            return bytes;
+        }
+
+        void close()
+        {
+            try
+            {
+                requests.close();
+            }
+            catch ( IOException ignored )
+            {
+                // the process is destroyed below in any case
+            }
+            if ( recordedArchive != null )
+            {
+                awaitExit( process, ARCHIVE_WRITE_TIMEOUT_MILLIS );
+                recordedArchive.recordingComplete();
+            }
+            process.destroy();
+        }
+
+        /**
+         * Waits for a process to exit of its own accord, as it does once its input is closed.
+         */
+        private static void awaitExit( Process process, long timeoutMillis )
+        {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            while ( System.currentTimeMillis() < deadline )
+            {
+                try
+                {
+                    process.exitValue();
+                    return;
+                }
+                catch ( IllegalThreadStateException e )
+                {
+                    try
+                    {
+                        Thread.sleep( 50 );
+                    }
+                    catch ( InterruptedException interrupted )
+                    {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Moves generated files from the directory in which they were generated to their final location, after applying any
+ * requested changes to them. A file whose contents are already in place is left untouched, so that its modification
+ * time does not change and incremental compilers do not see it as changed. Since the IDL compilers note the time of
+ * generation in a comment, files which differ only in comment lines holding a time of day are considered the same.
+ */
+final class GeneratedFiles
+{
+    private static final Pattern TIMESTAMP_COMMENT =
+            Pattern.compile( "\\s*(\\*|//).*\\b\\d{1,2}:\\d{2}(:\\d{2})?\\b.*\\r?" );
+
+    /**
+     * Preserves every byte when converting file contents to text, whatever the encoding of the file.
+     */
+    private static final Charset BYTES = Charset.forName( "ISO-8859-1" );
+
+    private GeneratedFiles()
+    {
+    }
+
+    /**
+     * Places every file found under one directory at the same relative path under another, unless a file with the
+     * same contents is already there. Files are hard-linked if possible. Files already in place are replaced rather
+     * than overwritten, since they may be linked to other files, and a concurrent reader never sees a partial file.
+     *
+     * @param fromDirectory the directory holding the files
+     * @param toDirectory   the directory in which to place them
+     * @return the paths, relative to the directories, of all of the files found, whether changed or not
+     * @throws IOException if the files cannot be linked or copied
+     */
+    static List<String> publish( File fromDirectory, File toDirectory ) throws IOException
+    {
+        final Path from = fromDirectory.toPath();
+        final Path to = toDirectory.toPath();
+        final List<String> published = new ArrayList<>();
+        Files.walkFileTree( from, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile( Path file, BasicFileAttributes attrs ) throws IOException
+            {
+                String relativePath = from.relativize( file ).toString();
+                Path target = to.resolve( relativePath );
+                if ( !hasSameContents( file, target ) )
+                {
+                    replace( file, target );
+                }
+                published.add( relativePath );
+                return FileVisitResult.CONTINUE;
+            }
+        } );
+        return published;
+    }
+
+    /**
+     * Applies changes to the files found under a directory. A file is only written if one of the changes applies.
+     *
+     * @param directory the directory holding generated files
+     * @param rewriters the changes to apply, in order
+     * @return the number of files changed
+     * @throws IOException if a file cannot be read or written
+     */
+    static int rewrite( File directory, final List<SourceRewriter> rewriters ) throws IOException
+    {
+        final int[] count = new int[1];
+        Files.walkFileTree( directory.toPath(), new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile( Path file, BasicFileAttributes attrs ) throws IOException
+            {
+                if ( rewrite( file, rewriters ) )
+                {
+                    count[0]++;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        } );
+        return count[0];
+    }
+
+    private static boolean rewrite( Path file, List<SourceRewriter> rewriters ) throws IOException
+    {
+        String fileName = file.getFileName().toString();
+        String source = null;
+        String rewritten = null;
+        for ( SourceRewriter rewriter : rewriters )
+        {
+            if ( rewriter.appliesTo( fileName ) )
+            {
+                if ( source == null )
+                {
+                    source = new String( Files.readAllBytes( file ), BYTES );
+                    rewritten = source;
+                }
+                rewritten = rewriter.rewrite( rewritten );
+            }
+        }
+        if ( source == null || rewritten.equals( source ) )
+        {
+            return false;
+        }
+        Files.write( file, rewritten.getBytes( BYTES ) );
+        return true;
+    }
+
+    private static void replace( Path file, Path target ) throws IOException
+    {
+        Files.createDirectories( target.getParent() );
+        Path temporary = target.resolveSibling( target.getFileName() + "." + Thread.currentThread().getId() + "-"
+                                                        + System.nanoTime() + ".tmp" );
+        try
+        {
+            try
+            {
+                Files.createLink( temporary, file );
+            }
+            catch ( IOException | UnsupportedOperationException e )
+            {
+                Files.copy( file, temporary, StandardCopyOption.COPY_ATTRIBUTES );
+            }
+            Files.move( temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        }
+        finally
+        {
+            Files.deleteIfExists( temporary );
+        }
+    }
+
+    private static boolean hasSameContents( Path file, Path target ) throws IOException
+    {
+        if ( !Files.isRegularFile( target ) )
+        {
+            return false;
+        }
+
+        byte[] generated = Files.readAllBytes( file );
+        byte[] existing = Files.readAllBytes( target );
+        return Arrays.equals( generated, existing ) || differOnlyInTimestamps( generated, existing );
+    }
+
+    private static boolean differOnlyInTimestamps( byte[] generated, byte[] existing )
+    {
+        String[] generatedLines = new String( generated, BYTES ).split( "\n", -1 );
+        String[] existingLines = new String( existing, BYTES ).split( "\n", -1 );
+        if ( generatedLines.length != existingLines.length )
+        {
+            return false;
+        }
+        for ( int i = 0; i < generatedLines.length; i++ )
+        {
+            if ( !generatedLines[i].equals( existingLines[i] ) && !( isTimestampComment( generatedLines[i] )
+                    && isTimestampComment( existingLines[i] ) ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isTimestampComment( String line )
+    {
+        return TIMESTAMP_COMMENT.matcher( line ).matches();
+    }
+}
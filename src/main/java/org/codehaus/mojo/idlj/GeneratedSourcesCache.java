@@ -0,0 +1,260 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A cache of the sources generated from IDL files, shared by all builds of a user. Each entry holds the files
+ * generated by one compilation, under a key which identifies everything that determines them: the IDL file and the
+ * files it includes, the compiler and its arguments. Files are hard-linked in and out of the cache where the file
+ * system allows it, and copied otherwise. Once the cache grows beyond its size limit, the entries least recently
+ * used are removed.
+ */
+class GeneratedSourcesCache
+{
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    /**
+     * The name of the directory, within the cache, in which entries are assembled before they are added.
+     */
+    private static final String INCOMPLETE_DIRECTORY_NAME = "incomplete";
+
+    private final File directory;
+
+    private final long maxSizeBytes;
+
+    private final AtomicInteger hits = new AtomicInteger();
+
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * Creates a cache.
+     *
+     * @param directory    the directory holding the cache entries
+     * @param maxSizeBytes the size beyond which the least recently used entries are removed
+     */
+    GeneratedSourcesCache( File directory, long maxSizeBytes )
+    {
+        this.directory = directory;
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * Creates an object which computes a cache key.
+     *
+     * @return a digest for the key
+     */
+    static MessageDigest createKeyDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance( HASH_ALGORITHM );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( HASH_ALGORITHM + " not supported", e );
+        }
+    }
+
+    /**
+     * Returns the cache key represented by a digest.
+     *
+     * @param digest a digest which has been given everything which identifies a compilation
+     * @return the key, as a hexadecimal string
+     */
+    static String toKey( MessageDigest digest )
+    {
+        StringBuilder key = new StringBuilder();
+        for ( byte b : digest.digest() )
+        {
+            key.append( Character.forDigit( ( b >> 4 ) & 0xf, 16 ) ).append( Character.forDigit( b & 0xf, 16 ) );
+        }
+        return key.toString();
+    }
+
+    /**
+     * Copies the files of a cache entry into the output directory.
+     *
+     * @param key             the key of the entry
+     * @param outputDirectory the directory in which to place the files
+     * @return the paths of the restored files relative to the output directory, or null if the entry was not found
+     *         and the files must be generated
+     * @throws IOException if the files cannot be copied
+     */
+    List<String> restore( String key, File outputDirectory ) throws IOException
+    {
+        File entry = getEntryDirectory( key );
+        if ( !entry.isDirectory() )
+        {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        entry.setLastModified( System.currentTimeMillis() );
+        List<String> restored = GeneratedFiles.publish( entry, outputDirectory );
+        hits.incrementAndGet();
+        return restored;
+    }
+
+    /**
+     * Adds the files generated by a compilation to the cache.
+     *
+     * @param key                the key of the entry
+     * @param generatedDirectory a directory holding only the generated files
+     * @throws IOException if the files cannot be copied
+     */
+    void store( String key, File generatedDirectory ) throws IOException
+    {
+        File incompleteDirectory = new File( directory, INCOMPLETE_DIRECTORY_NAME );
+        FileUtils.forceMkdir( incompleteDirectory );
+        File incomplete = Files.createTempDirectory( incompleteDirectory.toPath(), key ).toFile();
+        try
+        {
+            GeneratedFiles.publish( generatedDirectory, incomplete );
+            File entry = getEntryDirectory( key );
+            FileUtils.forceMkdir( entry.getParentFile() );
+            Files.move( incomplete.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE );
+        }
+        catch ( FileAlreadyExistsException e )
+        {
+            // added by a concurrent build
+        }
+        catch ( IOException e )
+        {
+            if ( !getEntryDirectory( key ).isDirectory() )
+            {
+                throw e;
+            }
+        }
+        finally
+        {
+            FileUtils.deleteDirectory( incomplete );
+        }
+    }
+
+    private File getEntryDirectory( String key )
+    {
+        return new File( new File( directory, key.substring( 0, 2 ) ), key );
+    }
+
+    /**
+     * Removes the entries least recently used until the cache is no larger than its limit.
+     *
+     * @throws IOException if the cache cannot be read
+     */
+    void evict() throws IOException
+    {
+        List<Entry> entries = new ArrayList<>();
+        long totalSize = 0;
+        File[] groups = directory.listFiles();
+        if ( groups == null )
+        {
+            return;
+        }
+        for ( File group : groups )
+        {
+            File[] entryDirectories = group.getName().equals( INCOMPLETE_DIRECTORY_NAME ) ? null : group.listFiles();
+            if ( entryDirectories != null )
+            {
+                for ( File entryDirectory : entryDirectories )
+                {
+                    Entry entry = new Entry( entryDirectory );
+                    entries.add( entry );
+                    totalSize += entry.size;
+                }
+            }
+        }
+
+        Collections.sort( entries, new Comparator<Entry>()
+        {
+            public int compare( Entry first, Entry second )
+            {
+                return first.lastUsed.compareTo( second.lastUsed );
+            }
+        } );
+        for ( int i = 0; i < entries.size() && totalSize > maxSizeBytes; i++ )
+        {
+            FileUtils.deleteDirectory( entries.get( i ).directory );
+            totalSize -= entries.get( i ).size;
+        }
+    }
+
+    /**
+     * @return the number of compilations whose results were found in the cache
+     */
+    int getHits()
+    {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of compilations whose results were not found in the cache
+     */
+    int getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * The size and time of last use of a cache entry.
+     */
+    private static class Entry
+    {
+        private final File directory;
+
+        private final FileTime lastUsed;
+
+        private long size;
+
+        Entry( File directory ) throws IOException
+        {
+            this.directory = directory;
+            this.lastUsed = Files.getLastModifiedTime( directory.toPath() );
+            Files.walkFileTree( directory.toPath(), new SimpleFileVisitor<Path>()
+            {
+                @Override
+                public FileVisitResult visitFile( Path file, BasicFileAttributes attrs )
+                {
+                    size += attrs.size();
+                    return FileVisitResult.CONTINUE;
+                }
+            } );
+        }
+    }
+}
@@ -36,14 +36,15 @@ class GlassfishTranslator
     @Override
     void invokeCompiler( List<String> args ) throws MojoExecutionException
     {
-        invokeCompilerInProcess( getCompilerClass(), args );
+        invokeCompilerInProcess( loadCompilerClass(), args );
     }
 
-    private Class<?> getCompilerClass() throws MojoExecutionException
+    @Override
+    Class<?> getCompilerClass() throws MojoExecutionException
     {
         try
         {
-            return getClassLoaderFacade().loadClass( GLASSFISH_IDLJ_COMPILER_NAME );
+            return CompilerRegistry.loadClass( GLASSFISH_IDLJ_COMPILER_NAME );
         }
         catch ( ClassNotFoundException e )
         {
@@ -0,0 +1,118 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrites the <code>type()</code> method of the helpers generated by the idlj compilers, so that it no longer
+ * takes the class monitor once the type code has been created. The generated method is synchronized, which makes
+ * every insertion into and extraction from an <code>Any</code> contend for the helper class.
+ * <p>
+ * The generated method body is kept as it is, in a private synchronized <code>__buildType()</code> method, and
+ * still works on the generated <code>__typeCode</code> field. That field is only read with the monitor held, since
+ * the generated body of a typedef or sequence helper assigns it several times while building the type code. The
+ * completed type code is published to a separate volatile field, <code>__completeTypeCode</code>, which
+ * <code>type()</code> returns without locking once it is set.
+ * <p>
+ * A recursive type calls <code>type()</code> again from within the generated body, on the same thread: the monitor
+ * is reentrant, so the generated recursion guard returns a recursive type code as before. Only the outermost call
+ * on the thread publishes its result, so that a recursive type code is never published.
+ */
+final class HelperTypeRewriter
+        implements SourceRewriter
+{
+    private static final String HELPER_SUFFIX = "Helper.java";
+
+    private static final Pattern TYPE_CODE_FIELD =
+            Pattern.compile( "^([ \\t]*)private static org\\.omg\\.CORBA\\.TypeCode __typeCode = null;",
+                             Pattern.MULTILINE );
+
+    private static final Pattern TYPE_METHOD =
+            Pattern.compile( "^([ \\t]*)synchronized public static org\\.omg\\.CORBA\\.TypeCode type \\(\\)(\\r?\\n)",
+                             Pattern.MULTILINE );
+
+    public boolean appliesTo( String fileName )
+    {
+        return fileName.endsWith( HELPER_SUFFIX );
+    }
+
+    public String getName()
+    {
+        return "HelperTypeRewriter-2";
+    }
+
+    /**
+     * Rewrites the <code>type()</code> method of a helper.
+     *
+     * @param source the source of the helper
+     * @return the rewritten source, or the same source if it does not hold the generated method
+     */
+    public String rewrite( String source )
+    {
+        Matcher field = TYPE_CODE_FIELD.matcher( source );
+        Matcher method = TYPE_METHOD.matcher( source );
+        if ( !field.find() || !method.find() || field.start() > method.start() )
+        {
+            return source;
+        }
+
+        String indent = method.group( 1 );
+        String newline = method.group( 2 );
+        String body = indent + "  ";
+        String fastPath = indent + "private static volatile org.omg.CORBA.TypeCode __completeTypeCode = null;" + newline
+                + indent + "private static int __typeDepth = 0;" + newline
+                + newline
+                + indent + "public static org.omg.CORBA.TypeCode type ()" + newline
+                + indent + "{" + newline
+                + body + "org.omg.CORBA.TypeCode typeCode = __completeTypeCode;" + newline
+                + body + "if (typeCode == null)" + newline
+                + body + "{" + newline
+                + body + "  typeCode = __type ();" + newline
+                + body + "}" + newline
+                + body + "return typeCode;" + newline
+                + indent + "}" + newline
+                + newline
+                + indent + "synchronized private static org.omg.CORBA.TypeCode __type ()" + newline
+                + indent + "{" + newline
+                + body + "__typeDepth++;" + newline
+                + body + "try" + newline
+                + body + "{" + newline
+                + body + "  org.omg.CORBA.TypeCode typeCode = __buildType ();" + newline
+                + body + "  if (__typeDepth == 1)" + newline
+                + body + "  {" + newline
+                + body + "    __completeTypeCode = typeCode;" + newline
+                + body + "  }" + newline
+                + body + "  return typeCode;" + newline
+                + body + "}" + newline
+                + body + "finally" + newline
+                + body + "{" + newline
+                + body + "  __typeDepth--;" + newline
+                + body + "}" + newline
+                + indent + "}" + newline
+                + newline
+                + indent + "synchronized private static org.omg.CORBA.TypeCode __buildType ()" + newline;
+
+        return source.substring( 0, method.start() )
+                + fastPath
+                + source.substring( method.end() );
+    }
+}
@@ -19,7 +19,15 @@ package org.codehaus.mojo.idlj;
  * under the License.
  */
 
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.resolver.AbstractArtifactResolutionException;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.plugin.MojoExecutionException;
+
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Process CORBA IDL files in IDLJ.
@@ -28,6 +36,7 @@ import java.io.File;
  * @version $Id$
  * @goal generate
  * @phase generate-sources
+ * @requiresDependencyCollection compile
  */
 public class IDLJMojo
         extends AbstractIDLJMojo
@@ -46,6 +55,46 @@ public class IDLJMojo
      */
     private File[] includeDirs;
 
+    /**
+     * Dependencies whose jars hold additional *.idl files required for compilation, as
+     * <code>groupId:artifactId</code> or <code>groupId:artifactId:classifier</code>. The jars are searched after the
+     * include directories. They are read in place; only the files actually included are extracted, to a cache
+     * shared by all builds.
+     *
+     * @parameter
+     */
+    private String[] includeDependencies;
+
+    /**
+     * A classifier which marks dependencies as jars of *.idl files to include, such as <code>idl</code>. Such
+     * dependencies are searched after those listed in <code>includeDependencies</code>.
+     *
+     * @parameter property="idlj.includeClassifier"
+     */
+    private String includeClassifier;
+
+    /**
+     * Resolves the include dependencies. The project's dependencies are only collected, so that a build which includes
+     * no IDL from dependencies does not download their jars; those which hold IDL files are resolved when needed.
+     *
+     * @component
+     */
+    private ArtifactResolver artifactResolver;
+
+    /**
+     * @parameter default-value="${localRepository}"
+     * @required
+     * @readonly
+     */
+    private ArtifactRepository localRepository;
+
+    /**
+     * @parameter default-value="${project.remoteArtifactRepositories}"
+     * @required
+     * @readonly
+     */
+    private List<ArtifactRepository> remoteRepositories;
+
     /**
      * The directory to output the generated sources to.
      *
@@ -82,6 +131,82 @@ public class IDLJMojo
         return includeDirs;
     }
 
+    /**
+     * @return the jars of the dependencies listed in <code>includeDependencies</code>, followed by those of the
+     * dependencies with the include classifier
+     * @throws MojoExecutionException if a listed dependency is not a dependency of the project
+     */
+    protected List<File> getIncludeJars() throws MojoExecutionException
+    {
+        List<File> jars = new ArrayList<>();
+        if ( includeDependencies == null && includeClassifier == null )
+        {
+            return jars;
+        }
+
+        for ( String coordinates : includeDependencies == null ? new String[0] : includeDependencies )
+        {
+            Artifact artifact = findDependency( coordinates.trim() );
+            if ( artifact == null )
+            {
+                throw new MojoExecutionException( "Include dependency " + coordinates
+                                                          + " is not a dependency of the project" );
+            }
+            addJar( jars, artifact );
+        }
+        if ( includeClassifier != null )
+        {
+            for ( Object object : getProject().getArtifacts() )
+            {
+                Artifact artifact = (Artifact) object;
+                if ( includeClassifier.equals( artifact.getClassifier() ) )
+                {
+                    addJar( jars, artifact );
+                }
+            }
+        }
+        return jars;
+    }
+
+    private Artifact findDependency( String coordinates )
+    {
+        String[] parts = coordinates.split( ":" );
+        for ( Object object : getProject().getArtifacts() )
+        {
+            Artifact artifact = (Artifact) object;
+            if ( parts.length >= 2 && parts[0].equals( artifact.getGroupId() )
+                    && parts[1].equals( artifact.getArtifactId() )
+                    && ( parts.length < 3 || parts[2].equals( artifact.getClassifier() ) ) )
+            {
+                return artifact;
+            }
+        }
+        return null;
+    }
+
+    private void addJar( List<File> jars, Artifact artifact ) throws MojoExecutionException
+    {
+        if ( !artifact.isResolved() || artifact.getFile() == null )
+        {
+            try
+            {
+                artifactResolver.resolve( artifact, remoteRepositories, localRepository );
+            }
+            catch ( AbstractArtifactResolutionException e )
+            {
+                throw new MojoExecutionException( "Unable to resolve include dependency " + artifact, e );
+            }
+        }
+        if ( artifact.getFile() == null || !artifact.getFile().isFile() )
+        {
+            throw new MojoExecutionException( "Include dependency " + artifact + " has not been resolved to a jar" );
+        }
+        if ( !jars.contains( artifact.getFile() ) )
+        {
+            jars.add( artifact.getFile() );
+        }
+    }
+
     /**
      * @return the path of the directory that will contains the results of the compilation
      */
@@ -25,7 +25,6 @@ import org.codehaus.plexus.util.StringUtils;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -142,15 +141,17 @@ abstract class IdljTranslator extends AbstractTranslator implements CompilerTran
                                 Source source )
             throws MojoExecutionException
     {
-        List<String> args = getArguments( sourceDirectory, includeDirs, targetDirectory, idlFile, source );
+        List<String> args = buildArguments( sourceDirectory, includeDirs, targetDirectory, source );
+        args.add( idlFile );
 
         invokeCompiler( args );
     }
 
     abstract void invokeCompiler( List<String> args ) throws MojoExecutionException;
 
-    private List<String> getArguments( String sourceDirectory, File[] includeDirs, String targetDirectory,
-                                       String idlFile, Source source ) throws MojoExecutionException
+    @Override
+    List<String> getArguments( String sourceDirectory, File[] includeDirs, String targetDirectory, Source source )
+            throws MojoExecutionException
     {
         List<String> args = new ArrayList<>();
         args.add( "-i" );
@@ -218,7 +219,6 @@ abstract class IdljTranslator extends AbstractTranslator implements CompilerTran
             }
         }
 
-        args.add( idlFile );
         return args;
     }
 
@@ -269,12 +269,17 @@ abstract class IdljTranslator extends AbstractTranslator implements CompilerTran
         invokeCompilerInProcess( compilerClass, args );
     }
 
+    @Override
+    boolean isIsolationSupported()
+    {
+        return true;
+    }
+
     @Override
     protected int runCompiler( Class<?> compilerClass, String... arguments )
             throws NoSuchMethodException, IllegalAccessException, InvocationTargetException
     {
-        Method compilerMainMethod = compilerClass.getMethod( "main", String[].class );
-        Object retVal = compilerMainMethod.invoke( compilerClass, new Object[]{arguments} );
+        Object retVal = CompilerRegistry.run( compilerClass, "main", arguments );
         getLog().debug( "Completed with code " + retVal );
         return ( retVal != null ) && ( retVal instanceof Integer ) ? (Integer) retVal : 0;
     }
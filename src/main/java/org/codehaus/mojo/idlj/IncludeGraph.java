@@ -0,0 +1,463 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The <code>#include</code> relationships between the IDL files of a project. The graph remembers the size and
+ * modification time of every file it has read, so that a later build only needs to read the files which changed,
+ * and can tell which files include, directly or indirectly, a file that changed. It also remembers the names each
+ * file includes, so that when files are added or removed the names can be looked up again: a new file may hide
+ * the one a name used to find, or be found by a name which found nothing before.
+ */
+class IncludeGraph
+{
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private static final Pattern INCLUDE_DIRECTIVE = Pattern.compile( "^\\s*#\\s*include\\s*[<\"]([^>\"]+)[>\"]" );
+
+    private static final String IDL_SUFFIX = ".idl";
+
+    private static final String FIELD_SEPARATOR = "\t";
+
+    /**
+     * The files known to the graph, by canonical path.
+     */
+    private final Map<String, Node> nodes = new TreeMap<>();
+
+    /**
+     * True if the graph was read from an earlier build, rather than created empty.
+     */
+    private boolean restored;
+
+    /**
+     * Reads the graph recorded by an earlier build. If there is none, or it cannot be read, returns an empty graph.
+     *
+     * @param file the file in which the graph was saved
+     * @return the recorded graph
+     */
+    static IncludeGraph load( File file )
+    {
+        IncludeGraph graph = new IncludeGraph();
+        if ( file.isFile() )
+        {
+            try ( BufferedReader reader =
+                          new BufferedReader( new InputStreamReader( new FileInputStream( file ), UTF_8 ) ) )
+            {
+                String line;
+                while ( ( line = reader.readLine() ) != null )
+                {
+                    graph.addRecordedNode( line.split( FIELD_SEPARATOR, -1 ) );
+                }
+                graph.restored = true;
+            }
+            catch ( IOException | RuntimeException e )
+            {
+                graph.nodes.clear();
+            }
+        }
+        return graph;
+    }
+
+    private void addRecordedNode( String[] fields ) throws IOException
+    {
+        if ( fields.length % 2 == 0 )
+        {
+            throw new IOException( "Malformed include graph entry: " + fields[0] );
+        }
+        Node node = new Node( Long.parseLong( fields[1] ), Long.parseLong( fields[2] ) );
+        for ( int i = 3; i < fields.length; i += 2 )
+        {
+            node.names.add( fields[i] );
+            node.resolved.add( fields[i + 1].isEmpty() ? null : fields[i + 1] );
+        }
+        nodes.put( fields[0], node );
+    }
+
+    /**
+     * Records the graph so that a later build can detect changes.
+     *
+     * @param file the file in which to save the graph
+     * @throws IOException if the graph cannot be written
+     */
+    void save( File file ) throws IOException
+    {
+        try ( Writer writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( file ), UTF_8 ) ) )
+        {
+            for ( Map.Entry<String, Node> entry : nodes.entrySet() )
+            {
+                Node node = entry.getValue();
+                writer.write( entry.getKey() );
+                writer.write( FIELD_SEPARATOR + node.lastModified + FIELD_SEPARATOR + node.length );
+                for ( int i = 0; i < node.names.size(); i++ )
+                {
+                    String resolved = node.resolved.get( i );
+                    writer.write( FIELD_SEPARATOR + node.names.get( i ) );
+                    writer.write( FIELD_SEPARATOR + ( resolved == null ? "" : resolved ) );
+                }
+                writer.write( '\n' );
+            }
+        }
+    }
+
+    /**
+     * Brings the graph up to date with the IDL files in the specified directories, and those they include.
+     * Only files which are new or whose size or modification time changed are read.
+     *
+     * @param sourceDirectory the directory containing the files to compile
+     * @param includeDirs     the additional directories searched for included files; may be null
+     * @return the files which were added, changed or removed since the graph was recorded. If the graph was not
+     * recorded by an earlier build, there is nothing to compare against and the result is empty.
+     * @throws IOException if a file cannot be read
+     */
+    Set<File> update( File sourceDirectory, File[] includeDirs ) throws IOException
+    {
+        List<File> searchPath = new ArrayList<>();
+        searchPath.add( sourceDirectory );
+        if ( includeDirs != null )
+        {
+            for ( File includeDir : includeDirs )
+            {
+                searchPath.add( includeDir );
+            }
+        }
+
+        Set<String> present = new HashSet<>();
+        Set<String> read = new HashSet<>();
+        Set<File> changed = new HashSet<>();
+        Deque<File> pending = new ArrayDeque<>();
+        for ( File directory : searchPath )
+        {
+            collectIdlFiles( directory, pending );
+        }
+        boolean added = visit( pending, searchPath, present, read, changed );
+
+        boolean removed = false;
+        for ( String path : new ArrayList<>( nodes.keySet() ) )
+        {
+            if ( !present.contains( path ) )
+            {
+                nodes.remove( path );
+                changed.add( new File( path ) );
+                removed = true;
+            }
+        }
+
+        if ( added || removed )
+        {
+            for ( Map.Entry<String, Node> entry : nodes.entrySet() )
+            {
+                if ( !read.contains( entry.getKey() ) && reresolve( entry.getValue(), entry.getKey(), searchPath ) )
+                {
+                    changed.add( new File( entry.getKey() ) );
+                    for ( String include : entry.getValue().getIncludes() )
+                    {
+                        pending.push( new File( include ) );
+                    }
+                }
+            }
+            visit( pending, searchPath, present, read, changed );
+        }
+
+        return restored ? changed : new HashSet<File>();
+    }
+
+    /**
+     * Brings the nodes of the pending files, and of the files they include, up to date.
+     *
+     * @return true if any of the files was not known to the graph
+     */
+    private boolean visit( Deque<File> pending, List<File> searchPath, Set<String> present, Set<String> read,
+                           Set<File> changed )
+            throws IOException
+    {
+        boolean added = false;
+        while ( !pending.isEmpty() )
+        {
+            File file = pending.pop().getCanonicalFile();
+            String path = file.getPath();
+            if ( !file.isFile() || !present.add( path ) )
+            {
+                continue;
+            }
+
+            Node node = nodes.get( path );
+            if ( node == null || node.lastModified != file.lastModified() || node.length != file.length() )
+            {
+                added |= node == null;
+                node = new Node( file.lastModified(), file.length() );
+                node.names.addAll( readIncludeNames( file ) );
+                node.resolved.addAll( resolveAll( node.names, file.getParentFile(), searchPath ) );
+                nodes.put( path, node );
+                read.add( path );
+                changed.add( file );
+            }
+            for ( String include : node.getIncludes() )
+            {
+                pending.push( new File( include ) );
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Looks up the included names of a file again. If they now find other files, the files found before are kept
+     * as former includes, so that the file still counts as an includer of a file which was removed.
+     *
+     * @return true if any name found another file
+     */
+    private static boolean reresolve( Node node, String path, List<File> searchPath ) throws IOException
+    {
+        List<String> resolved = resolveAll( node.names, new File( path ).getParentFile(), searchPath );
+        if ( resolved.equals( node.resolved ) )
+        {
+            return false;
+        }
+        node.formerIncludes.addAll( node.getIncludes() );
+        node.resolved.clear();
+        node.resolved.addAll( resolved );
+        return true;
+    }
+
+    /**
+     * Returns the files which include any of the specified files, directly or through other files.
+     *
+     * @param files the files whose includers are wanted
+     * @return the includers, which do not include the specified files themselves unless they are part of a cycle
+     * @throws IOException if the canonical path of a file cannot be determined
+     */
+    Set<File> getIncluders( Collection<File> files ) throws IOException
+    {
+        Map<String, List<String>> includers = new HashMap<>();
+        for ( Map.Entry<String, Node> entry : nodes.entrySet() )
+        {
+            Set<String> includes = new HashSet<>( entry.getValue().getIncludes() );
+            includes.addAll( entry.getValue().formerIncludes );
+            for ( String include : includes )
+            {
+                List<String> list = includers.get( include );
+                if ( list == null )
+                {
+                    list = new ArrayList<>();
+                    includers.put( include, list );
+                }
+                list.add( entry.getKey() );
+            }
+        }
+
+        Set<File> result = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        for ( File file : files )
+        {
+            pending.push( file.getCanonicalPath() );
+        }
+        while ( !pending.isEmpty() )
+        {
+            List<String> direct = includers.get( pending.pop() );
+            if ( direct != null )
+            {
+                for ( String includer : direct )
+                {
+                    if ( result.add( new File( includer ) ) )
+                    {
+                        pending.push( includer );
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the files included by the specified file, directly or through other files.
+     *
+     * @param file an IDL file known to the graph
+     * @return the included files, which do not include the specified file itself unless it is part of a cycle
+     * @throws IOException if the canonical path of the file cannot be determined
+     */
+    Set<File> getIncludes( File file ) throws IOException
+    {
+        Set<File> result = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        pending.push( file.getCanonicalPath() );
+        while ( !pending.isEmpty() )
+        {
+            Node node = nodes.get( pending.pop() );
+            if ( node != null )
+            {
+                for ( String include : node.getIncludes() )
+                {
+                    if ( result.add( new File( include ) ) )
+                    {
+                        pending.push( include );
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void collectIdlFiles( File directory, Deque<File> files )
+    {
+        File[] children = directory.listFiles();
+        if ( children == null )
+        {
+            return;
+        }
+        for ( File child : children )
+        {
+            if ( child.isDirectory() )
+            {
+                collectIdlFiles( child, files );
+            }
+            else if ( child.getName().endsWith( IDL_SUFFIX ) )
+            {
+                files.push( child );
+            }
+        }
+    }
+
+    /**
+     * Returns the canonical paths of the files found by the names given by the <code>#include</code> directives of an
+     * IDL file. Names are looked up as the compilers do: relative to the including file, then in the search path.
+     * Names which cannot be found give null.
+     */
+    private static List<String> resolveAll( List<String> names, File includingDirectory, List<File> searchPath )
+            throws IOException
+    {
+        List<String> resolved = new ArrayList<>();
+        for ( String name : names )
+        {
+            File included = resolve( name, includingDirectory, searchPath );
+            resolved.add( included == null ? null : included.getCanonicalPath() );
+        }
+        return resolved;
+    }
+
+    /**
+     * Returns the names given by the <code>#include</code> directives of an IDL file, in order.
+     *
+     * @param file the IDL file
+     * @return the names, as written in the file
+     * @throws IOException if the file cannot be read
+     */
+    static List<String> readIncludeNames( File file ) throws IOException
+    {
+        List<String> names = new ArrayList<>();
+        try ( BufferedReader reader =
+                      new BufferedReader( new InputStreamReader( new FileInputStream( file ), UTF_8 ) ) )
+        {
+            String line;
+            while ( ( line = reader.readLine() ) != null )
+            {
+                Matcher matcher = INCLUDE_DIRECTIVE.matcher( line );
+                if ( matcher.find() )
+                {
+                    names.add( matcher.group( 1 ) );
+                }
+            }
+        }
+        return names;
+    }
+
+    private static File resolve( String name, File includingDirectory, List<File> searchPath )
+    {
+        File candidate = new File( includingDirectory, name );
+        if ( candidate.isFile() )
+        {
+            return candidate;
+        }
+        for ( File directory : searchPath )
+        {
+            candidate = new File( directory, name );
+            if ( candidate.isFile() )
+            {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * What the graph knows about a single file.
+     */
+    private static class Node
+    {
+        private final long lastModified;
+
+        private final long length;
+
+        /**
+         * The names given by the <code>#include</code> directives of the file.
+         */
+        private final List<String> names = new ArrayList<>();
+
+        /**
+         * The canonical path of the file found by each name, or null if it found none.
+         */
+        private final List<String> resolved = new ArrayList<>();
+
+        /**
+         * The files the names found before they were last looked up again, while this graph is in use.
+         */
+        private final Set<String> formerIncludes = new HashSet<>();
+
+        Node( long lastModified, long length )
+        {
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        List<String> getIncludes()
+        {
+            List<String> includes = new ArrayList<>();
+            for ( String path : resolved )
+            {
+                if ( path != null )
+                {
+                    includes.add( path );
+                }
+            }
+            return includes;
+        }
+    }
+}
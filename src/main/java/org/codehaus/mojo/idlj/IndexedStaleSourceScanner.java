@@ -0,0 +1,60 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Set;
+
+/**
+ * Selects the source files which have been modified since they were recorded in a staleness index. Unlike
+ * <code>StaleSourceScanner</code>, which compares each source file with a target file, this only uses the
+ * modification time of each source file, as read while scanning.
+ */
+class IndexedStaleSourceScanner extends ParallelSourceScanner
+{
+    private final StalenessIndex index;
+
+    private final long toleranceMillis;
+
+    /**
+     * Creates a scanner.
+     *
+     * @param index           the index recording the files as of their last translation
+     * @param toleranceMillis the difference in modification times below which a file is not considered modified
+     * @param includes        the patterns selecting the source files
+     * @param excludes        the patterns excluding source files
+     * @param parallelism     the number of directories to scan concurrently
+     */
+    IndexedStaleSourceScanner( StalenessIndex index, long toleranceMillis, Set<String> includes,
+                               Set<String> excludes, int parallelism )
+    {
+        super( includes, excludes, parallelism );
+        this.index = index;
+        this.toleranceMillis = toleranceMillis;
+    }
+
+    @Override
+    protected boolean isIncluded( File file, BasicFileAttributes attributes ) throws IOException
+    {
+        return index.isStale( file, attributes.lastModifiedTime().toMillis(), toleranceMillis );
+    }
+}
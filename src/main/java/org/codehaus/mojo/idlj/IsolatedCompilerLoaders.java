@@ -0,0 +1,142 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.CodeSource;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Private copies of compilers which keep their symbol tables in static fields, so that several of them can run at
+ * the same time inside the Maven process. Each copy is loaded from the compiler's jar by a class loader of its own,
+ * and is used by one compilation at a time; once that compilation is complete, the copy is kept for the next one.
+ * All of the class loaders are closed at the end of the execution.
+ */
+class IsolatedCompilerLoaders
+    implements Closeable
+{
+    /**
+     * The idle copies of each compiler, by the compiler class shared by the plugin.
+     */
+    private final Map<Class<?>, Deque<Class<?>>> idleCopies = new HashMap<>();
+
+    private final List<URLClassLoader> loaders = new ArrayList<>();
+
+    private boolean closed;
+
+    /**
+     * Takes a copy of a compiler for the exclusive use of the caller, loading a new one if none is idle.
+     *
+     * @param compilerClass the compiler class shared by the plugin
+     * @return a private copy of the compiler class, or null if the compiler cannot be copied
+     * @throws IOException if the compiler cannot be loaded
+     */
+    Class<?> borrow( Class<?> compilerClass ) throws IOException
+    {
+        URL location = getLocation( compilerClass );
+        if ( location == null )
+        {
+            return null;
+        }
+
+        URLClassLoader loader;
+        synchronized ( this )
+        {
+            if ( closed )
+            {
+                return null;
+            }
+            Deque<Class<?>> idle = idleCopies.get( compilerClass );
+            if ( idle != null && !idle.isEmpty() )
+            {
+                return idle.pop();
+            }
+            loader = new URLClassLoader( new URL[] { location }, ClassLoader.getSystemClassLoader().getParent() );
+            loaders.add( loader );
+        }
+
+        try
+        {
+            return loader.loadClass( compilerClass.getName() );
+        }
+        catch ( ClassNotFoundException | LinkageError e )
+        {
+            throw new IOException( "Unable to load a copy of " + compilerClass.getName() + " from " + location, e );
+        }
+    }
+
+    /**
+     * Makes a copy of a compiler available for later compilations.
+     *
+     * @param compilerClass the compiler class shared by the plugin
+     * @param copy          the copy returned by {@link #borrow}, no longer in use
+     */
+    synchronized void release( Class<?> compilerClass, Class<?> copy )
+    {
+        if ( closed )
+        {
+            return;
+        }
+        Deque<Class<?>> idle = idleCopies.get( compilerClass );
+        if ( idle == null )
+        {
+            idle = new ArrayDeque<>();
+            idleCopies.put( compilerClass, idle );
+        }
+        idle.push( copy );
+    }
+
+    /**
+     * @return the number of copies loaded so far
+     */
+    synchronized int getLoadedCount()
+    {
+        return loaders.size();
+    }
+
+    /**
+     * Discards all of the copies. Compilations still running are unaffected, but their copies are not kept.
+     */
+    public synchronized void close() throws IOException
+    {
+        closed = true;
+        idleCopies.clear();
+        for ( URLClassLoader loader : loaders )
+        {
+            CompilerRegistry.forget( loader );
+            loader.close();
+        }
+        loaders.clear();
+    }
+
+    private static URL getLocation( Class<?> compilerClass )
+    {
+        CodeSource codeSource = compilerClass.getProtectionDomain().getCodeSource();
+        return codeSource == null ? null : codeSource.getLocation();
+    }
+}
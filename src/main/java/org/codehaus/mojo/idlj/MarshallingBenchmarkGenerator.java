@@ -0,0 +1,344 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Writes a JMH benchmark for each struct, union and sequence among the sources generated from IDL files. Each
+ * benchmark marshals a randomly populated value of its type with the generated helper, through the in-memory CDR
+ * streams of the ORB, and reads it back. Types are recognized from the generated sources rather than from the IDL,
+ * so that the benchmarks measure the helpers of whichever compiler generated them.
+ * <p>
+ * Benchmarks are written in the package of the helper, along with a copy of the class which populates the values.
+ */
+class MarshallingBenchmarkGenerator
+{
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private static final String HELPER_SUFFIX = "Helper.java";
+
+    private static final String BENCHMARK_SUFFIX = "MarshallingBenchmark";
+
+    private static final String BENCHMARK_TEMPLATE = "MarshallingBenchmark.java.template";
+
+    private static final String RANDOM_VALUES_TEMPLATE = "IdlRandomValues.java.template";
+
+    private static final String RANDOM_VALUES_CLASS = "IdlRandomValues";
+
+    private static final Set<String> PRIMITIVE_TYPES = new HashSet<>(
+            Arrays.asList( "boolean", "byte", "char", "short", "int", "long", "float", "double" ) );
+
+    private static final Pattern PACKAGE = Pattern.compile( "^\\s*package\\s+([\\w.$]+)\\s*;", Pattern.MULTILINE );
+
+    private static final Pattern PACKAGE_DECLARATION =
+            Pattern.compile( "package\\s+\\$\\{package\\}\\s*;[ \\t]*\\r?\\n(?:[ \\t]*\\r?\\n)?" );
+
+    private static final Pattern READ_METHOD = Pattern.compile(
+            "public\\s+static\\s+([\\w.$]+(?:\\s*\\[\\s*\\])*)\\s+read\\s*\\(\\s*(?:final\\s+)?"
+                    + "org\\.omg\\.CORBA\\.portable\\.InputStream\\b" );
+
+    private static final Pattern UNION_CLASS = Pattern.compile( "public\\s+\\S+\\s+discriminator\\s*\\(\\s*\\)" );
+
+    private static final Pattern STRUCT_CLASS =
+            Pattern.compile( "class\\s+[\\w$]+\\s+implements\\s+org\\.omg\\.CORBA\\.portable\\.IDLEntity\\b" );
+
+    private static final Pattern ENUM_CLASS = Pattern.compile( "static\\s+\\S+\\s+from_int\\s*\\(" );
+
+    /**
+     * The kinds of types for which benchmarks are written.
+     */
+    enum Kind
+    {
+        STRUCT, UNION, SEQUENCE
+    }
+
+    private final File generatedSourcesDirectory;
+
+    private final long seed;
+
+    private final int maxLength;
+
+    /**
+     * Creates a generator.
+     *
+     * @param generatedSourcesDirectory the directory holding the sources generated from IDL files
+     * @param seed                      the default seed from which the benchmarks populate their values
+     * @param maxLength                 the default greatest length of the strings and sequences in the values
+     */
+    MarshallingBenchmarkGenerator( File generatedSourcesDirectory, long seed, int maxLength )
+    {
+        this.generatedSourcesDirectory = generatedSourcesDirectory;
+        this.seed = seed;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Finds the types to benchmark among generated files. A struct or union with several helpers, such as the one
+     * generated for it and those of its typedefs, is only benchmarked once. Each sequence is benchmarked with its own
+     * helper, as sequences of different bounds map to the same Java type but are marshalled differently.
+     *
+     * @param generatedFiles the paths of the generated files, relative to the generated sources directory
+     * @return the types, by the fully qualified name of their helper
+     * @throws IOException if a generated file cannot be read
+     */
+    Map<String, MarshalledType> findTypes( Collection<String> generatedFiles ) throws IOException
+    {
+        Map<String, MarshalledType> byKey = new LinkedHashMap<>();
+        for ( String path : new TreeSet<>( generatedFiles ) )
+        {
+            if ( path.endsWith( HELPER_SUFFIX ) )
+            {
+                MarshalledType type = readHelper( new File( generatedSourcesDirectory, path ) );
+                MarshalledType existing = type == null ? null : byKey.get( type.getKey() );
+                if ( type != null && ( existing == null || type.isOwnHelper() && !existing.isOwnHelper() ) )
+                {
+                    byKey.put( type.getKey(), type );
+                }
+            }
+        }
+
+        Map<String, MarshalledType> types = new LinkedHashMap<>();
+        for ( MarshalledType type : byKey.values() )
+        {
+            types.put( type.getHelper(), type );
+        }
+        return types;
+    }
+
+    private MarshalledType readHelper( File helperFile ) throws IOException
+    {
+        String helper = read( helperFile );
+        Matcher readMethod = READ_METHOD.matcher( helper );
+        if ( !readMethod.find() )
+        {
+            return null;
+        }
+
+        Matcher packageDeclaration = PACKAGE.matcher( helper );
+        String packageName = packageDeclaration.find() ? packageDeclaration.group( 1 ) : "";
+        String helperName = helperFile.getName().substring( 0, helperFile.getName().length() - ".java".length() );
+        String valueType = qualify( readMethod.group( 1 ).replaceAll( "\\s", "" ), packageName );
+
+        Kind kind = getKind( valueType, helper );
+        return kind == null ? null : new MarshalledType( packageName, helperName, valueType, kind );
+    }
+
+    /**
+     * Qualifies a type which the helper names without its package, as JacORB does for types in the helper's own
+     * package.
+     */
+    private static String qualify( String valueType, String packageName )
+    {
+        int dimensions = valueType.indexOf( '[' );
+        String elementType = dimensions < 0 ? valueType : valueType.substring( 0, dimensions );
+        if ( packageName.isEmpty() || elementType.contains( "." ) || PRIMITIVE_TYPES.contains( elementType ) )
+        {
+            return valueType;
+        }
+        return packageName + "." + valueType;
+    }
+
+    private Kind getKind( String valueType, String helper ) throws IOException
+    {
+        if ( valueType.endsWith( "[]" ) )
+        {
+            return helper.contains( "create_sequence_tc" ) && !helper.contains( "create_array_tc" )
+                    ? Kind.SEQUENCE : null;
+        }
+
+        File valueFile = new File( generatedSourcesDirectory, valueType.replace( '.', File.separatorChar ) + ".java" );
+        if ( !valueFile.isFile() )
+        {
+            return null;
+        }
+        String value = read( valueFile );
+        if ( UNION_CLASS.matcher( value ).find() )
+        {
+            return Kind.UNION;
+        }
+        if ( STRUCT_CLASS.matcher( value ).find() && !ENUM_CLASS.matcher( value ).find() )
+        {
+            return Kind.STRUCT;
+        }
+        return null;
+    }
+
+    /**
+     * Writes the benchmarks for the specified types.
+     *
+     * @param types              the types to benchmark
+     * @param benchmarkDirectory the directory in which to write the benchmark sources
+     * @return the paths of the written files, relative to the benchmark directory
+     * @throws IOException if a file cannot be written
+     */
+    List<String> generate( Collection<MarshalledType> types, File benchmarkDirectory ) throws IOException
+    {
+        String benchmarkTemplate = readTemplate( BENCHMARK_TEMPLATE );
+        String randomValuesTemplate = readTemplate( RANDOM_VALUES_TEMPLATE );
+
+        List<String> written = new ArrayList<>();
+        Set<String> packages = new TreeSet<>();
+        for ( MarshalledType type : types )
+        {
+            String source = benchmarkTemplate.replace( "${className}", type.getBenchmarkName() )
+                    .replace( "${type}", type.valueType )
+                    .replace( "${helper}", type.getHelper() )
+                    .replace( "${seed}", Long.toString( seed ) )
+                    .replace( "${maxLength}", Integer.toString( maxLength ) );
+            written.add( write( benchmarkDirectory, type.packageName, type.getBenchmarkName(), source ) );
+            packages.add( type.packageName );
+        }
+        for ( String packageName : packages )
+        {
+            written.add( write( benchmarkDirectory, packageName, RANDOM_VALUES_CLASS, randomValuesTemplate ) );
+        }
+        return written;
+    }
+
+    private static String write( File benchmarkDirectory, String packageName, String className, String template )
+            throws IOException
+    {
+        String source = setPackage( template, packageName );
+        String path = packageName.isEmpty() ? className + ".java"
+                : packageName.replace( '.', File.separatorChar ) + File.separator + className + ".java";
+        File file = new File( benchmarkDirectory, path );
+        FileUtils.forceMkdir( file.getParentFile() );
+        Files.write( file.toPath(), source.getBytes( UTF_8 ) );
+        return path;
+    }
+
+    /**
+     * Fills in the package of a template, removing its package declaration, and the blank line which follows it, for
+     * the default package. The template may use any line endings.
+     *
+     * @param template    the template
+     * @param packageName the package, empty for the default package
+     * @return the source
+     */
+    static String setPackage( String template, String packageName )
+    {
+        return packageName.isEmpty()
+                ? PACKAGE_DECLARATION.matcher( template ).replaceFirst( "" )
+                : template.replace( "${package}", packageName );
+    }
+
+    private static String read( File file ) throws IOException
+    {
+        return new String( Files.readAllBytes( file.toPath() ), UTF_8 );
+    }
+
+    private static String readTemplate( String name ) throws IOException
+    {
+        try ( InputStream in = MarshallingBenchmarkGenerator.class.getResourceAsStream( name ) )
+        {
+            if ( in == null )
+            {
+                throw new IOException( "Missing template " + name );
+            }
+            return new String( IOUtil.toByteArray( in ), UTF_8 );
+        }
+    }
+
+    /**
+     * A type generated from IDL, with the helper which marshals it.
+     */
+    static class MarshalledType
+    {
+        private final String packageName;
+
+        private final String helperName;
+
+        private final String valueType;
+
+        private final Kind kind;
+
+        MarshalledType( String packageName, String helperName, String valueType, Kind kind )
+        {
+            this.packageName = packageName;
+            this.helperName = helperName;
+            this.valueType = valueType;
+            this.kind = kind;
+        }
+
+        /**
+         * @return the fully qualified name of the helper
+         */
+        String getHelper()
+        {
+            return packageName.isEmpty() ? helperName : packageName + "." + helperName;
+        }
+
+        /**
+         * @return the Java type of the values, an array type for a sequence
+         */
+        String getValueType()
+        {
+            return valueType;
+        }
+
+        Kind getKind()
+        {
+            return kind;
+        }
+
+        /**
+         * @return the key under which types are benchmarked only once: the helper for a sequence, else the value type
+         */
+        String getKey()
+        {
+            return kind == Kind.SEQUENCE ? getHelper() : valueType;
+        }
+
+        /**
+         * @return true if the helper is the one generated for the type itself, rather than for a typedef of it
+         */
+        boolean isOwnHelper()
+        {
+            return getHelper().equals( valueType + "Helper" );
+        }
+
+        /**
+         * @return the simple name of the benchmark class, derived from the helper's
+         */
+        String getBenchmarkName()
+        {
+            return helperName.substring( 0, helperName.length() - "Helper".length() ) + BENCHMARK_SUFFIX;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.SelectorUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Writes JMH benchmarks which measure the marshalling of the structs, unions and sequences generated from IDL
+ * files. Each benchmark writes a randomly populated value with the generated helper to the in-memory CDR stream of
+ * the ORB, and reads it back. The benchmarks are added to the test sources; the project needs JMH and an ORB as test
+ * dependencies to compile and run them.
+ *
+ * @version $Id$
+ * @goal generate-marshalling-benchmarks
+ * @phase generate-test-sources
+ */
+public class MarshallingBenchmarkMojo
+        extends AbstractMojo
+{
+    /**
+     * The directory holding the sources generated from the IDL files.
+     *
+     * @parameter default-value="${project.build.directory}/generated-sources/idl"
+     */
+    private File generatedSourcesDirectory;
+
+    /**
+     * The timestamp directory of the executions which generated the sources. They record the files generated from
+     * each IDL file, which the <code>source</code> selects from.
+     *
+     * @parameter default-value="${project.build.directory}/idlj-timestamp"
+     */
+    private File timestampDirectory;
+
+    /**
+     * The IDL files whose types are benchmarked, as a <code>source</code> with include and exclude patterns
+     * relative to the IDL source directory. Defaults to all of the IDL files. Patterns are ignored if the files
+     * generated from each IDL file were not recorded, in which case all of the generated sources are read.
+     *
+     * @parameter
+     */
+    private Source source;
+
+    /**
+     * The directory to write the benchmark sources to.
+     *
+     * @parameter default-value="${project.build.directory}/generated-test-sources/idlj-benchmarks"
+     */
+    private File benchmarkDirectory;
+
+    /**
+     * The default seed from which each benchmark populates the value it marshals. The same seed always produces the
+     * same values.
+     *
+     * @parameter property="idlj.benchmarkSeed" default-value="42"
+     */
+    private long benchmarkSeed;
+
+    /**
+     * The default greatest length of the strings and sequences in the marshalled values.
+     *
+     * @parameter property="idlj.benchmarkMaxLength" default-value="8"
+     */
+    private int benchmarkMaxLength;
+
+    /**
+     * @parameter property="project"
+     * @required
+     * @readonly
+     */
+    private MavenProject project;
+
+    /**
+     * The name of the directory, in the timestamp directory, holding the state directory of each execution.
+     */
+    private static final String EXECUTIONS_DIRECTORY_NAME = "executions";
+
+    /**
+     * The name of the file, in the state directory of an execution, which records the files generated from each IDL
+     * file.
+     */
+    private static final String OUTPUT_MANIFEST_FILE_NAME = "outputs.manifest";
+
+    /**
+     * Writes the benchmarks.
+     *
+     * @throws MojoExecutionException if the generated sources cannot be read or the benchmarks cannot be written
+     */
+    public void execute() throws MojoExecutionException
+    {
+        if ( !generatedSourcesDirectory.isDirectory() )
+        {
+            getLog().info( "No generated sources in " + generatedSourcesDirectory + " - no benchmarks written" );
+            return;
+        }
+
+        try
+        {
+            MarshallingBenchmarkGenerator generator =
+                    new MarshallingBenchmarkGenerator( generatedSourcesDirectory, benchmarkSeed, benchmarkMaxLength );
+            Map<String, MarshallingBenchmarkGenerator.MarshalledType> types =
+                    generator.findTypes( getGeneratedFiles() );
+
+            FileUtils.deleteDirectory( benchmarkDirectory );
+            List<String> written = generator.generate( types.values(), benchmarkDirectory );
+            getLog().info( "Wrote marshalling benchmarks for " + types.size() + " types to " + benchmarkDirectory );
+            getLog().debug( "Benchmark sources: " + written );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Failed to write marshalling benchmarks", e );
+        }
+
+        if ( project != null )
+        {
+            project.addTestCompileSourceRoot( benchmarkDirectory.getAbsolutePath() );
+        }
+    }
+
+    /**
+     * Returns the generated files to read: those generated from the IDL files selected by the source, or all of
+     * them if the files generated from each IDL file were not recorded.
+     */
+    private Collection<String> getGeneratedFiles()
+    {
+        Map<String, Set<String>> outputs = loadOutputs();
+        if ( outputs.isEmpty() )
+        {
+            DirectoryScanner scanner = new DirectoryScanner();
+            scanner.setBasedir( generatedSourcesDirectory );
+            scanner.setIncludes( new String[] { "**/*.java" } );
+            scanner.scan();
+            return Arrays.asList( scanner.getIncludedFiles() );
+        }
+
+        Set<String> generated = new TreeSet<>();
+        for ( Map.Entry<String, Set<String>> entry : outputs.entrySet() )
+        {
+            if ( isSelected( entry.getKey() ) )
+            {
+                for ( String path : entry.getValue() )
+                {
+                    if ( new File( generatedSourcesDirectory, path ).isFile() )
+                    {
+                        generated.add( path );
+                    }
+                }
+            }
+        }
+        return generated;
+    }
+
+    /**
+     * Reads the files generated from each IDL file by all of the executions sharing the timestamp directory. Those
+     * which generated into another directory are left out by checking that the generated files exist.
+     */
+    private Map<String, Set<String>> loadOutputs()
+    {
+        Map<String, Set<String>> outputs = new TreeMap<>();
+        File[] executions = new File( timestampDirectory, EXECUTIONS_DIRECTORY_NAME ).listFiles();
+        if ( executions != null )
+        {
+            for ( File execution : executions )
+            {
+                File manifest = new File( execution, OUTPUT_MANIFEST_FILE_NAME );
+                for ( Map.Entry<String, Set<String>> entry
+                        : OutputManifest.load( manifest ).getOutputsByIdlFile().entrySet() )
+                {
+                    Set<String> generated = outputs.get( entry.getKey() );
+                    if ( generated == null )
+                    {
+                        generated = new TreeSet<>();
+                        outputs.put( entry.getKey(), generated );
+                    }
+                    generated.addAll( entry.getValue() );
+                }
+            }
+        }
+        return outputs;
+    }
+
+    private boolean isSelected( String idlFile )
+    {
+        Set<String> includes = source == null ? null : source.getIncludes();
+        Set<String> excludes = source == null ? null : source.getExcludes();
+        return matchesAny( includes == null ? Collections.singleton( "**/*.idl" ) : includes, idlFile )
+                && !matchesAny( excludes == null ? Collections.<String>emptySet() : excludes, idlFile );
+    }
+
+    private static boolean matchesAny( Set<String> patterns, String idlFile )
+    {
+        String path = idlFile.replace( '/', File.separatorChar );
+        for ( String pattern : patterns )
+        {
+            String normalized = pattern.replace( '/', File.separatorChar ).replace( '\\', File.separatorChar );
+            if ( normalized.endsWith( File.separator ) )
+            {
+                normalized += "**";
+            }
+            if ( SelectorUtils.matchPath( normalized, path ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
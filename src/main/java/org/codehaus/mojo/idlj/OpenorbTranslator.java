@@ -20,21 +20,11 @@ package org.codehaus.mojo.idlj;
  */
 
 import org.apache.maven.plugin.MojoExecutionException;
-import org.codehaus.plexus.util.StringUtils;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -47,6 +37,10 @@ class OpenorbTranslator
         extends AbstractTranslator
         implements CompilerTranslator
 {
+    /**
+     * The static method which runs the compiler without exiting the JVM.
+     */
+    private static final String COMPILER_ENTRY_POINT = "compile";
 
     /**
      * Default constructor
@@ -66,76 +60,13 @@ class OpenorbTranslator
     private void invokeCompiler( Class<?> compilerClass, List<String> args )
             throws MojoExecutionException
     {
-        // It would be great to use some 3rd party library for this stuff
         if ( !isFork() )
         {
             invokeCompilerInProcess( compilerClass, args );
         }
         else
         {
-
-            // Forks a new java process.
-            // Get path to java binary
-            File javaHome = new File( System.getProperty( "java.home" ) );
-            File javaBin = new File( new File( javaHome, "bin" ), "java" );
-
-            // Get current class path
-            URLClassLoader cl = (URLClassLoader) this.getClass().getClassLoader();
-            URL[] classPathUrls = cl.getURLs();
-
-            // Construct list of arguments
-            List<String> binArgs = new ArrayList<>();
-
-            // First argument is the java binary to run
-            binArgs.add( javaBin.getPath() );
-
-            // Add the classpath to argument list
-            binArgs.add( "-classpath" );
-            String classPath = "" + new File( classPathUrls[0].getPath().replaceAll( "%20", " " ) );
-            for ( URL url : classPathUrls )
-            {
-                classPath += File.pathSeparator + new File( url.getPath().replaceAll( "%20", " " ) );
-            }
-            binArgs.add( classPath );
-
-            // Add class containing main method to arg list
-            binArgs.add( compilerClass.getName() );
-
-            // Add java arguments
-            for ( String arg : args )
-            {
-                binArgs.add( arg );
-            }
-
-            // Convert arg list to array
-            String[] argArray = binArgs.toArray( new String[binArgs.size()] );
-
-            if ( isDebug() )
-            {
-                getLog().debug( StringUtils.join( argArray, " " ) );
-            }
-
-            try
-            {
-                Process p = Runtime.getRuntime().exec( argArray );
-                redirectStream( p.getErrorStream(), System.err );
-                redirectStream( p.getInputStream(), System.out );
-
-                p.waitFor();
-
-                if ( isFailOnError() && p.exitValue() != 0 )
-                {
-                    throw new MojoExecutionException( "IDL Compilation failure" );
-                }
-            }
-            catch ( IOException e )
-            {
-                throw new MojoExecutionException( "Error forking compiler", e );
-            }
-            catch ( InterruptedException e )
-            {
-                throw new MojoExecutionException( "Thread interrupted unexpectedly", e );
-            }
+            invokeCompilerInForkedProcess( compilerClass, COMPILER_ENTRY_POINT, args );
         }
     }
 
@@ -143,8 +74,7 @@ class OpenorbTranslator
     protected int runCompiler( Class<?> compilerClass, String... arguments )
             throws NoSuchMethodException, IllegalAccessException, InvocationTargetException
     {
-        Method compileMethod = compilerClass.getMethod( "compile", String[].class );
-        compileMethod.invoke( compilerClass, new Object[]{arguments} );
+        CompilerRegistry.run( compilerClass, COMPILER_ENTRY_POINT, arguments );
         return 0;
     }
 
@@ -161,6 +91,39 @@ class OpenorbTranslator
     public void invokeCompiler( String sourceDirectory, File[] includeDirs, String targetDirectory, String idlFile,
                                 Source source )
             throws MojoExecutionException
+    {
+        invokeCompiler( sourceDirectory, includeDirs, targetDirectory, Collections.singletonList( idlFile ), source );
+    }
+
+    @Override
+    boolean isBatchSupported()
+    {
+        return true;
+    }
+
+    /**
+     * Invokes the OpenORB compiler once for all of the specified files.
+     *
+     * @param sourceDirectory the path to the sources
+     * @param includeDirs     the <code>File[]</code> of directories where to find the includes
+     * @param targetDirectory the path to the destination of the compilation
+     * @param idlFiles        the paths to the files to compile
+     * @param source          the source set on which to run the compiler
+     * @throws MojoExecutionException the exeception is thrown whenever the compilation fails or crashes
+     */
+    @Override
+    void invokeCompiler( String sourceDirectory, File[] includeDirs, String targetDirectory, List<String> idlFiles,
+                         Source source )
+            throws MojoExecutionException
+    {
+        List<String> args = buildArguments( sourceDirectory, includeDirs, targetDirectory, source );
+        args.addAll( idlFiles );
+
+        invokeCompiler( loadCompilerClass(), args );
+    }
+
+    @Override
+    List<String> getArguments( String sourceDirectory, File[] includeDirs, String targetDirectory, Source source )
     {
         List<String> args = new ArrayList<>();
 
@@ -225,52 +188,23 @@ class OpenorbTranslator
             }
         }
 
-        args.add( idlFile );
+        return args;
+    }
 
-        Class<?> compilerClass;
+    @Override
+    Class<?> getCompilerClass() throws MojoExecutionException
+    {
         try
         {
-            compilerClass = getClassLoaderFacade().loadClass( "org.openorb.compiler.IdlCompiler" );
+            return CompilerRegistry.loadClass( "org.openorb.compiler.IdlCompiler" );
         }
         catch ( ClassNotFoundException e )
         {
             throw new MojoExecutionException( "OpenORB IDL compiler not found", e );
         }
-
-        invokeCompiler( compilerClass, args );
-    }
-
-    /**
-     * This methos it's used to redirect an <code>InputeStream</code> to a <code>OutputStream</code>
-     *
-     * @param in  the <code>InputStream</code> to read from
-     * @param out the <code>OutputStream</code> to write into
-     */
-    private static void redirectStream( final InputStream in, final OutputStream out )
-    {
-        Thread stdoutTransferThread = new Thread()
-        {
-            public void run()
-            {
-                PrintWriter pw = new PrintWriter( new OutputStreamWriter( out ), true );
-                try
-                {
-                    BufferedReader reader = new BufferedReader( new InputStreamReader( in ) );
-                    String line;
-                    while ( ( line = reader.readLine() ) != null )
-                    {
-                        pw.println( line );
-                    }
-                }
-                catch ( Throwable e )
-                {
-                    e.printStackTrace();
-                }
-            }
-        };
-        stdoutTransferThread.start();
     }
 }
+
 /**
  * Usage: java org.openorb.compiler.IdlCompiler [Options] idl-files...
 Options:
@@ -0,0 +1,184 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Captures what the current thread writes to <code>System.out</code> and <code>System.err</code>.
+ * <p>
+ * Rather than swapping the JVM-wide streams for every compilation, demultiplexing streams are installed once.
+ * They send each write to the buffers registered by the writing thread, or to the original stream if that thread
+ * is not capturing. Compilers running concurrently on different threads therefore each see only their own output.
+ */
+class OutputCapture
+{
+    private static final ThreadLocal<OutputCapture> ACTIVE = new ThreadLocal<>();
+
+    private static RoutingStream routedOut;
+
+    private static RoutingStream routedErr;
+
+    private final OutputStream out;
+
+    private final OutputStream err;
+
+    /**
+     * The capture which was active on this thread when this one started; restored when it stops.
+     */
+    private final OutputCapture previous;
+
+    private OutputCapture( OutputStream out, OutputStream err, OutputCapture previous )
+    {
+        this.out = out;
+        this.err = err;
+        this.previous = previous;
+    }
+
+    /**
+     * Starts sending the current thread's standard output and standard error to the specified streams.
+     *
+     * @param out the stream to receive what the thread writes to <code>System.out</code>
+     * @param err the stream to receive what the thread writes to <code>System.err</code>
+     * @return the active capture, which must be stopped by the same thread
+     */
+    static OutputCapture start( OutputStream out, OutputStream err )
+    {
+        installRoutingStreams();
+        OutputCapture capture = new OutputCapture( out, err, ACTIVE.get() );
+        ACTIVE.set( capture );
+        return capture;
+    }
+
+    /**
+     * Stops capturing output for the current thread, restoring any capture that was active when this one started.
+     */
+    void stop()
+    {
+        if ( previous == null )
+        {
+            ACTIVE.remove();
+        }
+        else
+        {
+            ACTIVE.set( previous );
+        }
+    }
+
+    /**
+     * Stops capturing output for the current thread until {@link #resume} is called, so that it can write to the
+     * original streams.
+     *
+     * @return the capture which was active, or null if none was
+     */
+    static OutputCapture suspend()
+    {
+        OutputCapture capture = ACTIVE.get();
+        ACTIVE.remove();
+        return capture;
+    }
+
+    /**
+     * Resumes a capture suspended by the current thread.
+     *
+     * @param capture the capture returned by {@link #suspend}
+     */
+    static void resume( OutputCapture capture )
+    {
+        if ( capture != null )
+        {
+            ACTIVE.set( capture );
+        }
+    }
+
+    /**
+     * Installs the routing streams, unless they are still in place. Something else may have replaced the system
+     * streams since they were installed, in which case new ones are created on top of the current streams.
+     */
+    private static synchronized void installRoutingStreams()
+    {
+        if ( routedOut == null || System.out != routedOut )
+        {
+            routedOut = new RoutingStream( System.out, false );
+            System.setOut( routedOut );
+        }
+        if ( routedErr == null || System.err != routedErr )
+        {
+            routedErr = new RoutingStream( System.err, true );
+            System.setErr( routedErr );
+        }
+    }
+
+    /**
+     * A print stream which selects its destination based on the thread writing to it.
+     */
+    private static class RoutingStream
+            extends PrintStream
+    {
+        RoutingStream( PrintStream original, boolean isErrorStream )
+        {
+            super( new RoutingOutputStream( original, isErrorStream ), true );
+        }
+    }
+
+    private static class RoutingOutputStream
+            extends OutputStream
+    {
+        private final PrintStream original;
+
+        private final boolean isErrorStream;
+
+        RoutingOutputStream( PrintStream original, boolean isErrorStream )
+        {
+            this.original = original;
+            this.isErrorStream = isErrorStream;
+        }
+
+        private OutputStream getDestination()
+        {
+            OutputCapture capture = ACTIVE.get();
+            if ( capture == null )
+            {
+                return original;
+            }
+            return isErrorStream ? capture.err : capture.out;
+        }
+
+        @Override
+        public void write( int b ) throws IOException
+        {
+            getDestination().write( b );
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len ) throws IOException
+        {
+            getDestination().write( b, off, len );
+        }
+
+        @Override
+        public void flush() throws IOException
+        {
+            getDestination().flush();
+        }
+    }
+}
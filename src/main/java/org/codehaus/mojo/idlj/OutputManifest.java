@@ -0,0 +1,241 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A record of the files generated from each IDL file, so that files which are no longer generated from any IDL
+ * file - because the IDL file was deleted, or no longer defines the types they were generated for - can be removed
+ * from the output directory. IDL files are identified by their path relative to the source directory, and generated
+ * files by their path relative to the output directory.
+ * <p>
+ * Files compiled together in one invocation cannot be told apart, so each of them is recorded with all of the files
+ * the invocation generated. The manifest also records which files were compiled together, so that when one of them
+ * changes or is deleted, the others can be compiled again and the files generated only for it removed.
+ */
+class OutputManifest
+{
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private static final String FIELD_SEPARATOR = "\t";
+
+    private final Map<String, Set<String>> outputs = new TreeMap<>();
+
+    private final Map<String, Set<String>> batches = new TreeMap<>();
+
+    /**
+     * Reads the manifest recorded by an earlier build. If there is none, or it cannot be read, returns an empty one.
+     *
+     * @param file the file in which the manifest was saved
+     * @return the recorded manifest
+     */
+    static OutputManifest load( File file )
+    {
+        OutputManifest manifest = new OutputManifest();
+        if ( file.isFile() )
+        {
+            try ( BufferedReader reader =
+                          new BufferedReader( new InputStreamReader( new FileInputStream( file ), UTF_8 ) ) )
+            {
+                String line;
+                while ( ( line = reader.readLine() ) != null )
+                {
+                    String[] fields = line.split( FIELD_SEPARATOR );
+                    Set<String> values = new TreeSet<>();
+                    for ( int i = 1; i < fields.length; i++ )
+                    {
+                        values.add( fields[i] );
+                    }
+                    if ( fields[0].isEmpty() )
+                    {
+                        manifest.putBatch( values );
+                    }
+                    else
+                    {
+                        manifest.outputs.put( fields[0], values );
+                    }
+                }
+            }
+            catch ( IOException e )
+            {
+                manifest.outputs.clear();
+                manifest.batches.clear();
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Records the manifest for later builds.
+     *
+     * @param file the file in which to save the manifest
+     * @throws IOException if the manifest cannot be written
+     */
+    synchronized void save( File file ) throws IOException
+    {
+        try ( Writer writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( file ), UTF_8 ) ) )
+        {
+            for ( Map.Entry<String, Set<String>> entry : outputs.entrySet() )
+            {
+                writeLine( writer, entry.getKey(), entry.getValue() );
+            }
+            for ( Set<String> batch : new LinkedHashSet<>( batches.values() ) )
+            {
+                writeLine( writer, "", batch );
+            }
+        }
+    }
+
+    private static void writeLine( Writer writer, String key, Set<String> values ) throws IOException
+    {
+        writer.write( key );
+        for ( String value : values )
+        {
+            writer.write( FIELD_SEPARATOR + value );
+        }
+        writer.write( '\n' );
+    }
+
+    private void putBatch( Set<String> idlFiles )
+    {
+        for ( String idlFile : idlFiles )
+        {
+            batches.put( idlFile, idlFiles );
+        }
+    }
+
+    /**
+     * Records the files generated by the latest compilation of an IDL file, replacing those recorded before.
+     *
+     * @param idlFile   the path of the IDL file
+     * @param generated the paths of the generated files
+     */
+    synchronized void record( String idlFile, Collection<String> generated )
+    {
+        outputs.put( idlFile, new TreeSet<>( generated ) );
+        batches.remove( idlFile );
+    }
+
+    /**
+     * Records the files generated by compiling several IDL files in one invocation, replacing those recorded before.
+     *
+     * @param idlFiles  the paths of the IDL files
+     * @param generated the paths of the files generated from all of them
+     */
+    synchronized void recordBatch( Collection<String> idlFiles, Collection<String> generated )
+    {
+        for ( String idlFile : idlFiles )
+        {
+            outputs.put( idlFile, new TreeSet<>( generated ) );
+        }
+        putBatch( new TreeSet<>( idlFiles ) );
+    }
+
+    /**
+     * Returns the IDL files which were compiled together with a file which has since changed or been deleted. The
+     * files generated for that file are also recorded against them, and are only known not to be generated any more
+     * once they have been compiled again.
+     *
+     * @param changed         the paths of the IDL files which are to be compiled again
+     * @param sourceDirectory the directory containing the IDL files
+     * @return the paths of the other files which must be compiled again
+     */
+    synchronized Set<String> getBatchMatesToRecompile( Collection<String> changed, File sourceDirectory )
+    {
+        Set<String> result = new TreeSet<>();
+        for ( Map.Entry<String, Set<String>> entry : batches.entrySet() )
+        {
+            if ( isChanged( entry.getKey(), changed, sourceDirectory ) )
+            {
+                continue;
+            }
+            for ( String mate : entry.getValue() )
+            {
+                if ( isChanged( mate, changed, sourceDirectory ) )
+                {
+                    result.add( entry.getKey() );
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean isChanged( String idlFile, Collection<String> changed, File sourceDirectory )
+    {
+        return changed.contains( idlFile ) || !new File( sourceDirectory, idlFile ).isFile();
+    }
+
+    /**
+     * Forgets the IDL files which no longer exist.
+     *
+     * @param sourceDirectory the directory containing the IDL files
+     */
+    synchronized void retainExistingSources( File sourceDirectory )
+    {
+        for ( Iterator<String> iterator = outputs.keySet().iterator(); iterator.hasNext(); )
+        {
+            String idlFile = iterator.next();
+            if ( !new File( sourceDirectory, idlFile ).isFile() )
+            {
+                iterator.remove();
+                batches.remove( idlFile );
+            }
+        }
+    }
+
+    /**
+     * @return the paths of the files generated from each recorded IDL file, by the path of the IDL file
+     */
+    synchronized Map<String, Set<String>> getOutputsByIdlFile()
+    {
+        return new TreeMap<>( outputs );
+    }
+
+    /**
+     * @return the paths of all of the files generated from the recorded IDL files
+     */
+    synchronized Set<String> getAllOutputs()
+    {
+        Set<String> result = new TreeSet<>();
+        for ( Set<String> generated : outputs.values() )
+        {
+            result.addAll( generated );
+        }
+        return result;
+    }
+}
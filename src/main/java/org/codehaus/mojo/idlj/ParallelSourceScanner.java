@@ -0,0 +1,317 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.compiler.util.scan.AbstractSourceInclusionScanner;
+import org.codehaus.plexus.compiler.util.scan.InclusionScanException;
+import org.codehaus.plexus.util.AbstractScanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Pattern;
+
+/**
+ * Selects the source files matching a set of include and exclude patterns. The patterns have the syntax used by
+ * <code>DirectoryScanner</code>, and the default excludes are applied as well. The patterns are compiled once into
+ * <code>PathMatcher</code>s, and each directory is read in a single pass which yields the attributes of its entries.
+ * Subdirectories are scanned in parallel, and directories whose contents are all excluded are not read at all.
+ * <p>
+ * The scans share one pool of threads for each level of parallelism, created when first needed and kept for later
+ * builds in the same process; idle pool threads exit on their own.
+ */
+class ParallelSourceScanner extends AbstractSourceInclusionScanner
+{
+    private static final String SEPARATOR = Pattern.quote( File.separator );
+
+    private static final String NOT_SEPARATOR = "[^" + ( File.separatorChar == '\\' ? "\\\\" : File.separator ) + "]";
+
+    private static final Map<Integer, ForkJoinPool> POOLS = new HashMap<>();
+
+    private final List<PathMatcher> includes;
+
+    private final List<PathMatcher> excludes;
+
+    /**
+     * Matches the directories whose contents are all excluded.
+     */
+    private final List<PathMatcher> excludedDirectories;
+
+    private final int parallelism;
+
+    /**
+     * Creates a scanner.
+     *
+     * @param includes    the patterns selecting the source files; if empty, all files are selected
+     * @param excludes    the patterns excluding source files
+     * @param parallelism the number of directories to scan concurrently
+     */
+    ParallelSourceScanner( Set<String> includes, Set<String> excludes, int parallelism )
+    {
+        this.parallelism = Math.max( 1, parallelism );
+        Set<String> allExcludes = new HashSet<>( excludes );
+        allExcludes.addAll( Arrays.asList( AbstractScanner.DEFAULTEXCLUDES ) );
+
+        this.includes = compile( includes.isEmpty() ? Collections.singleton( "**" ) : includes );
+        this.excludes = compile( allExcludes );
+        this.excludedDirectories = new ArrayList<>();
+        for ( String exclude : allExcludes )
+        {
+            String normalized = normalize( exclude );
+            if ( normalized.endsWith( File.separator + "**" ) )
+            {
+                excludedDirectories.add( compile( normalized.substring( 0, normalized.length() - 3 ) ) );
+            }
+        }
+    }
+
+    private static List<PathMatcher> compile( Collection<String> patterns )
+    {
+        List<PathMatcher> matchers = new ArrayList<>();
+        for ( String pattern : patterns )
+        {
+            matchers.add( compile( normalize( pattern ) ) );
+        }
+        return matchers;
+    }
+
+    private static String normalize( String pattern )
+    {
+        String normalized = pattern.trim().replace( '/', File.separatorChar ).replace( '\\', File.separatorChar );
+        return normalized.endsWith( File.separator ) ? normalized + "**" : normalized;
+    }
+
+    /**
+     * Compiles a pattern in which <code>**</code> matches any number of directories, <code>*</code> any part of a
+     * name and <code>?</code> a single character of a name.
+     */
+    private static PathMatcher compile( String pattern )
+    {
+        String[] tokens = pattern.split( SEPARATOR, -1 );
+        StringBuilder regex = new StringBuilder();
+        for ( int i = 0; i < tokens.length; i++ )
+        {
+            boolean last = i == tokens.length - 1;
+            if ( tokens[i].equals( "**" ) )
+            {
+                if ( i == 0 )
+                {
+                    regex.append( last ? ".*" : "(?:.*" + SEPARATOR + ")?" );
+                }
+                else
+                {
+                    regex.append( "(?:" ).append( SEPARATOR ).append( ".*)?" );
+                }
+                continue;
+            }
+
+            if ( i > 0 && !( i == 1 && tokens[0].equals( "**" ) ) )
+            {
+                regex.append( SEPARATOR );
+            }
+            for ( char c : tokens[i].toCharArray() )
+            {
+                if ( c == '*' )
+                {
+                    regex.append( NOT_SEPARATOR ).append( '*' );
+                }
+                else if ( c == '?' )
+                {
+                    regex.append( NOT_SEPARATOR );
+                }
+                else
+                {
+                    regex.append( Pattern.quote( String.valueOf( c ) ) );
+                }
+            }
+        }
+        return FileSystems.getDefault().getPathMatcher( "regex:" + regex );
+    }
+
+    /**
+     * Returns true if the selected file should be part of the result. All selected files are included by default.
+     *
+     * @param file       the file
+     * @param attributes the attributes of the file, read while scanning
+     * @return true if the file should be included
+     * @throws IOException if the decision requires information which cannot be read
+     */
+    protected boolean isIncluded( File file, BasicFileAttributes attributes ) throws IOException
+    {
+        return true;
+    }
+
+    /**
+     * @param sourceDir the directory to scan
+     * @param targetDir ignored
+     * @return the selected files in the directory and its subdirectories
+     * @throws InclusionScanException if the files cannot be examined
+     */
+    public Set<File> getIncludedSources( File sourceDir, File targetDir ) throws InclusionScanException
+    {
+        Path root = sourceDir.toPath();
+        try
+        {
+            Set<Object> visited = Collections.newSetFromMap( new ConcurrentHashMap<Object, Boolean>() );
+            return new HashSet<>( getPool( parallelism ).invoke( new DirectoryScan( root, root, visited ) ) );
+        }
+        catch ( ScanFailure e )
+        {
+            throw new InclusionScanException( "Failed to scan " + sourceDir, e.getCause() );
+        }
+    }
+
+    /**
+     * Returns the pool shared by the scans with a given parallelism, creating it on first use.
+     *
+     * @param parallelism the number of threads of the pool
+     * @return the pool
+     */
+    static ForkJoinPool getPool( int parallelism )
+    {
+        synchronized ( POOLS )
+        {
+            ForkJoinPool pool = POOLS.get( parallelism );
+            if ( pool == null )
+            {
+                pool = new ForkJoinPool( parallelism );
+                POOLS.put( parallelism, pool );
+            }
+            return pool;
+        }
+    }
+
+    private static boolean matchesAny( List<PathMatcher> matchers, Path path )
+    {
+        for ( PathMatcher matcher : matchers )
+        {
+            if ( matcher.matches( path ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Carries an I/O failure out of a scan task.
+     */
+    private static class ScanFailure extends RuntimeException
+    {
+        ScanFailure( IOException cause )
+        {
+            super( cause );
+        }
+    }
+
+    /**
+     * Scans a single directory, and forks a scan of each of its subdirectories.
+     */
+    private class DirectoryScan extends RecursiveTask<List<File>>
+    {
+        private final Path root;
+
+        private final Path directory;
+
+        /**
+         * The identities of the directories already scanned, which stop cycles through symbolic links.
+         */
+        private final Set<Object> visited;
+
+        DirectoryScan( Path root, Path directory, Set<Object> visited )
+        {
+            this.root = root;
+            this.directory = directory;
+            this.visited = visited;
+        }
+
+        @Override
+        protected List<File> compute()
+        {
+            final List<File> selected = new ArrayList<>();
+            final List<DirectoryScan> subdirectories = new ArrayList<>();
+            try
+            {
+                Files.walkFileTree( directory, EnumSet.of( FileVisitOption.FOLLOW_LINKS ), 1,
+                                    new SimpleFileVisitor<Path>()
+                {
+                    @Override
+                    public FileVisitResult visitFile( Path file, BasicFileAttributes attributes ) throws IOException
+                    {
+                        Path relativePath = root.relativize( file );
+                        if ( attributes.isDirectory() )
+                        {
+                            Object key = attributes.fileKey();
+                            if ( !matchesAny( excludedDirectories, relativePath )
+                                    && ( key == null || visited.add( key ) ) )
+                            {
+                                DirectoryScan scan = new DirectoryScan( root, file, visited );
+                                scan.fork();
+                                subdirectories.add( scan );
+                            }
+                        }
+                        else if ( attributes.isRegularFile() && matchesAny( includes, relativePath )
+                                && !matchesAny( excludes, relativePath ) && isIncluded( file.toFile(), attributes ) )
+                        {
+                            selected.add( file.toFile() );
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed( Path file, IOException e )
+                    {
+                        return FileVisitResult.CONTINUE;
+                    }
+                } );
+            }
+            catch ( IOException e )
+            {
+                throw new ScanFailure( e );
+            }
+
+            for ( DirectoryScan scan : subdirectories )
+            {
+                selected.addAll( scan.join() );
+            }
+            return selected;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrites the operation dispatch of the skeletons generated by the idlj compilers, both POA and
+ * <code>ImplBase</code>. The generated
+ * <code>_invoke</code> looks the operation name up in a static map of boxed indexes - a synchronized
+ * <code>Hashtable</code> in the JDK compiler - before switching on the index. The map is replaced by a private
+ * method which switches on the hash code of the name and compares it with the operation names having that hash
+ * code, so that a request is dispatched without locking or allocation. The method returns -1 for an unknown
+ * operation, which reaches the generated <code>default</code> case and its <code>BAD_OPERATION</code>, as a missing
+ * map entry did. A null operation name is handled as the generated map handled it: the <code>HashMap</code> of the
+ * Glassfish compiler has no entry for it, which leads to a <code>BAD_OPERATION</code>, while the JDK compiler's
+ * <code>Hashtable</code> throws a <code>NullPointerException</code>. The generated code only switches on integers,
+ * so that it compiles at any source level.
+ */
+final class SkeletonDispatchRewriter
+        implements SourceRewriter
+{
+    private static final String POA_SKELETON_SUFFIX = "POA.java";
+
+    private static final String IMPL_BASE_SKELETON_SUFFIX = "ImplBase.java";
+
+    private static final String BAD_OPERATION =
+            "throw new org\\.omg\\.CORBA\\.BAD_OPERATION "
+                    + "\\(0, org\\.omg\\.CORBA\\.CompletionStatus\\.COMPLETED_MAYBE\\);";
+
+    private static final Pattern METHODS_TABLE = Pattern.compile(
+            "^([ \\t]*)private static java\\.util\\.(?:Hashtable|Map<String,Integer>) _methods = "
+                    + "new java\\.util\\.(?:Hashtable|HashMap<String,Integer>) \\(\\);(\\r?\\n)"
+                    + "[ \\t]*static\\r?\\n[ \\t]*\\{\\r?\\n"
+                    + "((?:[ \\t]*_methods\\.put \\(\"[^\"]*\", "
+                    + "(?:new java\\.lang\\.Integer \\()?\\d+\\)?\\);\\r?\\n)*)"
+                    + "[ \\t]*\\}\\r?\\n", Pattern.MULTILINE );
+
+    private static final Pattern METHOD_ENTRY =
+            Pattern.compile( "_methods\\.put \\(\"([^\"]*)\", (?:new java\\.lang\\.Integer \\()?(\\d+)\\)?\\);" );
+
+    private static final Pattern LOOKUP = Pattern.compile(
+            "^[ \\t]*java\\.lang\\.Integer __method = "
+                    + "(?:\\(java\\.lang\\.Integer\\) ?)?_methods\\.get ?\\(\\$method\\);"
+                    + "\\r?\\n[ \\t]*if \\(__method == null\\)\\r?\\n[ \\t]*" + BAD_OPERATION + "\\r?\\n(?:\\r?\\n)?"
+                    + "([ \\t]*)switch \\(__method\\.intValue \\(\\)\\)", Pattern.MULTILINE );
+
+    private static final Pattern DEFAULT_CASE =
+            Pattern.compile( "default:\\r?\\n[ \\t]*" + BAD_OPERATION );
+
+    public boolean appliesTo( String fileName )
+    {
+        return fileName.endsWith( POA_SKELETON_SUFFIX ) || fileName.endsWith( IMPL_BASE_SKELETON_SUFFIX );
+    }
+
+    public String getName()
+    {
+        return "SkeletonDispatchRewriter";
+    }
+
+    /**
+     * Rewrites the operation dispatch of a skeleton.
+     *
+     * @param source the source of the skeleton
+     * @return the rewritten source, or the same source if it does not hold the generated dispatch
+     */
+    public String rewrite( String source )
+    {
+        Matcher table = METHODS_TABLE.matcher( source );
+        Matcher lookup = LOOKUP.matcher( source );
+        if ( !table.find() || !lookup.find() || table.end() > lookup.start()
+                || !DEFAULT_CASE.matcher( source.substring( lookup.end() ) ).find() )
+        {
+            return source;
+        }
+
+        Map<String, String> operations = new LinkedHashMap<>();
+        Matcher entry = METHOD_ENTRY.matcher( table.group( 3 ) );
+        while ( entry.find() )
+        {
+            operations.put( entry.group( 1 ), entry.group( 2 ) );
+        }
+
+        boolean nullIsUnknown = !table.group().contains( "Hashtable" );
+        return source.substring( 0, table.start() )
+                + createIndexMethod( operations, nullIsUnknown, table.group( 1 ), table.group( 2 ) )
+                + source.substring( table.end(), lookup.start() )
+                + lookup.group( 1 ) + "switch (__method ($method))"
+                + source.substring( lookup.end() );
+    }
+
+    /**
+     * Creates the method which returns the index of an operation, grouping the operations by the hash code of their
+     * names.
+     *
+     * @param nullIsUnknown true if a null name is an unknown operation, false if it throws an exception
+     */
+    private static String createIndexMethod( Map<String, String> operations, boolean nullIsUnknown, String indent,
+                                             String newline )
+    {
+        Map<Integer, List<String>> byHash = new LinkedHashMap<>();
+        for ( String operation : operations.keySet() )
+        {
+            List<String> names = byHash.get( operation.hashCode() );
+            if ( names == null )
+            {
+                names = new ArrayList<>();
+                byHash.put( operation.hashCode(), names );
+            }
+            names.add( operation );
+        }
+
+        String body = indent + "  ";
+        StringBuilder method = new StringBuilder();
+        method.append( indent ).append( "private static int __method (String $method)" ).append( newline );
+        method.append( indent ).append( "{" ).append( newline );
+        if ( nullIsUnknown )
+        {
+            method.append( body ).append( "if ($method == null)" ).append( newline );
+            method.append( body ).append( "  return -1;" ).append( newline );
+        }
+        method.append( body ).append( "switch ($method.hashCode ())" ).append( newline );
+        method.append( body ).append( "{" ).append( newline );
+        for ( Map.Entry<Integer, List<String>> hash : byHash.entrySet() )
+        {
+            method.append( body ).append( "  case " ).append( hash.getKey() ).append( ":" ).append( newline );
+            for ( String name : hash.getValue() )
+            {
+                method.append( body ).append( "    if ($method.equals (\"" ).append( name ).append( "\"))" )
+                        .append( newline );
+                method.append( body ).append( "      return " ).append( operations.get( name ) ).append( ";" )
+                        .append( newline );
+            }
+            method.append( body ).append( "    break;" ).append( newline );
+        }
+        method.append( body ).append( "}" ).append( newline );
+        method.append( body ).append( "return -1;" ).append( newline );
+        method.append( indent ).append( "}" ).append( newline );
+        return method.toString();
+    }
+}
@@ -0,0 +1,50 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * A change applied to the sources generated by a compiler, before they are cached or published.
+ */
+interface SourceRewriter
+{
+    /**
+     * Returns true if files with the specified name may need to be rewritten.
+     *
+     * @param fileName the name of a generated file, without its directory
+     * @return true if the file should be passed to {@link #rewrite}
+     */
+    boolean appliesTo( String fileName );
+
+    /**
+     * Identifies the changes made by the rewriter. It is part of the compiler configuration, so that a change to
+     * the rewritten form compiles the IDL files again rather than reusing sources rewritten the old way.
+     *
+     * @return the name of the rewriter, with the version of its changes
+     */
+    String getName();
+
+    /**
+     * Rewrites the source of a generated file.
+     *
+     * @param source the source of the file
+     * @return the rewritten source, or the same source if nothing needs to change
+     */
+    String rewrite( String source );
+}
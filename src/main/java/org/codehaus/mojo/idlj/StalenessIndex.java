@@ -0,0 +1,544 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A record of every IDL file as of its last successful translation, used to decide which files must be translated
+ * again. For each file, identified by its canonical path, the index holds its size, modification time and a checksum
+ * of its contents. The checksum lets a file whose modification time changed without its contents changing - after a
+ * checkout or a restore from a cache - be recognized as unchanged; it is only computed when the size is unchanged
+ * but the modification time is not.
+ * <p>
+ * The index is kept in a single file, which is memory-mapped and updated in place: the state of a file already
+ * recorded is overwritten, and new files are appended. The file starts with a header holding a magic number, a
+ * format version and the length of the recorded data, followed by one record per file: the length of its path, the
+ * path in UTF-8, and the modification time, size and checksum as longs. If the index file cannot be used, an index
+ * held only in memory is used instead, so that every file is translated.
+ * <p>
+ * The records of files which no longer exist are marked as removed by a size of -1, and skipped when the index is
+ * read. Once removed records make up most of the recorded data, the records left are moved together.
+ */
+class StalenessIndex implements Closeable
+{
+    private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+    private static final int MAGIC = 0x49444c58;
+
+    private static final int VERSION = 1;
+
+    /**
+     * The position, in the header, of the length of the data recorded.
+     */
+    private static final int END_POSITION = 8;
+
+    private static final int HEADER_SIZE = 12;
+
+    /**
+     * The size of the modification time, size and checksum which end each record.
+     */
+    private static final int STATE_SIZE = 24;
+
+    /**
+     * The size recorded for a file which no longer exists.
+     */
+    private static final long REMOVED = -1;
+
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String FIELD_SEPARATOR = "\t";
+
+    /**
+     * The channel to the index file, or null if the index is held only in memory.
+     */
+    private final FileChannel channel;
+
+    private ByteBuffer buffer;
+
+    /**
+     * The position of the state of each recorded file, by canonical path.
+     */
+    private final Map<String, Integer> positions = new HashMap<>();
+
+    /**
+     * The number of bytes taken by the records of removed files.
+     */
+    private int removedBytes;
+
+    private StalenessIndex( FileChannel channel, ByteBuffer buffer )
+    {
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Opens the index recorded by earlier builds, or creates an empty one. An index file which is not valid is
+     * discarded, in which case every file is considered changed.
+     *
+     * @param file the index file
+     * @return the index, which must be closed to make sure that all changes are written
+     * @throws IOException if the index file cannot be opened
+     */
+    static StalenessIndex open( File file ) throws IOException
+    {
+        FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                StandardOpenOption.WRITE );
+        try
+        {
+            long size = channel.size();
+            if ( size > Integer.MAX_VALUE )
+            {
+                throw new IOException( "Staleness index too large: " + file );
+            }
+            StalenessIndex index = new StalenessIndex( channel, channel.map( FileChannel.MapMode.READ_WRITE, 0,
+                                                            Math.max( size, INITIAL_CAPACITY ) ) );
+            index.readRecords();
+            return index;
+        }
+        catch ( IOException | RuntimeException e )
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates an empty index held only in memory.
+     *
+     * @return the index
+     */
+    static StalenessIndex createInMemory()
+    {
+        StalenessIndex index = new StalenessIndex( null, ByteBuffer.allocate( INITIAL_CAPACITY ) );
+        index.clear();
+        return index;
+    }
+
+    private void readRecords()
+    {
+        try
+        {
+            if ( buffer.getInt( 0 ) != MAGIC || buffer.getInt( 4 ) != VERSION )
+            {
+                clear();
+                return;
+            }
+            int end = buffer.getInt( END_POSITION );
+            buffer.position( HEADER_SIZE );
+            while ( buffer.position() < end )
+            {
+                byte[] path = new byte[buffer.getShort() & 0xffff];
+                buffer.get( path );
+                if ( buffer.getLong( buffer.position() + 8 ) == REMOVED )
+                {
+                    removedBytes += getRecordSize( path.length );
+                }
+                else
+                {
+                    positions.put( new String( path, UTF_8 ), buffer.position() );
+                }
+                buffer.position( buffer.position() + STATE_SIZE );
+            }
+            if ( buffer.position() != end )
+            {
+                clear();
+            }
+        }
+        catch ( BufferUnderflowException | IllegalArgumentException e )
+        {
+            clear();
+        }
+    }
+
+    private static int getRecordSize( int pathLength )
+    {
+        return 2 + pathLength + STATE_SIZE;
+    }
+
+    private void clear()
+    {
+        positions.clear();
+        removedBytes = 0;
+        buffer.putInt( 0, MAGIC );
+        buffer.putInt( 4, VERSION );
+        buffer.putInt( END_POSITION, HEADER_SIZE );
+    }
+
+    /**
+     * Adds the contents of the files recorded by earlier versions of the plugin, which kept a copy of each translated
+     * IDL file in the timestamp directory and, optionally, the checksums of the IDL files in a text file. The copies
+     * and the text file are deleted once recorded.
+     *
+     * @param timestampDirectory the directory holding the copies
+     * @param sourceDirectory    the directory holding the IDL files
+     * @param digestsFile        the text file holding the checksums
+     * @return the number of files now recorded
+     * @throws IOException if the copies cannot be read
+     */
+    int migrate( File timestampDirectory, File sourceDirectory, File digestsFile ) throws IOException
+    {
+        migrateDigests( digestsFile );
+        if ( !timestampDirectory.getCanonicalFile().equals( sourceDirectory.getCanonicalFile() ) )
+        {
+            migrateCopies( timestampDirectory, sourceDirectory );
+        }
+        synchronized ( this )
+        {
+            return positions.size();
+        }
+    }
+
+    private void migrateDigests( File digestsFile ) throws IOException
+    {
+        if ( digestsFile.isFile() )
+        {
+            try ( BufferedReader reader =
+                          new BufferedReader( new InputStreamReader( new FileInputStream( digestsFile ), UTF_8 ) ) )
+            {
+                String line;
+                while ( ( line = reader.readLine() ) != null )
+                {
+                    String[] fields = line.split( FIELD_SEPARATOR );
+                    put( fields[0], Long.parseLong( fields[1] ), Long.parseLong( fields[2] ),
+                         Long.parseLong( fields[3] ) );
+                }
+            }
+            catch ( RuntimeException e )
+            {
+                // an unreadable record only causes a file to be translated again
+            }
+            digestsFile.delete();
+        }
+    }
+
+    private void migrateCopies( File copyDirectory, File sourceDirectory ) throws IOException
+    {
+        File[] copies = copyDirectory.listFiles();
+        if ( copies == null )
+        {
+            return;
+        }
+        for ( File copy : copies )
+        {
+            File source = new File( sourceDirectory, copy.getName() );
+            if ( copy.isDirectory() && source.isDirectory() )
+            {
+                migrateCopies( copy, source );
+                copy.delete();
+            }
+            else if ( copy.isFile() && source.isFile() )
+            {
+                put( source.getCanonicalPath(), copy.lastModified(), copy.length(), computeChecksum( copy ) );
+                copy.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns true if the file has been modified since it was recorded.
+     *
+     * @param file            the file to check
+     * @param toleranceMillis the difference in modification times below which a file is not considered modified
+     * @return true if the file is not known, or is newer than recorded
+     * @throws IOException if the path of the file cannot be determined
+     */
+    boolean isStale( File file, long toleranceMillis ) throws IOException
+    {
+        return isStale( file, file.lastModified(), toleranceMillis );
+    }
+
+    /**
+     * Returns true if the file has been modified since it was recorded.
+     *
+     * @param file            the file to check
+     * @param lastModified    the current modification time of the file
+     * @param toleranceMillis the difference in modification times below which a file is not considered modified
+     * @return true if the file is not known, or is newer than recorded
+     * @throws IOException if the path of the file cannot be determined
+     */
+    boolean isStale( File file, long lastModified, long toleranceMillis ) throws IOException
+    {
+        String path = file.getCanonicalPath();
+        synchronized ( this )
+        {
+            Integer position = positions.get( path );
+            return position == null || lastModified > buffer.getLong( position ) + toleranceMillis;
+        }
+    }
+
+    /**
+     * Returns true if the contents of the file are those recorded. If only the modification time differs, the new
+     * time is recorded, so that the contents need not be read again.
+     *
+     * @param file the file to check
+     * @return true if the file is known and its contents have not changed
+     * @throws IOException if the file cannot be read
+     */
+    synchronized boolean isUnchanged( File file ) throws IOException
+    {
+        String path = file.getCanonicalPath();
+        Integer position = positions.get( path );
+        if ( position == null || !file.isFile() || buffer.getLong( position + 8 ) != file.length() )
+        {
+            return false;
+        }
+        if ( buffer.getLong( position ) == file.lastModified() )
+        {
+            return true;
+        }
+
+        long checksum = computeChecksum( file );
+        if ( checksum != buffer.getLong( position + 16 ) )
+        {
+            return false;
+        }
+        buffer.putLong( position, file.lastModified() );
+        return true;
+    }
+
+    /**
+     * Records the current contents of the file.
+     *
+     * @param file the file to record
+     * @throws IOException if the file cannot be read
+     */
+    void record( File file ) throws IOException
+    {
+        record( snapshot( file ) );
+    }
+
+    /**
+     * Records the contents of a file as they were when the snapshot was taken.
+     *
+     * @param snapshot the state of the file to record
+     * @throws IOException if the index cannot be extended
+     */
+    void record( Snapshot snapshot ) throws IOException
+    {
+        put( snapshot.path, snapshot.lastModified, snapshot.length, snapshot.checksum );
+    }
+
+    /**
+     * Reads the current state of a file, to be recorded once it has been translated. Taking it before the translation
+     * makes sure that a change made while the file is translated is seen by the next build.
+     *
+     * @param file the file to read
+     * @return the state of the file
+     * @throws IOException if the file cannot be read
+     */
+    static Snapshot snapshot( File file ) throws IOException
+    {
+        long lastModified = file.lastModified();
+        long length = file.length();
+        long checksum = computeChecksum( file );
+        return new Snapshot( file, file.getCanonicalPath(), lastModified, length, checksum );
+    }
+
+    private synchronized void put( String path, long lastModified, long length, long checksum ) throws IOException
+    {
+        Integer position = positions.get( path );
+        if ( position == null )
+        {
+            byte[] pathBytes = path.getBytes( UTF_8 );
+            int end = buffer.getInt( END_POSITION );
+            ensureCapacity( end + 2 + pathBytes.length + STATE_SIZE );
+            buffer.position( end );
+            buffer.putShort( (short) pathBytes.length );
+            buffer.put( pathBytes );
+            position = buffer.position();
+            positions.put( path, position );
+            buffer.putInt( END_POSITION, position + STATE_SIZE );
+        }
+        buffer.putLong( position, lastModified );
+        buffer.putLong( position + 8, length );
+        buffer.putLong( position + 16, checksum );
+    }
+
+    /**
+     * Forgets the files which no longer exist, so that the index does not keep growing as files are renamed or
+     * deleted. The index is compacted once most of its records are those of removed files.
+     *
+     * @return the number of files forgotten
+     */
+    synchronized int retainExistingFiles()
+    {
+        int removed = 0;
+        for ( Iterator<Map.Entry<String, Integer>> iterator = positions.entrySet().iterator(); iterator.hasNext(); )
+        {
+            Map.Entry<String, Integer> entry = iterator.next();
+            if ( !new File( entry.getKey() ).isFile() )
+            {
+                buffer.putLong( entry.getValue() + 8, REMOVED );
+                removedBytes += getRecordSize( entry.getKey().getBytes( UTF_8 ).length );
+                iterator.remove();
+                removed++;
+            }
+        }
+        if ( removedBytes > 0 && 2 * removedBytes > getDataSize() )
+        {
+            compact();
+        }
+        return removed;
+    }
+
+    /**
+     * @return the number of bytes taken by the records
+     */
+    synchronized int getDataSize()
+    {
+        return buffer.getInt( END_POSITION ) - HEADER_SIZE;
+    }
+
+    /**
+     * Moves the records of the files still recorded to the start of the index, in their current order, overwriting
+     * those of the removed files.
+     */
+    private void compact()
+    {
+        List<Map.Entry<String, Integer>> records = new ArrayList<>( positions.entrySet() );
+        Collections.sort( records, new Comparator<Map.Entry<String, Integer>>()
+        {
+            public int compare( Map.Entry<String, Integer> first, Map.Entry<String, Integer> second )
+            {
+                return first.getValue().compareTo( second.getValue() );
+            }
+        } );
+
+        int end = HEADER_SIZE;
+        for ( Map.Entry<String, Integer> record : records )
+        {
+            int pathLength = record.getKey().getBytes( UTF_8 ).length;
+            int start = record.getValue() - 2 - pathLength;
+            byte[] bytes = new byte[getRecordSize( pathLength )];
+            buffer.position( start );
+            buffer.get( bytes );
+            buffer.position( end );
+            buffer.put( bytes );
+            positions.put( record.getKey(), end + 2 + pathLength );
+            end += bytes.length;
+        }
+        buffer.putInt( END_POSITION, end );
+        removedBytes = 0;
+    }
+
+    private void ensureCapacity( int capacity ) throws IOException
+    {
+        if ( capacity <= buffer.capacity() )
+        {
+            return;
+        }
+
+        int newCapacity = Math.max( capacity, buffer.capacity() * 2 );
+        if ( channel != null )
+        {
+            buffer = channel.map( FileChannel.MapMode.READ_WRITE, 0, newCapacity );
+        }
+        else
+        {
+            ByteBuffer larger = ByteBuffer.allocate( newCapacity );
+            buffer.clear();
+            larger.put( buffer );
+            buffer = larger;
+        }
+    }
+
+    /**
+     * Writes any changes to the index file and closes it.
+     *
+     * @throws IOException if the changes cannot be written
+     */
+    public synchronized void close() throws IOException
+    {
+        if ( channel != null )
+        {
+            ( (MappedByteBuffer) buffer ).force();
+            channel.close();
+        }
+    }
+
+    private static long computeChecksum( File file ) throws IOException
+    {
+        CRC32 crc = new CRC32();
+        byte[] bytes = new byte[BUFFER_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap( bytes );
+        try ( FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ) )
+        {
+            int count;
+            while ( ( count = channel.read( buffer ) ) >= 0 )
+            {
+                crc.update( bytes, 0, count );
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * The state of a file at some point in time.
+     */
+    static final class Snapshot
+    {
+        private final File file;
+
+        private final String path;
+
+        private final long lastModified;
+
+        private final long length;
+
+        private final long checksum;
+
+        Snapshot( File file, String path, long lastModified, long length, long checksum )
+        {
+            this.file = file;
+            this.path = path;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.checksum = checksum;
+        }
+
+        File getFile()
+        {
+            return file;
+        }
+    }
+}
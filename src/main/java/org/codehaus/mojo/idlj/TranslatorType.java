@@ -35,7 +35,7 @@ enum TranslatorType
         }
 
         @Override
-        CompilerTranslator createTranslator()
+        AbstractTranslator createTranslator()
         {
             return isJavaModuleSystemPresent() ?  new GlassfishTranslator() : new BuiltInTranslator();
         }
@@ -49,7 +49,7 @@ enum TranslatorType
         }
 
         @Override
-        CompilerTranslator createTranslator()
+        AbstractTranslator createTranslator()
         {
             return new BuiltInTranslator();
         }
@@ -63,7 +63,7 @@ enum TranslatorType
         }
 
         @Override
-        CompilerTranslator createTranslator()
+        AbstractTranslator createTranslator()
         {
             return new GlassfishTranslator();
         }
@@ -77,7 +77,7 @@ enum TranslatorType
         }
 
         @Override
-        CompilerTranslator createTranslator()
+        AbstractTranslator createTranslator()
         {
             return new OpenorbTranslator();
         }
@@ -91,7 +91,7 @@ enum TranslatorType
         }
 
         @Override
-        CompilerTranslator createTranslator()
+        AbstractTranslator createTranslator()
         {
             return new JacorbTranslator();
         }
@@ -102,7 +102,7 @@ enum TranslatorType
         return !System.getProperty( "java.version" ).startsWith( "1." );
     }
 
-    static CompilerTranslator selectTranslator( String compiler ) throws MojoExecutionException
+    static AbstractTranslator selectTranslator( String compiler ) throws MojoExecutionException
     {
         for ( TranslatorType type : TranslatorType.values() )
         {
@@ -117,5 +117,5 @@ enum TranslatorType
 
     abstract boolean select( String compilerSetting );
 
-    abstract CompilerTranslator createTranslator();
+    abstract AbstractTranslator createTranslator();
 }
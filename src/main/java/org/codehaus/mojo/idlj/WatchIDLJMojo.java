@@ -0,0 +1,225 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process CORBA IDL files in IDLJ, then keep watching the source and include directories and process the files
+ * again whenever they change, until the build is interrupted. Only the changed files and the files which include
+ * them are translated again.
+ *
+ * @version $Id$
+ * @goal watch
+ * @requiresDependencyCollection compile
+ */
+public class WatchIDLJMojo
+        extends IDLJMojo
+{
+    /**
+     * The time, in milliseconds, to wait after a file changes for further changes before processing the files again,
+     * so that a burst of changes - an editor saving several files, or a checkout - is processed at once.
+     *
+     * @parameter property="idlj.watchQuietMs" default-value="100"
+     */
+    private int watchQuietMs;
+
+    /**
+     * The directories being watched, by the key under which they are registered.
+     */
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+
+    public WatchIDLJMojo()
+    {
+    }
+
+    WatchIDLJMojo( DependenciesFacade dependenciesFacade )
+    {
+        super( dependenciesFacade );
+    }
+
+    /**
+     * Processes the IDL files, then watches them for changes.
+     *
+     * @throws MojoExecutionException if the first compilation fails, or the files cannot be watched
+     */
+    public void execute() throws MojoExecutionException
+    {
+        super.execute();
+
+        try ( WatchService watcher = FileSystems.getDefault().newWatchService() )
+        {
+            watch( watcher );
+            getLog().info( "Watching for changes to idl files - interrupt the build to stop" );
+
+            while ( true )
+            {
+                processChanges( watcher, watcher.take() );
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Unable to watch the idl files", e );
+        }
+    }
+
+    /**
+     * Starts watching the source directory and the include directories, with their subdirectories.
+     *
+     * @param watcher the service receiving the changes
+     * @throws IOException if a directory cannot be watched
+     */
+    void watch( WatchService watcher ) throws IOException
+    {
+        watchTree( watcher, getSourceDirectory() );
+        if ( getIncludeDirs() != null )
+        {
+            for ( File includeDir : getIncludeDirs() )
+            {
+                watchTree( watcher, includeDir );
+            }
+        }
+    }
+
+    /**
+     * Collects the changes signalled by a watched directory, and those following them until no change has been
+     * signalled for <code>watchQuietMs</code>, then processes the files again if any of the changes may concern an
+     * IDL file. A failure to process them is logged, so that watching can continue.
+     *
+     * @param watcher the service receiving the changes
+     * @param first   the key of the directory whose changes start the burst
+     * @return true if the files were processed again
+     * @throws IOException          if a directory created meanwhile cannot be watched
+     * @throws InterruptedException if the thread is interrupted while waiting for further changes
+     */
+    boolean processChanges( WatchService watcher, WatchKey first ) throws IOException, InterruptedException
+    {
+        boolean changed = collectChanges( watcher, first );
+        WatchKey key;
+        while ( ( key = watcher.poll( watchQuietMs, TimeUnit.MILLISECONDS ) ) != null )
+        {
+            changed |= collectChanges( watcher, key );
+        }
+        if ( changed )
+        {
+            regenerate();
+        }
+        return changed;
+    }
+
+    private void watchTree( final WatchService watcher, File directory ) throws IOException
+    {
+        if ( !directory.isDirectory() )
+        {
+            return;
+        }
+        Files.walkFileTree( directory.toPath(), new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult preVisitDirectory( Path dir, BasicFileAttributes attributes ) throws IOException
+            {
+                WatchKey key = dir.register( watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                                             StandardWatchEventKinds.ENTRY_DELETE,
+                                             StandardWatchEventKinds.ENTRY_MODIFY );
+                watchedDirectories.put( key, dir );
+                return FileVisitResult.CONTINUE;
+            }
+        } );
+    }
+
+    /**
+     * Reads the events of a watched directory, and starts watching any directories created in it.
+     *
+     * @return true if any of the events may concern an IDL file
+     */
+    boolean collectChanges( WatchService watcher, WatchKey key ) throws IOException
+    {
+        Path directory = watchedDirectories.get( key );
+        boolean changed = false;
+        for ( WatchEvent<?> event : key.pollEvents() )
+        {
+            if ( event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null )
+            {
+                changed = true;
+                continue;
+            }
+
+            Path path = directory.resolve( (Path) event.context() );
+            if ( event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory( path ) )
+            {
+                watchTree( watcher, path.toFile() );
+            }
+            if ( !isEditorFile( path ) )
+            {
+                getLog().debug( "Changed: " + path );
+                changed = true;
+            }
+        }
+        if ( !key.reset() )
+        {
+            watchedDirectories.remove( key );
+        }
+        return changed;
+    }
+
+    /**
+     * Returns true for the hidden and backup files which editors write alongside the files being edited.
+     */
+    private boolean isEditorFile( Path path )
+    {
+        String name = path.getFileName().toString();
+        return name.startsWith( "." ) || name.endsWith( "~" );
+    }
+
+    private void regenerate()
+    {
+        long start = System.nanoTime();
+        try
+        {
+            super.execute();
+            getLog().info( "Processed changes in " + TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start )
+                                   + " ms" );
+        }
+        catch ( MojoExecutionException e )
+        {
+            getLog().error( e.getMessage() );
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.omg.CORBA;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * An ORB which creates type codes describing their construction. It yields the processor whenever it creates a
+ * type code, so that threads which build the same type code concurrently interleave.
+ */
+public class ORB {
+    private static final ORB INSTANCE = new ORB();
+
+    public static ORB init() {
+        return INSTANCE;
+    }
+
+    public static ORB init(String[] args, java.util.Properties properties) {
+        return INSTANCE;
+    }
+
+    public Object string_to_object(String reference) {
+        throw new UnsupportedOperationException();
+    }
+
+    public String object_to_string(Object object) {
+        throw new UnsupportedOperationException();
+    }
+
+    public TypeCode get_primitive_tc(TCKind kind) {
+        return create(kind.toString());
+    }
+
+    public TypeCode create_sequence_tc(int bound, TypeCode elementType) {
+        return create("sequence<" + elementType + ", " + bound + ">");
+    }
+
+    public TypeCode create_alias_tc(String id, String name, TypeCode originalType) {
+        return create("alias " + name + " " + id + " of " + originalType);
+    }
+
+    public TypeCode create_recursive_tc(String id) {
+        return create("recursive " + id);
+    }
+
+    public TypeCode create_interface_tc(String id, String name) {
+        return create("interface " + name + " " + id);
+    }
+
+    public TypeCode create_struct_tc(String id, String name, StructMember[] members) {
+        StringBuilder description = new StringBuilder("struct ").append(name).append(' ').append(id).append(" {");
+        for (StructMember member : members)
+            description.append(' ').append(member.type).append(' ').append(member.name).append(';');
+        return create(description.append(" }").toString());
+    }
+
+    private static TypeCode create(String description) {
+        Thread.yield();
+        return new TypeCode(description);
+    }
+}
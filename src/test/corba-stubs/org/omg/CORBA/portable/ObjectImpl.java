@@ -0,0 +1,52 @@
+package org.omg.CORBA.portable;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * The base of generated stubs. No requests can be sent through it.
+ */
+public abstract class ObjectImpl implements org.omg.CORBA.Object {
+    private Delegate delegate;
+
+    public abstract String[] _ids();
+
+    public Delegate _get_delegate() {
+        return delegate;
+    }
+
+    public void _set_delegate(Delegate delegate) {
+        this.delegate = delegate;
+    }
+
+    public boolean _is_a(String repositoryId) {
+        return java.util.Arrays.asList(_ids()).contains(repositoryId);
+    }
+
+    public OutputStream _request(String operation, boolean responseExpected) {
+        throw new UnsupportedOperationException();
+    }
+
+    public InputStream _invoke(OutputStream output) throws ApplicationException, RemarshalException {
+        throw new UnsupportedOperationException();
+    }
+
+    public void _releaseReply(InputStream input) {
+    }
+}
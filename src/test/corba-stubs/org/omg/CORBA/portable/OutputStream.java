@@ -0,0 +1,33 @@
+package org.omg.CORBA.portable;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * The operations of an output stream used by generated helpers.
+ */
+public abstract class OutputStream extends java.io.OutputStream {
+    public abstract InputStream create_input_stream();
+
+    public abstract void write_long(int value);
+
+    public abstract void write_long_array(int[] value, int offset, int length);
+
+    public abstract void write_Object(org.omg.CORBA.Object value);
+}
@@ -0,0 +1,35 @@
+package org.omg.PortableServer;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * The base of generated skeletons. It is never activated.
+ */
+public abstract class Servant {
+    public abstract String[] _all_interfaces(POA poa, byte[] objectId);
+
+    public final org.omg.CORBA.Object _this_object() {
+        throw new UnsupportedOperationException();
+    }
+
+    public final org.omg.CORBA.Object _this_object(org.omg.CORBA.ORB orb) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,119 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.emptyArray;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.startsWith;
+
+/**
+ * Tests for the log which holds on to messages until they are replayed.
+ */
+public class BufferedLogTestCase extends TempDirectoryTestBase {
+
+    private RecordingLog target = new RecordingLog();
+    private File spillDir;
+
+    @Before
+    public void setUp() throws Exception {
+        spillDir = createTempDirectory("buffered");
+    }
+
+    @Test
+    public void whenMessagesRecorded_holdThemUntilReplayed() throws Exception {
+        BufferedLog log = new BufferedLog(target, spillDir, 1000);
+        log.info("one");
+        log.error("two");
+
+        assertThat(target.messages, empty());
+        log.replay();
+        assertThat(target.messages, contains("info:one", "error:two"));
+    }
+
+    @Test
+    public void whenMessagesExceedLimit_writeRestToFileAndReplayInOrder() throws Exception {
+        BufferedLog log = new BufferedLog(target, spillDir, 10);
+        log.info("first message");
+        log.warn("second message");
+        log.error("third message", new IllegalStateException("broken"));
+
+        assertThat(spillDir.listFiles().length, equalTo(1));
+        log.replay();
+        assertThat(target.messages.subList(0, 2), contains("info:first message", "warn:second message"));
+        assertThat(target.messages.get(2), startsWith("error:third message" + System.lineSeparator()
+                + "java.lang.IllegalStateException: broken"));
+        assertThat(spillDir.listFiles(), emptyArray());
+    }
+
+    @Test
+    public void whenPassingThrough_replayHeldMessagesThenLogDirectly() throws Exception {
+        BufferedLog log = new BufferedLog(target, spillDir, 1000);
+        log.info("held");
+        log.passThrough();
+        assertThat(target.messages, contains("info:held"));
+
+        log.info("direct");
+        assertThat(target.messages, contains("info:held", "info:direct"));
+    }
+
+    @Test
+    public void whenDiscarded_forgetMessagesAndDeleteFile() throws Exception {
+        BufferedLog log = new BufferedLog(target, spillDir, 0);
+        log.info("dropped");
+        log.discard();
+        log.replay();
+
+        assertThat(target.messages, empty());
+        assertThat(spillDir.listFiles(), emptyArray());
+    }
+
+    /**
+     * A log which keeps its messages, prefixed by their level.
+     */
+    private static class RecordingLog extends SystemStreamLog {
+        private List<String> messages = new ArrayList<>();
+
+        @Override
+        public void info(CharSequence content) {
+            messages.add("info:" + content);
+        }
+
+        @Override
+        public void warn(CharSequence content) {
+            messages.add("warn:" + content);
+        }
+
+        @Override
+        public void error(CharSequence content) {
+            messages.add("error:" + content);
+        }
+    }
+}
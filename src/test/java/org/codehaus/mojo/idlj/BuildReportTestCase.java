@@ -0,0 +1,76 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * Tests for the report of the time spent by a build.
+ */
+public class BuildReportTestCase extends TempDirectoryTestBase {
+
+    private File reportFile;
+
+    @Before
+    public void setUp() throws Exception {
+        reportFile = new File(createTempDirectory("report"), "idlj-report.json");
+    }
+
+    @Test
+    public void whenPhasesTimed_reportEachPhase() throws Exception {
+        BuildReport report = new BuildReport();
+        report.addPhaseTime(BuildReport.SCAN, System.nanoTime());
+        report.addPhaseTime(BuildReport.COMPILE, System.nanoTime());
+        report.write(reportFile);
+
+        String json = FileUtils.fileRead(reportFile);
+        assertThat(json, containsString("\"scan\": "));
+        assertThat(json, containsString("\"compile\": "));
+    }
+
+    @Test
+    public void whenFilesTranslated_listSlowestFirst() throws Exception {
+        BuildReport report = new BuildReport();
+        report.addFile("fast.idl", System.nanoTime(), 1, 3);
+        report.addFile("slow.idl", System.nanoTime() - 5000000000L, 1, 7);
+        report.write(reportFile);
+
+        String json = FileUtils.fileRead(reportFile);
+        assertThat(json, containsString("{ \"file\": \"slow.idl\", \"millis\": 5000, \"batchSize\": 1, \"generatedFiles\": 7 }"));
+        assertThat(json.indexOf("slow.idl"), lessThan(json.indexOf("fast.idl")));
+    }
+
+    @Test
+    public void whenPathHasSpecialCharacters_escapeThem() throws Exception {
+        BuildReport report = new BuildReport();
+        report.addFile("dir\\\"quoted\".idl", System.nanoTime(), 1, 0);
+        report.write(reportFile);
+
+        assertThat(FileUtils.fileRead(reportFile), containsString("\"dir\\\\\\\"quoted\\\".idl\""));
+    }
+}
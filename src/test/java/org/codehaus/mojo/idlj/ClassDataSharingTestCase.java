@@ -0,0 +1,141 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * Tests for the class data sharing archives of forked compilers.
+ */
+public class ClassDataSharingTestCase extends TempDirectoryTestBase {
+
+    private File archiveDir;
+    private File jar;
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue(ClassDataSharing.isSupported());
+        File root = createTempDirectory("cds");
+        archiveDir = new File(root, "archives");
+        jar = new File(root, "compiler.jar");
+        FileUtils.fileWrite(jar, "UTF-8", "compiler");
+    }
+
+    @Test
+    public void whenClassPathUnchanged_useSameArchive() {
+        assertThat(ClassDataSharing.forClassPath(archiveDir, jar.getPath()),
+                   sameInstance(ClassDataSharing.forClassPath(archiveDir, jar.getPath())));
+    }
+
+    @Test
+    public void whenClassPathEntryChanged_useNewArchive() throws Exception {
+        File before = ClassDataSharing.forClassPath(archiveDir, jar.getPath()).getArchive();
+        FileUtils.fileWrite(jar, "UTF-8", "a new compiler version");
+
+        assertThat(ClassDataSharing.forClassPath(archiveDir, jar.getPath()).getArchive(), not(equalTo(before)));
+    }
+
+    @Test
+    public void whenClassPathHoldsDirectory_useNoArchive() {
+        String classPath = jar.getPath() + File.pathSeparator + jar.getParent();
+
+        assertThat(ClassDataSharing.forClassPath(archiveDir, classPath), nullValue());
+    }
+
+    @Test
+    public void whenArchiveMissing_recordItInOneJvmOnly() {
+        ClassDataSharing classDataSharing = ClassDataSharing.forClassPath(archiveDir, jar.getPath());
+
+        assertThat(ClassDataSharing.isRecording(classDataSharing.startJvm()), equalTo(true));
+        assertThat(classDataSharing.startJvm(), empty());
+    }
+
+    @Test
+    public void whenRecordingComplete_useArchive() throws Exception {
+        ClassDataSharing classDataSharing = ClassDataSharing.forClassPath(archiveDir, jar.getPath());
+        List<String> options = classDataSharing.startJvm();
+        FileUtils.fileWrite(options.get(0).substring(options.get(0).indexOf('=') + 1), "UTF-8", "archive");
+        classDataSharing.recordingComplete();
+
+        assertThat(classDataSharing.startJvm().get(0),
+                   equalTo("-XX:SharedArchiveFile=" + classDataSharing.getArchive().getPath()));
+    }
+
+    @Test
+    public void whenRecordingJvmWritesNoArchive_recordAgain() {
+        ClassDataSharing classDataSharing = ClassDataSharing.forClassPath(archiveDir, jar.getPath());
+        classDataSharing.startJvm();
+        classDataSharing.recordingComplete();
+
+        assertThat(ClassDataSharing.isRecording(classDataSharing.startJvm()), equalTo(true));
+    }
+
+    @Test
+    public void whenWorkerRetired_laterWorkersUseRecordedArchive() throws Exception {
+        File java = new File(new File(System.getProperty("java.home"), "bin"), "java");
+        String classPath = createJar(new File(jar.getParentFile(), "classes.jar"),
+                                     new File("target/classes"), new File("target/test-classes"));
+        List<String> command = Arrays.asList(java.getPath(), "-Dtest.id=" + System.nanoTime(), "-classpath", classPath);
+        ClassDataSharing classDataSharing = ClassDataSharing.forClassPath(archiveDir, classPath);
+        ForkedCompilerPool pool = ForkedCompilerPool.getPool(command, classDataSharing);
+        List<String> args = Collections.singletonList("hello");
+        String compiler = ForkedCompilerPoolTestCase.CountingCompiler.class.getName();
+
+        pool.compile(compiler, "compile", args, 1, Long.MAX_VALUE);
+        pool.compile(compiler, "compile", args, 1, Long.MAX_VALUE);
+        ForkedCompilerPool.Result result = pool.compile(compiler, "compile", args, 1, Long.MAX_VALUE);
+
+        assertThat(classDataSharing.getArchive().isFile(), equalTo(true));
+        assertThat(new String(result.getOut()), containsString("invocation 1: hello"));
+    }
+
+    private String createJar(File jarFile, File... classDirs) throws Exception {
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jarFile))) {
+            for (File classDir : classDirs)
+                for (Object file : FileUtils.getFiles(classDir, "**/*.class", null)) {
+                    String name = ((File) file).getPath().substring(classDir.getPath().length() + 1);
+                    out.putNextEntry(new JarEntry(name.replace(File.separatorChar, '/')));
+                    out.write(Files.readAllBytes(((File) file).toPath()));
+                    out.closeEntry();
+                }
+        }
+        return jarFile.getPath();
+    }
+}
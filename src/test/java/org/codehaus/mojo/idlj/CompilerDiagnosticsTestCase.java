@@ -0,0 +1,188 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
+
+/**
+ * Tests for the streaming parser of compiler output.
+ */
+public class CompilerDiagnosticsTestCase extends TempDirectoryTestBase {
+
+    private RecordingLog log = new RecordingLog();
+    private PrintStream savedOut;
+
+    @Before
+    public void setUp() {
+        savedOut = System.out;
+    }
+
+    @After
+    public void tearDown() {
+        System.setOut(savedOut);
+    }
+
+    @Test
+    public void whenLineHasPositionAndNoWarning_reportError() throws Exception {
+        CompilerDiagnostics diagnostics = parse("", "a.idl (line 3): Undeclared type.\n");
+
+        assertThat(diagnostics.hasErrors(), equalTo(true));
+        assertThat(diagnostics.getErrorCount(), equalTo(1));
+    }
+
+    @Test
+    public void whenLineIsWarning_reportNoError() throws Exception {
+        CompilerDiagnostics diagnostics = parse("", "a.idl (line 3): WARNING: Identifier collides.\n");
+
+        assertThat(diagnostics.hasErrors(), equalTo(false));
+        assertThat(diagnostics.getWarningCount(), equalTo(1));
+    }
+
+    @Test
+    public void whenPositionOnStandardOutput_reportNoError() throws Exception {
+        CompilerDiagnostics diagnostics = parse("a.idl (line 3): Undeclared type.\n", "");
+
+        assertThat(diagnostics.hasErrors(), equalTo(false));
+    }
+
+    @Test
+    public void whenLineWrittenInPieces_classifyWholeLine() throws Exception {
+        CompilerDiagnostics diagnostics = new CompilerDiagnostics(log);
+        diagnostics.getErr().write("a.idl (li".getBytes());
+        diagnostics.getErr().write("ne 3): Undeclared".getBytes());
+        diagnostics.close();
+
+        assertThat(diagnostics.hasErrors(), equalTo(true));
+        assertThat(log.errors, contains("a.idl (line 3): Undeclared"));
+    }
+
+    @Test
+    public void logStreamsAtTheirLevels() throws Exception {
+        parse("generating\r\ndone\n", "failed\n");
+
+        assertThat(log.infos, contains("generating\ndone"));
+        assertThat(log.errors, contains("failed"));
+    }
+
+    @Test
+    public void whenOutputIsLarge_logItInBoundedChunks() throws Exception {
+        CompilerDiagnostics diagnostics = new CompilerDiagnostics(log);
+        for (int i = 0; i < 10000; i++)
+            diagnostics.getOut().write(("line " + i + "\n").getBytes());
+
+        assertThat(log.infos.size(), greaterThan(1));
+        diagnostics.close();
+        for (String chunk : log.infos)
+            assertThat(chunk.length(), lessThanOrEqualTo(CompilerDiagnostics.CHUNK_SIZE + 20));
+        assertThat(log.infos.get(log.infos.size() - 1), containsString("line 9999"));
+    }
+
+    @Test
+    public void whenOutputExceedsLimit_writeRestToFile() throws Exception {
+        File spillDir = createTempDirectory("spill");
+        CompilerDiagnostics diagnostics = new CompilerDiagnostics(log, spillDir, CompilerDiagnostics.CHUNK_SIZE);
+        for (int i = 0; i < 10000; i++)
+            diagnostics.getErr().write(("a.idl (line " + i + "): WARNING: collides\n").getBytes());
+        diagnostics.close();
+
+        assertThat(log.errors.size(), equalTo(0));
+        assertThat(log.warnings.get(0), containsString(diagnostics.getSpillFile().getPath()));
+        assertThat(FileUtils.fileRead(diagnostics.getSpillFile()), containsString("a.idl (line 9999)"));
+        assertThat(diagnostics.getWarningCount(), equalTo(10000));
+    }
+
+    @Test
+    public void whenAllOutputLogged_createNoFile() throws Exception {
+        CompilerDiagnostics diagnostics = parse("done\n", "");
+
+        assertThat(diagnostics.getSpillFile(), nullValue());
+    }
+
+    @Test
+    public void whenLogPrintsToCapturedStream_printToOriginalStream() throws Exception {
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(console, true));
+        CompilerDiagnostics diagnostics = new CompilerDiagnostics(new SystemStreamLog());
+
+        OutputCapture capture = OutputCapture.start(diagnostics.getOut(), diagnostics.getErr());
+        for (int i = 0; i < 1000; i++)
+            System.out.println("generated file " + i);
+        capture.stop();
+        diagnostics.close();
+
+        assertThat(console.toString(), startsWith("[info] generated file 0"));
+        assertThat(console.toString(), containsString("generated file 999"));
+    }
+
+    private CompilerDiagnostics parse(String out, String err) throws Exception {
+        CompilerDiagnostics diagnostics = new CompilerDiagnostics(log);
+        diagnostics.getOut().write(out.getBytes());
+        diagnostics.getErr().write(err.getBytes());
+        diagnostics.close();
+        return diagnostics;
+    }
+
+    /**
+     * A log which keeps its messages.
+     */
+    private static class RecordingLog extends SystemStreamLog {
+        private List<String> infos = new ArrayList<>();
+        private List<String> warnings = new ArrayList<>();
+        private List<String> errors = new ArrayList<>();
+
+        @Override
+        public void info(CharSequence content) {
+            infos.add(content.toString());
+        }
+
+        @Override
+        public void warn(CharSequence content) {
+            warnings.add(content.toString());
+        }
+
+        @Override
+        public void error(CharSequence content) {
+            errors.add(content.toString());
+        }
+
+        @Override
+        public void debug(CharSequence content) {
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.sun.tools.corba.ee.idl.toJavaPortable.Compile;
+import com.sun.tools.corba.ee.idl.toJavaPortable.Util;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * Tests for the registry of compilers shared by all executions.
+ */
+public class CompilerRegistryTestCase extends TempDirectoryTestBase {
+
+    private AbstractTranslator.ClassLoaderFacade savedFacade;
+    private CountingClassLoaderFacade facade = new CountingClassLoaderFacade();
+
+    @Before
+    public void setUp() {
+        savedFacade = AbstractTranslator.getClassLoaderFacade();
+        AbstractTranslator.setClassLoaderFacade(facade);
+    }
+
+    @After
+    public void tearDown() {
+        AbstractTranslator.setClassLoaderFacade(savedFacade);
+    }
+
+    @Test
+    public void whenClassRequestedAgain_doNotLoadItAgain() throws Exception {
+        Class<?> first = CompilerRegistry.loadClass(RecordingCompiler.class.getName());
+        Class<?> second = CompilerRegistry.loadClass(RecordingCompiler.class.getName());
+
+        assertThat(second, sameInstance((Object) first));
+        assertThat(facade.loadCount, equalTo(1));
+    }
+
+    @Test
+    public void whenFacadeReplaced_loadClassAgain() throws Exception {
+        CompilerRegistry.loadClass(RecordingCompiler.class.getName());
+        AbstractTranslator.setClassLoaderFacade(facade);
+        CompilerRegistry.loadClass(RecordingCompiler.class.getName());
+
+        assertThat(facade.loadCount, equalTo(2));
+    }
+
+    @Test
+    public void whenCompilerUrlsPrepended_loadClassAgain() throws Exception {
+        CompilerRegistry.loadClass(RecordingCompiler.class.getName());
+        AbstractTranslator.prependCompilerUrls(new URL("file:/compiler.jar"));
+        CompilerRegistry.loadClass(RecordingCompiler.class.getName());
+
+        assertThat(facade.loadCount, equalTo(2));
+    }
+
+    @Test
+    public void whenCompilerRun_passArgumentsAndReturnResult() throws Exception {
+        Object result = CompilerRegistry.run(RecordingCompiler.class, "compile", "-d", "out", "a.idl");
+
+        assertThat(result, equalTo((Object) Boolean.TRUE));
+        assertThat(RecordingCompiler.lastArguments, equalTo(new String[]{"-d", "out", "a.idl"}));
+    }
+
+    @Test
+    public void whenEntryPointReturnsNothing_returnNull() throws Exception {
+        assertThat(CompilerRegistry.run(RecordingCompiler.class, "main", "a.idl"), nullValue());
+    }
+
+    @Test
+    public void whenCompilerThrows_reportTargetException() throws Exception {
+        try {
+            CompilerRegistry.run(RecordingCompiler.class, "fail", "a.idl");
+        } catch (InvocationTargetException e) {
+            assertThat(e.getTargetException(), instanceOf(IllegalStateException.class));
+            return;
+        }
+        throw new AssertionError("Exception not reported");
+    }
+
+    @Test(expected = NoSuchMethodException.class)
+    public void whenNoEntryPoint_throwException() throws Exception {
+        CompilerRegistry.run(RecordingCompiler.class, "missing", "a.idl");
+    }
+
+    @Test
+    public void afterGlassfishCompilation_releaseCompilerState() throws Exception {
+        File root = createTempDirectory("registry");
+        File idlFile = new File(root, "a.idl");
+        FileUtils.fileWrite(idlFile, "UTF-8", "module M { interface I { void f(); }; };");
+
+        CompilerRegistry.run(Compile.class, "main", "-td", new File(root, "out").getPath(), idlFile.getPath());
+
+        assertThat(Compile.compiler, nullValue());
+        assertThat(getStaticField(Util.class, "symbolTable"), nullValue());
+        assertThat(getStaticField(Util.class, "packageTranslation"), nullValue());
+        assertThat(new File(root, "out/M/I.java").isFile(), equalTo(true));
+    }
+
+    @Test
+    public void afterGlassfishCompilationStateReleased_compileAgain() throws Exception {
+        File root = createTempDirectory("registry");
+        File idlFile = new File(root, "a.idl");
+        FileUtils.fileWrite(idlFile, "UTF-8", "module M { interface I { void f(); }; };");
+
+        CompilerRegistry.run(Compile.class, "main", "-td", new File(root, "out1").getPath(), idlFile.getPath());
+        CompilerRegistry.run(Compile.class, "main", "-td", new File(root, "out2").getPath(), idlFile.getPath());
+
+        assertThat(new File(root, "out2/M/I.java").isFile(), equalTo(true));
+    }
+
+    private static Object getStaticField(Class<?> declaringClass, String name) throws Exception {
+        Field field = declaringClass.getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(null);
+    }
+
+    public static class RecordingCompiler {
+        static String[] lastArguments;
+
+        public static boolean compile(String... args) {
+            lastArguments = args;
+            return true;
+        }
+
+        public static void main(String... args) {
+            lastArguments = args;
+        }
+
+        public static void fail(String... args) {
+            throw new IllegalStateException("compiler failure");
+        }
+    }
+
+    private static class CountingClassLoaderFacade implements AbstractTranslator.ClassLoaderFacade {
+        private int loadCount;
+
+        public void prependUrls(URL... urls) {
+        }
+
+        public Class<?> loadClass(String className) throws ClassNotFoundException {
+            loadCount++;
+            return Class.forName(className);
+        }
+    }
+}
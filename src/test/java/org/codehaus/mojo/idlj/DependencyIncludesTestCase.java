@@ -0,0 +1,133 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+
+/**
+ * Tests for the extraction of IDL files included from dependency jars.
+ */
+public class DependencyIncludesTestCase extends TempDirectoryTestBase {
+
+    private File root;
+    private File sourceDir;
+    private File cacheDir;
+    private File jar;
+
+    @Before
+    public void setUp() throws Exception {
+        root = createTempDirectory("includes");
+        sourceDir = new File(root, "idl");
+        cacheDir = new File(root, "cache");
+        jar = new File(root, "shared-idl.jar");
+
+        FileUtils.forceMkdir(sourceDir);
+        FileUtils.fileWrite(new File(sourceDir, "main.idl"), "UTF-8", "#include \"shared/a.idl\"\nmodule m {};\n");
+        writeJar(jar, "shared/a.idl", "#include \"b.idl\"\n",
+                "shared/b.idl", "#include <common.idl>\n",
+                "common.idl", "module common {};\n",
+                "shared/unused.idl", "module unused {};\n");
+    }
+
+    private static void writeJar(File jar, String... namesAndContents) throws Exception {
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            for (int i = 0; i < namesAndContents.length; i += 2) {
+                out.putNextEntry(new ZipEntry(namesAndContents[i]));
+                out.write(namesAndContents[i + 1].getBytes("UTF-8"));
+                out.closeEntry();
+            }
+        }
+    }
+
+    private List<File> extract(File[] includeDirs) throws Exception {
+        return new DependencyIncludes(cacheDir).extract(sourceDir, includeDirs, Collections.singletonList(jar));
+    }
+
+    private static List<String> listFiles(File directory) throws Exception {
+        return FileUtils.getFileNames(directory, "**", null, false);
+    }
+
+    @Test
+    public void extractOnlyFilesIncludedDirectlyOrIndirectly() throws Exception {
+        List<File> directories = extract(null);
+
+        assertThat(directories, hasSize(1));
+        assertThat(listFiles(directories.get(0)), containsInAnyOrder(
+                "shared" + File.separator + "a.idl", "shared" + File.separator + "b.idl", "common.idl"));
+        assertThat(FileUtils.fileRead(new File(directories.get(0), "common.idl")), equalTo("module common {};\n"));
+    }
+
+    @Test
+    public void whenJarUnchanged_reuseExtractedFiles() throws Exception {
+        File first = extract(null).get(0);
+        DependencyIncludes second = new DependencyIncludes(cacheDir);
+
+        assertThat(second.extract(sourceDir, null, Collections.singletonList(jar)).get(0), equalTo(first));
+        assertThat(second.getExtractedCount(), equalTo(0));
+    }
+
+    @Test
+    public void whenJarChanged_extractToNewDirectory() throws Exception {
+        File first = extract(null).get(0);
+        writeJar(jar, "shared/a.idl", "module changed {};\n");
+
+        File second = extract(null).get(0);
+
+        assertThat(second, not(equalTo(first)));
+        assertThat(listFiles(second), containsInAnyOrder("shared" + File.separator + "a.idl"));
+    }
+
+    @Test
+    public void whenIncludeFoundInIncludeDirectory_doNotExtractIt() throws Exception {
+        File includeDir = new File(root, "include");
+        FileUtils.forceMkdir(new File(includeDir, "shared"));
+        FileUtils.fileWrite(new File(includeDir, "shared/a.idl"), "UTF-8", "module local {};\n");
+
+        DependencyIncludes includes = new DependencyIncludes(cacheDir);
+        includes.extract(sourceDir, new File[] {includeDir}, Collections.singletonList(jar));
+
+        assertThat(includes.getExtractedCount(), equalTo(0));
+    }
+
+    @Test
+    public void whenIncludeNotFound_ignoreIt() throws Exception {
+        FileUtils.fileWrite(new File(sourceDir, "main.idl"), "UTF-8", "#include \"missing.idl\"\n");
+
+        DependencyIncludes includes = new DependencyIncludes(cacheDir);
+        includes.extract(sourceDir, null, Collections.singletonList(jar));
+
+        assertThat(includes.getExtractedCount(), equalTo(0));
+    }
+}
@@ -0,0 +1,62 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+
+/**
+ * Tests for the flight recorder events.
+ */
+public class FlightRecorderEventsTestCase extends TempDirectoryTestBase {
+
+    @Test
+    public void whenNotRecording_ignoreEvents() throws Exception {
+        FlightRecorderEvents.SCAN.begin().commit("src/main/idl", 3);
+    }
+
+    @Test
+    public void whenRecording_recordEventFields() throws Exception {
+        File dump = new File(createTempDirectory("jfr"), "events.jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable("org.codehaus.mojo.idlj.Translation");
+            recording.start();
+            FlightRecorderEvents.TRANSLATION.begin().commit("JacorbTranslator", "a/b.idl", 42L, 0, true);
+            recording.stop();
+            recording.dump(dump.toPath());
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump.toPath());
+        assertThat(events, hasSize(1));
+        assertThat(events.get(0).getString("file"), equalTo("a/b.idl"));
+        assertThat(events.get(0).getLong("bytes"), equalTo(42L));
+        assertThat(events.get(0).getBoolean("fromCache"), equalTo(true));
+    }
+}
@@ -0,0 +1,115 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Tests for the pool of forked compiler worker processes.
+ */
+public class ForkedCompilerPoolTestCase {
+
+    private static final String COMPILER = CountingCompiler.class.getName();
+
+    private ForkedCompilerPool pool;
+
+    @Before
+    public void setUp() {
+        File java = new File(new File(System.getProperty("java.home"), "bin"), "java");
+        // a distinct command line per test, so that each test starts with an empty pool
+        List<String> command = Arrays.asList(java.getPath(), "-Dtest.id=" + System.nanoTime(),
+                                             "-classpath", System.getProperty("java.class.path"));
+        pool = ForkedCompilerPool.getPool(command);
+    }
+
+    @Test
+    public void whenCompilerSucceeds_returnItsOutput() throws Exception {
+        ForkedCompilerPool.Result result = compile(100, "hello");
+
+        assertThat(result.getExitCode(), equalTo(0));
+        assertThat(new String(result.getOut()), containsString("hello"));
+    }
+
+    @Test
+    public void whenCompilerReportsFailure_returnNonZeroExitCode() throws Exception {
+        ForkedCompilerPool.Result result = compile(100, "fail");
+
+        assertThat(result.getExitCode(), equalTo(1));
+        assertThat(new String(result.getErr()), containsString("failed"));
+    }
+
+    @Test
+    public void whenCompilerThrowsException_returnNonZeroExitCode() throws Exception {
+        ForkedCompilerPool.Result result = compile(100, "throw");
+
+        assertThat(result.getExitCode(), equalTo(1));
+        assertThat(new String(result.getErr()), containsString("IllegalStateException"));
+    }
+
+    @Test
+    public void afterCompilation_reuseWorker() throws Exception {
+        compile(100, "first");
+        ForkedCompilerPool.Result result = compile(100, "second");
+
+        assertThat(new String(result.getOut()), containsString("invocation 2"));
+    }
+
+    @Test
+    public void whenWorkerReachesJobLimit_replaceIt() throws Exception {
+        compile(1, "first");
+        ForkedCompilerPool.Result result = compile(1, "second");
+
+        assertThat(new String(result.getOut()), containsString("invocation 1"));
+    }
+
+    private ForkedCompilerPool.Result compile(int maxJobs, String argument) throws Exception {
+        List<String> args = Collections.singletonList(argument);
+        return pool.compile(COMPILER, "compile", args, maxJobs, Long.MAX_VALUE);
+    }
+
+    /**
+     * A stand-in for a compiler, run in the worker processes.
+     */
+    public static class CountingCompiler {
+        private static int invocations;
+
+        public static boolean compile(String... args) {
+            invocations++;
+            System.out.println("invocation " + invocations + ": " + args[0]);
+            if (args[0].equals("throw"))
+                throw new IllegalStateException("compiler crashed");
+            if (args[0].equals("fail")) {
+                System.err.println("compilation failed");
+                return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compiles generated Java sources against minimal stubs of the <code>org.omg.CORBA</code> classes they use, which
+ * are kept in <code>src/test/corba-stubs</code>, so that tests can check that generated or rewritten code compiles
+ * and run it.
+ */
+final class GeneratedCodeCompiler {
+
+    private static final File CORBA_STUBS = new File("src/test/corba-stubs");
+
+    private GeneratedCodeCompiler() {
+    }
+
+    /**
+     * Compiles the Java files in a directory, along with the stubs.
+     *
+     * @param sourceDirectory  the directory holding the sources
+     * @param classesDirectory the directory in which to write the classes
+     * @throws AssertionError if the sources do not compile
+     */
+    static void compile(File sourceDirectory, File classesDirectory) throws IOException {
+        List<File> sources = new ArrayList<>();
+        sources.addAll(FileUtils.getFiles(sourceDirectory, "**/*.java", null));
+        sources.addAll(FileUtils.getFiles(CORBA_STUBS, "**/*.java", null));
+        classesDirectory.mkdirs();
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null)) {
+            List<String> options = Arrays.asList("-d", classesDirectory.getPath(), "-nowarn");
+            boolean compiled = compiler.getTask(null, fileManager, diagnostics, options, null,
+                                                fileManager.getJavaFileObjectsFromFiles(sources)).call();
+            if (!compiled)
+                throw new AssertionError("Generated code does not compile: " + describe(diagnostics));
+        }
+    }
+
+    private static String describe(DiagnosticCollector<JavaFileObject> diagnostics) {
+        StringBuilder description = new StringBuilder();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics())
+            description.append(System.lineSeparator()).append(diagnostic);
+        return description.toString();
+    }
+
+    /**
+     * Creates a class loader for compiled classes, which sees none of the classes of the plugin or its tests. Each
+     * loader has its own copy of the classes, and so of their static state.
+     *
+     * @param classesDirectory the directory holding the classes
+     * @return a new class loader
+     */
+    static URLClassLoader createClassLoader(File classesDirectory) throws IOException {
+        URL[] urls = {classesDirectory.toURI().toURL()};
+        return new URLClassLoader(urls, ClassLoader.getSystemClassLoader().getParent());
+    }
+}
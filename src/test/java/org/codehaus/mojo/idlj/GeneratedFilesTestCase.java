@@ -0,0 +1,97 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Tests for moving generated files into the output directory.
+ */
+public class GeneratedFilesTestCase extends TempDirectoryTestBase {
+
+    private static final long OLD_TIME = 1000000000000L;
+
+    private File generatedDir;
+    private File outputDir;
+
+    @Before
+    public void setUp() throws Exception {
+        File root = createTempDirectory("generated");
+        generatedDir = new File(root, "generated");
+        outputDir = new File(root, "output");
+    }
+
+    private File write(File directory, String path, String contents) throws Exception {
+        File file = new File(directory, path);
+        FileUtils.forceMkdir(file.getParentFile());
+        FileUtils.fileWrite(file, "UTF-8", contents);
+        return file;
+    }
+
+    @Test
+    public void whenOutputMissing_copyGeneratedFiles() throws Exception {
+        write(generatedDir, "demo/Hello.java", "interface Hello {}");
+
+        assertThat(GeneratedFiles.publish(generatedDir, outputDir), containsInAnyOrder("demo" + File.separator + "Hello.java"));
+        assertThat(FileUtils.fileRead(new File(outputDir, "demo/Hello.java")), equalTo("interface Hello {}"));
+    }
+
+    @Test
+    public void whenContentsUnchanged_leaveOutputUntouched() throws Exception {
+        write(generatedDir, "demo/Hello.java", "interface Hello {}");
+        File existing = write(outputDir, "demo/Hello.java", "interface Hello {}");
+        existing.setLastModified(OLD_TIME);
+
+        GeneratedFiles.publish(generatedDir, outputDir);
+
+        assertThat(existing.lastModified(), equalTo(OLD_TIME));
+    }
+
+    @Test
+    public void whenOnlyGenerationTimeChanged_leaveOutputUntouched() throws Exception {
+        write(generatedDir, "demo/Hello.java", "/**\n * @version generated at Oct 17, 2026, 10:00:01 AM\r\n */\ninterface Hello {}");
+        File existing = write(outputDir, "demo/Hello.java", "/**\n * @version generated at Oct 16, 2026, 9:59:58 PM\r\n */\ninterface Hello {}");
+        existing.setLastModified(OLD_TIME);
+
+        GeneratedFiles.publish(generatedDir, outputDir);
+
+        assertThat(existing.lastModified(), equalTo(OLD_TIME));
+    }
+
+    @Test
+    public void whenContentsChanged_replaceOutput() throws Exception {
+        write(generatedDir, "demo/Hello.java", "interface Hello {}");
+        File existing = write(outputDir, "demo/Hello.java", "interface Hallo {}");
+        existing.setLastModified(OLD_TIME);
+
+        GeneratedFiles.publish(generatedDir, outputDir);
+
+        assertThat(FileUtils.fileRead(existing), equalTo("interface Hello {}"));
+    }
+}
@@ -0,0 +1,107 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests for the cache of generated sources.
+ */
+public class GeneratedSourcesCacheTestCase extends TempDirectoryTestBase {
+
+    private File cacheDir;
+    private File generatedDir;
+    private File outputDir;
+
+    @Before
+    public void setUp() throws Exception {
+        File root = createTempDirectory("cache");
+        cacheDir = new File(root, "cache");
+        generatedDir = new File(root, "generated");
+        outputDir = new File(root, "output");
+
+        FileUtils.forceMkdir(new File(generatedDir, "demo"));
+        FileUtils.fileWrite(new File(generatedDir, "demo/Hello.java"), "UTF-8", "interface Hello {}");
+    }
+
+    private String key(String text) {
+        MessageDigest digest = GeneratedSourcesCache.createKeyDigest();
+        digest.update(text.getBytes());
+        return GeneratedSourcesCache.toKey(digest);
+    }
+
+    @Test
+    public void whenEntryMissing_reportMiss() throws Exception {
+        GeneratedSourcesCache cache = new GeneratedSourcesCache(cacheDir, Long.MAX_VALUE);
+
+        assertThat(cache.restore(key("a"), outputDir), nullValue());
+        assertThat(cache.getMisses(), equalTo(1));
+    }
+
+    @Test
+    public void whenEntryStored_restoreGeneratedFiles() throws Exception {
+        GeneratedSourcesCache cache = new GeneratedSourcesCache(cacheDir, Long.MAX_VALUE);
+        cache.store(key("a"), generatedDir);
+
+        assertThat(cache.restore(key("a"), outputDir), contains("demo" + File.separator + "Hello.java"));
+        assertThat(FileUtils.fileRead(new File(outputDir, "demo/Hello.java")), equalTo("interface Hello {}"));
+        assertThat(cache.getHits(), equalTo(1));
+    }
+
+    @Test
+    public void whenRestoringOverExistingFile_leaveCacheEntryIntact() throws Exception {
+        GeneratedSourcesCache cache = new GeneratedSourcesCache(cacheDir, Long.MAX_VALUE);
+        cache.store(key("a"), generatedDir);
+        cache.restore(key("a"), outputDir);
+
+        File regenerated = new File(generatedDir, "demo/Hello.java");
+        regenerated.delete();
+        FileUtils.fileWrite(regenerated, "UTF-8", "interface Changed {}");
+        GeneratedFiles.publish(generatedDir, outputDir);
+
+        cache.restore(key("a"), new File(outputDir, "copy"));
+        assertThat(FileUtils.fileRead(new File(outputDir, "copy/demo/Hello.java")), equalTo("interface Hello {}"));
+    }
+
+    @Test
+    public void whenCacheTooLarge_evictLeastRecentlyUsed() throws Exception {
+        GeneratedSourcesCache cache = new GeneratedSourcesCache(cacheDir, 20);
+        cache.store(key("old"), generatedDir);
+        cache.store(key("new"), generatedDir);
+        new File(new File(cacheDir, key("old").substring(0, 2)), key("old")).setLastModified(0);
+
+        cache.evict();
+
+        assertThat(cache.restore(key("old"), outputDir), nullValue());
+        assertThat(cache.restore(key("new"), outputDir), notNullValue());
+    }
+}
@@ -0,0 +1,322 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.sun.tools.corba.ee.idl.toJavaPortable.Compile;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * Tests for the rewriting of the type() method of generated helpers.
+ */
+public class HelperTypeRewriterTestCase extends TempDirectoryTestBase {
+
+    private HelperTypeRewriter rewriter = new HelperTypeRewriter();
+
+    private static final String SIMPLE_HELPER =
+            "abstract public class IHelper\n" +
+            "{\n" +
+            "  private static String  _id = \"IDL:N/I:1.0\";\n" +
+            "\n" +
+            "  private static org.omg.CORBA.TypeCode __typeCode = null;\n" +
+            "  synchronized public static org.omg.CORBA.TypeCode type ()\n" +
+            "  {\n" +
+            "    if (__typeCode == null)\n" +
+            "    {\n" +
+            "      __typeCode = org.omg.CORBA.ORB.init ().create_interface_tc (N.IHelper.id (), \"I\");\n" +
+            "    }\n" +
+            "    return __typeCode;\n" +
+            "  }\n" +
+            "\n" +
+            "  public static String id ()\n" +
+            "  {\n" +
+            "    return _id;\n" +
+            "  }\n" +
+            "}\n";
+
+    private static final String RECURSION_GUARD =
+            "    if (__typeCode == null)\n" +
+            "    {\n" +
+            "      synchronized (org.omg.CORBA.TypeCode.class)\n" +
+            "      {\n" +
+            "        if (__typeCode == null)\n" +
+            "        {\n" +
+            "          if (__active)\n" +
+            "          {\n" +
+            "            return org.omg.CORBA.ORB.init().create_recursive_tc ( _id );\n" +
+            "          }\n" +
+            "          __active = true;\n" +
+            "          __typeCode = org.omg.CORBA.ORB.init ().create_struct_tc (R.NodeHelper.id (), \"Node\", null);\n" +
+            "          __active = false;\n" +
+            "        }\n" +
+            "      }\n" +
+            "    }\n" +
+            "    return __typeCode;\n";
+
+    private static final String RECURSIVE_HELPER =
+            "abstract public class NodeHelper\n" +
+            "{\n" +
+            "  private static org.omg.CORBA.TypeCode __typeCode = null;\n" +
+            "  private static boolean __active = false;\n" +
+            "  synchronized public static org.omg.CORBA.TypeCode type ()\n" +
+            "  {\n" +
+            RECURSION_GUARD +
+            "  }\n" +
+            "}\n";
+
+    private static final String ALIAS_BODY =
+            "    if (__typeCode == null)\n" +
+            "    {\n" +
+            "      __typeCode = org.omg.CORBA.ORB.init ().get_primitive_tc (org.omg.CORBA.TCKind.tk_long);\n" +
+            "      __typeCode = org.omg.CORBA.ORB.init ().create_sequence_tc (0, __typeCode);\n" +
+            "      __typeCode = org.omg.CORBA.ORB.init ().create_alias_tc (N.LongsHelper.id (), \"Longs\", __typeCode);\n" +
+            "    }\n" +
+            "    return __typeCode;\n";
+
+    private static final String ALIAS_HELPER =
+            "abstract public class LongsHelper\n" +
+            "{\n" +
+            "  private static org.omg.CORBA.TypeCode __typeCode = null;\n" +
+            "  synchronized public static org.omg.CORBA.TypeCode type ()\n" +
+            "  {\n" +
+            ALIAS_BODY +
+            "  }\n" +
+            "}\n";
+
+    private static final String GLASSFISH_IDL =
+            "module N {\n" +
+            "  struct Node { long value; sequence<Node> children; };\n" +
+            "  typedef sequence<long> Longs;\n" +
+            "  struct Holder { Longs values; };\n" +
+            "};\n";
+
+    private static final String[] GLASSFISH_HELPERS = {"N.NodeHelper", "N.LongsHelper", "N.HolderHelper"};
+
+    private static final int THREADS = 8;
+
+    @Test
+    public void publishTypeCodeThroughSeparateVolatileField() {
+        String rewritten = rewriter.rewrite(SIMPLE_HELPER);
+
+        assertThat(rewritten, containsString("  private static org.omg.CORBA.TypeCode __typeCode = null;\n"));
+        assertThat(rewritten, containsString(
+                "  private static volatile org.omg.CORBA.TypeCode __completeTypeCode = null;\n"));
+    }
+
+    @Test
+    public void whenTypeCodeBuiltInSteps_onlyPublishCompletedTypeCode() {
+        String rewritten = rewriter.rewrite(ALIAS_HELPER);
+
+        assertThat(rewritten, containsString(
+                "  synchronized private static org.omg.CORBA.TypeCode __buildType ()\n" +
+                "  {\n" +
+                ALIAS_BODY +
+                "  }\n"));
+        assertThat(rewritten, containsString(
+                "  synchronized private static org.omg.CORBA.TypeCode __type ()\n" +
+                "  {\n" +
+                "    __typeDepth++;\n" +
+                "    try\n" +
+                "    {\n" +
+                "      org.omg.CORBA.TypeCode typeCode = __buildType ();\n" +
+                "      if (__typeDepth == 1)\n" +
+                "      {\n" +
+                "        __completeTypeCode = typeCode;\n" +
+                "      }\n" +
+                "      return typeCode;\n" +
+                "    }\n" +
+                "    finally\n" +
+                "    {\n" +
+                "      __typeDepth--;\n" +
+                "    }\n" +
+                "  }\n"));
+    }
+
+    @Test
+    public void unsynchronizedCodeNeverReadsTypeCodeUnderConstruction() {
+        String rewritten = rewriter.rewrite(ALIAS_HELPER);
+        String fastPath = rewritten.substring(rewritten.indexOf("public static org.omg.CORBA.TypeCode type ()"),
+                rewritten.indexOf("synchronized private static"));
+
+        assertThat(fastPath, not(containsString("__typeCode")));
+    }
+
+    @Test
+    public void whenTypeCodeCreated_typeDoesNotLock() {
+        String rewritten = rewriter.rewrite(SIMPLE_HELPER);
+
+        assertThat(rewritten, containsString(
+                "  public static org.omg.CORBA.TypeCode type ()\n" +
+                "  {\n" +
+                "    org.omg.CORBA.TypeCode typeCode = __completeTypeCode;\n" +
+                "    if (typeCode == null)\n" +
+                "    {\n" +
+                "      typeCode = __type ();\n" +
+                "    }\n" +
+                "    return typeCode;\n" +
+                "  }\n"));
+        assertThat(rewritten, not(containsString("synchronized public static")));
+    }
+
+    @Test
+    public void keepGeneratedBodyInSynchronizedMethod() {
+        String rewritten = rewriter.rewrite(RECURSIVE_HELPER);
+
+        assertThat(rewritten, containsString(
+                "  synchronized private static org.omg.CORBA.TypeCode __buildType ()\n" +
+                "  {\n" +
+                RECURSION_GUARD +
+                "  }\n"));
+        assertThat(rewritten, containsString("  private static boolean __active = false;\n"));
+    }
+
+    @Test
+    public void whenAlreadyRewritten_leaveUnchanged() {
+        String rewritten = rewriter.rewrite(SIMPLE_HELPER);
+
+        assertThat(rewriter.rewrite(rewritten), equalTo(rewritten));
+    }
+
+    @Test
+    public void whenTypeMethodNotGenerated_leaveUnchanged() {
+        String source = "public abstract class IHelper\n{\n" +
+                "  private volatile static org.omg.CORBA.TypeCode _type;\n" +
+                "  public static org.omg.CORBA.TypeCode type ()\n  {\n    return _type;\n  }\n}\n";
+
+        assertThat(rewriter.rewrite(source), equalTo(source));
+    }
+
+    @Test
+    public void preserveLineEndings() {
+        String rewritten = rewriter.rewrite(SIMPLE_HELPER.replace("\n", "\r\n"));
+
+        assertThat(rewritten.replace("\r\n", "").contains("\n"), equalTo(false));
+    }
+
+    @Test
+    public void rewriteOnlyHelpers() throws Exception {
+        File dir = createTempDirectory("helpers");
+        FileUtils.forceMkdir(new File(dir, "N"));
+        FileUtils.fileWrite(new File(dir, "N/IHelper.java"), "UTF-8", SIMPLE_HELPER);
+        FileUtils.fileWrite(new File(dir, "N/IOperations.java"), "UTF-8", SIMPLE_HELPER);
+        List<SourceRewriter> rewriters = Collections.<SourceRewriter>singletonList(rewriter);
+
+        assertThat(GeneratedFiles.rewrite(dir, rewriters), equalTo(1));
+        assertThat(FileUtils.fileRead(new File(dir, "N/IHelper.java")), containsString("__buildType ()"));
+        assertThat(FileUtils.fileRead(new File(dir, "N/IOperations.java")), equalTo(SIMPLE_HELPER));
+        assertThat(GeneratedFiles.rewrite(dir, rewriters), equalTo(0));
+    }
+
+    @Test
+    public void whenGlassfishHelpersRewritten_typeCodesMatchOriginalUnderConcurrentCalls() throws Exception {
+        File root = createTempDirectory("glassfish-helpers");
+        File originalClasses = compileGlassfishOutput(root, "original", false);
+        File rewrittenClasses = compileGlassfishOutput(root, "rewritten", true);
+
+        List<String> expected = new ArrayList<>();
+        try (URLClassLoader loader = GeneratedCodeCompiler.createClassLoader(originalClasses)) {
+            for (String helper : GLASSFISH_HELPERS)
+                expected.add(getType(loader, helper).toString());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int round = 0; round < 20; round++) {
+                try (URLClassLoader loader = GeneratedCodeCompiler.createClassLoader(rewrittenClasses)) {
+                    List<Object[]> results = getTypesConcurrently(executor, loader);
+                    for (int i = 0; i < GLASSFISH_HELPERS.length; i++) {
+                        for (Object[] threadResults : results) {
+                            assertThat(threadResults[i], sameInstance(results.get(0)[i]));
+                            assertThat(threadResults[i].toString(), equalTo(expected.get(i)));
+                        }
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private File compileGlassfishOutput(File root, String name, boolean rewrite) throws Exception {
+        File idlFile = new File(root, "types.idl");
+        FileUtils.fileWrite(idlFile, "UTF-8", GLASSFISH_IDL);
+        File sourceDir = new File(root, name);
+        CompilerRegistry.run(Compile.class, "main", "-td", sourceDir.getPath(), idlFile.getPath());
+        if (rewrite)
+            assertThat(GeneratedFiles.rewrite(sourceDir, Collections.<SourceRewriter>singletonList(rewriter)),
+                       equalTo(GLASSFISH_HELPERS.length));
+
+        File classesDir = new File(root, name + "-classes");
+        GeneratedCodeCompiler.compile(sourceDir, classesDir);
+        return classesDir;
+    }
+
+    private static Object getType(ClassLoader loader, String helper) throws Exception {
+        return loader.loadClass(helper).getMethod("type").invoke(null);
+    }
+
+    /**
+     * Calls type() on every helper from several threads at once, each thread starting with a different helper.
+     *
+     * @return the type codes returned to each thread, in the order of the helpers
+     */
+    private static List<Object[]> getTypesConcurrently(ExecutorService executor, final ClassLoader loader)
+            throws Exception {
+        final CyclicBarrier start = new CyclicBarrier(THREADS);
+        List<Future<Object[]>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int first = t;
+            futures.add(executor.submit(new Callable<Object[]>() {
+                public Object[] call() throws Exception {
+                    Object[] types = new Object[GLASSFISH_HELPERS.length];
+                    start.await();
+                    for (int i = 0; i < types.length; i++) {
+                        int helper = (first + i) % types.length;
+                        types[helper] = getType(loader, GLASSFISH_HELPERS[helper]);
+                    }
+                    return types;
+                }
+            }));
+        }
+
+        List<Object[]> results = new ArrayList<>();
+        for (Future<Object[]> future : futures)
+            results.add(future.get());
+        return results;
+    }
+}
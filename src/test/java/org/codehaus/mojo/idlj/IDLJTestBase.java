@@ -1,5 +1,6 @@
 package org.codehaus.mojo.idlj;
 
+import org.apache.maven.artifact.resolver.ArtifactResolver;
 import org.apache.maven.model.Model;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.compiler.util.scan.InclusionScanException;
@@ -14,6 +15,7 @@ import java.lang.reflect.Field;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
@@ -21,11 +23,14 @@ import java.util.Set;
 
 import static org.junit.Assert.fail;
 
-public class IDLJTestBase {
+public class IDLJTestBase extends TempDirectoryTestBase {
     private static String[] args;
+    private static final List<String> compiledFiles = Collections.synchronizedList(new ArrayList<String>());
     private Properties savedProperties;
     private TestClassloaderFacade loaderFacade = new TestClassloaderFacade();
     private TestScanner testScanner = new TestScanner();
+    private TestScanner allSourcesScanner;
+    private int scanParallelism;
     private TestDependenciesFacade testDependenciesFacade = new TestDependenciesFacade();
     private TestLog log = new TestLog();
     IDLJMojo mojo;
@@ -33,11 +38,13 @@ public class IDLJTestBase {
     @Before
     public void setUp() throws Exception {
         args = null;
+        compiledFiles.clear();
+        TestIdlCompiler.defineErrorMessage(null);
+        TestIdlCompiler.defineFailingFile(null);
         savedProperties = (Properties) System.getProperties().clone();
         AbstractTranslator.setClassLoaderFacade(loaderFacade);
 
-        TestDependenciesFacade testDependenciesFacade1 = testDependenciesFacade;
-        mojo = new IDLJMojo(testDependenciesFacade1);
+        mojo = createMojo(testDependenciesFacade);
         ignoreMavenProject();
         defineSourceDirectory("src/main/idl");
         defineOutputDirectory("target/main/generatedSources/idl");
@@ -51,6 +58,10 @@ public class IDLJTestBase {
         System.setProperties( savedProperties );
     }
 
+    IDLJMojo createMojo(AbstractIDLJMojo.DependenciesFacade dependenciesFacade) {
+        return new IDLJMojo(dependenciesFacade);
+    }
+
     private void ignoreMavenProject() throws NoSuchFieldException, IllegalAccessException {
         setPrivateFieldValue(mojo, "project", new MavenProject((Model) null));
     }
@@ -243,6 +254,82 @@ public class IDLJTestBase {
         setPrivateFieldValue(mojo, "failOnError", true);
     }
 
+    final void defineThreads(int threads) throws NoSuchFieldException, IllegalAccessException {
+        setPrivateFieldValue(mojo, "threads", threads);
+    }
+
+    final void defineBatchSize(int batchSize) throws NoSuchFieldException, IllegalAccessException {
+        setPrivateFieldValue(mojo, "batchSize", batchSize);
+    }
+
+    final void defineStaleSources(String... paths) {
+        testScanner.includedSources.clear();
+        for (String path : paths)
+            testScanner.includedSources.add(new File(path));
+    }
+
+    /**
+     * Specifies the files selected by the source, whether or not they are stale. By default, only the stale files
+     * are selected.
+     */
+    final void defineAllSources(String... paths) {
+        allSourcesScanner = new TestScanner();
+        for (String path : paths)
+            allSourcesScanner.includedSources.add(new File(path));
+    }
+
+    final void useTimestampDirectory(File directory) throws NoSuchFieldException, IllegalAccessException {
+        setPrivateFieldValue(mojo, "timestampDirectory", directory);
+    }
+
+    final void useOutputDirectory(String path) throws NoSuchFieldException, IllegalAccessException {
+        defineOutputDirectory(path);
+    }
+
+    final void useSourceDirectory(String path) throws NoSuchFieldException, IllegalAccessException {
+        defineSourceDirectory(path);
+    }
+
+    final void defineWatchQuietMs(int watchQuietMs) throws NoSuchFieldException, IllegalAccessException {
+        setPrivateFieldValue(mojo, "watchQuietMs", watchQuietMs);
+    }
+
+    final void defineIncludeDependencies(String... coordinates) throws NoSuchFieldException, IllegalAccessException {
+        setPrivateFieldValue(mojo, "includeDependencies", coordinates);
+    }
+
+    final void defineIncludeClassifier(String classifier) throws NoSuchFieldException, IllegalAccessException {
+        setPrivateFieldValue(mojo, "includeClassifier", classifier);
+    }
+
+    final void defineArtifactResolver(ArtifactResolver resolver) throws NoSuchFieldException, IllegalAccessException {
+        setPrivateFieldValue(mojo, "artifactResolver", resolver);
+    }
+
+    final MavenProject getProject() {
+        return mojo.getProject();
+    }
+
+    final List<String> getLoggedErrors() {
+        return log.errors;
+    }
+
+    final List<String> getCompiledFiles() {
+        return compiledFiles;
+    }
+
+    final int getScanParallelism() {
+        return scanParallelism;
+    }
+
+    final List<File> getRecordedFiles() {
+        return testDependenciesFacade.recordedFiles;
+    }
+
+    final List<Integer> getCompiledCountsAtSnapshots() {
+        return testDependenciesFacade.compiledCountsAtSnapshots;
+    }
+
     final void defineIncludePaths(String... paths) throws NoSuchFieldException, IllegalAccessException {
         File[] dirs = new File[ paths.length ];
         for (int i = 0; i < dirs.length; i++)
@@ -325,13 +412,15 @@ public class IDLJTestBase {
 
     static class TestIdlCompiler {
         private static String errorMessage;
+        private static String failingFile;
 
         public static void main(String... args) {
             IDLJTestBase.args = new String[ args.length];
             for (int i = 0; i < args.length; i++)
                 IDLJTestBase.args[i] = args[i].replace('\\','/');
+            compiledFiles.add(IDLJTestBase.args[args.length-1]);
 
-            if ( errorMessage != null )
+            if ( errorMessage != null && (failingFile == null || Arrays.asList(IDLJTestBase.args).contains(failingFile)) )
                 System.err.println( errorMessage );
         }
 
@@ -343,6 +432,13 @@ public class IDLJTestBase {
         static void defineErrorMessage(String message) {
             errorMessage = message;
         }
+
+        /**
+         * Restricts the error message to invocations which compile the specified file.
+         */
+        static void defineFailingFile(String file) {
+            failingFile = file;
+        }
     }
 
     private static class TestScanner implements SourceInclusionScanner {
@@ -358,6 +454,8 @@ public class IDLJTestBase {
     }
 
     private static class TestLog implements org.apache.maven.plugin.logging.Log {
+        private final List<String> errors = new ArrayList<>();
+
         public boolean isDebugEnabled() {
             return false;
         }
@@ -402,6 +500,7 @@ public class IDLJTestBase {
         }
 
         public void error(CharSequence charSequence) {
+            errors.add(String.valueOf(charSequence));
         }
 
         public void error(CharSequence charSequence, Throwable throwable) {
@@ -412,18 +511,29 @@ public class IDLJTestBase {
     }
 
     private class TestDependenciesFacade implements AbstractIDLJMojo.DependenciesFacade {
-        List<File> sourceFiles = new ArrayList<>();
-        List<File> targetFiles = new ArrayList<>();
+        List<File> recordedFiles = new ArrayList<>();
+        List<Integer> compiledCountsAtSnapshots = new ArrayList<>();
         List<File> writeableDirectories = new ArrayList<>();
         List<File> readOnlyDirectories = new ArrayList<>();
 
-        public SourceInclusionScanner createSourceInclusionScanner(int updatedWithinMsecs, Set includes, Set excludes) {
+        public SourceInclusionScanner createSourceInclusionScanner(int updatedWithinMsecs, StalenessIndex index,
+                                                                   Set includes, Set excludes, int parallelism) {
+            scanParallelism = parallelism;
             return testScanner;
         }
 
-        public void copyFile(File sourceFile, File targetFile) throws IOException {
-            sourceFiles.add(sourceFile);
-            targetFiles.add(targetFile);
+        public SourceInclusionScanner createAllSourcesScanner(Set includes, Set excludes, int parallelism) {
+            scanParallelism = parallelism;
+            return allSourcesScanner != null ? allSourcesScanner : testScanner;
+        }
+
+        public synchronized StalenessIndex.Snapshot snapshot(File file) {
+            compiledCountsAtSnapshots.add(compiledFiles.size());
+            return new StalenessIndex.Snapshot(file, file.getPath(), 0, 0, 0);
+        }
+
+        public synchronized void record(StalenessIndex index, StalenessIndex.Snapshot snapshot) throws IOException {
+            recordedFiles.add(snapshot.getFile());
         }
 
         public boolean exists(File directory) {
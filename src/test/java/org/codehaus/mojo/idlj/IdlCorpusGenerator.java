@@ -0,0 +1,289 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates a corpus of valid IDL files of a chosen size, for tests, benchmarks and integration tests which need
+ * more than a handful of definitions. The same seed and settings always produce the same files.
+ *
+ * <p>Each module is written to a file of its own in the source directory, and defines an exception, structs,
+ * sequences of those structs, unions, valuetypes and interfaces whose operations use them. Each file also includes
+ * some of the shared files written to the include directory, which form chains of the chosen depth, and uses the
+ * types they define.</p>
+ */
+public class IdlCorpusGenerator {
+
+    private final Random random;
+    private int modules = 10;
+    private int interfacesPerModule = 3;
+    private int operationsPerInterface = 5;
+    private int structsPerModule = 3;
+    private int sequencesPerModule = 2;
+    private int unionsPerModule = 1;
+    private int valuetypesPerModule = 1;
+    private int sharedIncludes = 4;
+    private int includeDepth = 2;
+    private int includesPerFile = 2;
+
+    public IdlCorpusGenerator(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * Creates a generator whose corpus holds roughly the specified number of definitions, with the default mix of
+     * definitions per module.
+     */
+    public static IdlCorpusGenerator withDefinitions(long seed, int definitions) {
+        IdlCorpusGenerator generator = new IdlCorpusGenerator(seed);
+        int perModule = generator.getDefinitionsPerModule();
+        generator.modules = Math.max(1, (definitions + perModule / 2) / perModule);
+        return generator;
+    }
+
+    public IdlCorpusGenerator modules(int modules) {
+        this.modules = modules;
+        return this;
+    }
+
+    public IdlCorpusGenerator interfacesPerModule(int interfacesPerModule) {
+        this.interfacesPerModule = interfacesPerModule;
+        return this;
+    }
+
+    public IdlCorpusGenerator operationsPerInterface(int operationsPerInterface) {
+        this.operationsPerInterface = operationsPerInterface;
+        return this;
+    }
+
+    public IdlCorpusGenerator structsPerModule(int structsPerModule) {
+        this.structsPerModule = structsPerModule;
+        return this;
+    }
+
+    public IdlCorpusGenerator sequencesPerModule(int sequencesPerModule) {
+        this.sequencesPerModule = sequencesPerModule;
+        return this;
+    }
+
+    public IdlCorpusGenerator unionsPerModule(int unionsPerModule) {
+        this.unionsPerModule = unionsPerModule;
+        return this;
+    }
+
+    public IdlCorpusGenerator valuetypesPerModule(int valuetypesPerModule) {
+        this.valuetypesPerModule = valuetypesPerModule;
+        return this;
+    }
+
+    /**
+     * Specifies the number of chains of shared include files, and the number of files in each chain. Each file in
+     * a chain includes the next one.
+     */
+    public IdlCorpusGenerator sharedIncludes(int sharedIncludes, int includeDepth) {
+        this.sharedIncludes = sharedIncludes;
+        this.includeDepth = includeDepth;
+        return this;
+    }
+
+    /**
+     * Specifies the number of shared include chains used by each module file.
+     */
+    public IdlCorpusGenerator includesPerFile(int includesPerFile) {
+        this.includesPerFile = includesPerFile;
+        return this;
+    }
+
+    /**
+     * Returns the number of definitions in the module files: types, interfaces and operations.
+     */
+    public int getDefinitionCount() {
+        return modules * getDefinitionsPerModule();
+    }
+
+    private int getDefinitionsPerModule() {
+        return 1 + structsPerModule + sequencesPerModule + 2 * unionsPerModule + valuetypesPerModule
+                + interfacesPerModule * (1 + operationsPerInterface);
+    }
+
+    /**
+     * Writes the corpus.
+     *
+     * @param sourceDirectory  the directory to receive the module files
+     * @param includeDirectory the directory to receive the shared include files
+     * @return the module files, in the order in which they were written
+     */
+    public List<File> generate(File sourceDirectory, File includeDirectory) throws IOException {
+        FileUtils.forceMkdir(sourceDirectory);
+        FileUtils.forceMkdir(includeDirectory);
+        for (int chain = 0; chain < sharedIncludes; chain++)
+            for (int level = 0; level < includeDepth; level++)
+                write(new File(includeDirectory, getSharedFileName(chain, level)), createSharedFile(chain, level));
+
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < modules; i++) {
+            File file = new File(sourceDirectory, "Module" + i + ".idl");
+            write(file, createModuleFile(i));
+            files.add(file);
+        }
+        return files;
+    }
+
+    private void write(File file, String contents) throws IOException {
+        FileUtils.fileWrite(file, "UTF-8", contents);
+    }
+
+    private String getSharedFileName(int chain, int level) {
+        return "Shared" + chain + "_" + level + ".idl";
+    }
+
+    private String getSharedModuleName(int chain, int level) {
+        return "Shared" + chain + "_" + level;
+    }
+
+    private String createSharedFile(int chain, int level) {
+        String guard = "_SHARED" + chain + "_" + level + "_IDL_";
+        StringBuilder idl = new StringBuilder();
+        idl.append("#ifndef ").append(guard).append("\n#define ").append(guard).append("\n\n");
+        boolean hasNext = level + 1 < includeDepth;
+        if (hasNext)
+            idl.append("#include \"").append(getSharedFileName(chain, level + 1)).append("\"\n\n");
+        idl.append("module ").append(getSharedModuleName(chain, level)).append(" {\n");
+        idl.append("    struct Record {\n        long id;\n        string name;\n");
+        if (hasNext)
+            idl.append("        ").append(getSharedModuleName(chain, level + 1)).append("::Record inner;\n");
+        idl.append("    };\n");
+        idl.append("    typedef sequence<Record> RecordSeq;\n");
+        idl.append("};\n\n#endif\n");
+        return idl.toString();
+    }
+
+    private String createModuleFile(int index) {
+        StringBuilder idl = new StringBuilder();
+        List<String> types = new ArrayList<>();
+        types.add("long");
+        types.add("double");
+        types.add("boolean");
+        types.add("string");
+
+        for (int chain : selectIncludes()) {
+            idl.append("#include \"").append(getSharedFileName(chain, 0)).append("\"\n");
+            types.add("::" + getSharedModuleName(chain, 0) + "::Record");
+            types.add("::" + getSharedModuleName(chain, 0) + "::RecordSeq");
+        }
+
+        idl.append("\nmodule Module").append(index).append(" {\n");
+        idl.append("    exception Failure {\n        string reason;\n        long code;\n    };\n");
+
+        for (int i = 0; i < structsPerModule; i++) {
+            idl.append("\n    struct Struct").append(i).append(" {\n");
+            int fields = 2 + random.nextInt(4);
+            for (int j = 0; j < fields; j++)
+                idl.append("        ").append(pick(types)).append(" field").append(j).append(";\n");
+            idl.append("    };\n");
+            types.add("Struct" + i);
+        }
+
+        for (int i = 0; i < sequencesPerModule; i++) {
+            String element = structsPerModule > 0 ? "Struct" + (i % structsPerModule) : "long";
+            idl.append("\n    typedef sequence<").append(element).append("> Sequence").append(i).append(";\n");
+            types.add("Sequence" + i);
+        }
+
+        for (int i = 0; i < unionsPerModule; i++) {
+            String kind = "Kind" + i;
+            idl.append("\n    enum ").append(kind).append(" { ").append(kind).append("_A, ").append(kind)
+                    .append("_B, ").append(kind).append("_C };\n");
+            idl.append("    union Union").append(i).append(" switch (").append(kind).append(") {\n");
+            idl.append("        case ").append(kind).append("_A: long number;\n");
+            idl.append("        case ").append(kind).append("_B: string text;\n");
+            idl.append("        default: ").append(pick(types)).append(" other;\n");
+            idl.append("    };\n");
+            types.add("Union" + i);
+        }
+
+        for (int i = 0; i < valuetypesPerModule; i++) {
+            idl.append("\n    valuetype Value").append(i).append(" {\n");
+            idl.append("        public long id;\n");
+            idl.append("        public ").append(pick(types)).append(" content;\n");
+            idl.append("        private string note;\n");
+            idl.append("    };\n");
+            types.add("Value" + i);
+        }
+
+        for (int i = 0; i < interfacesPerModule; i++) {
+            idl.append("\n    interface Service").append(i);
+            if (i > 0 && random.nextInt(3) == 0)
+                idl.append(" : Service").append(random.nextInt(i));
+            idl.append(" {\n");
+            idl.append("        readonly attribute long count").append(i).append(";\n");
+            for (int j = 0; j < operationsPerInterface; j++)
+                appendOperation(idl, "op" + i + "_" + j, types);
+            idl.append("    };\n");
+        }
+
+        idl.append("};\n");
+        return idl.toString();
+    }
+
+    private void appendOperation(StringBuilder idl, String name, List<String> types) {
+        if (random.nextInt(8) == 0) {
+            idl.append("        oneway void ").append(name).append("(in ").append(pick(types)).append(" message);\n");
+            return;
+        }
+
+        String[] directions = {"in", "out", "inout"};
+        idl.append("        ").append(random.nextInt(4) == 0 ? "void" : pick(types)).append(' ').append(name)
+                .append("(");
+        int parameters = random.nextInt(4);
+        for (int k = 0; k < parameters; k++) {
+            if (k > 0)
+                idl.append(", ");
+            idl.append(directions[random.nextInt(directions.length)]).append(' ').append(pick(types))
+                    .append(" p").append(k);
+        }
+        idl.append(")");
+        if (random.nextBoolean())
+            idl.append(" raises (Failure)");
+        idl.append(";\n");
+    }
+
+    private List<Integer> selectIncludes() {
+        List<Integer> chains = new ArrayList<>();
+        if (includeDepth == 0)
+            return chains;
+        for (int i = 0; i < sharedIncludes; i++)
+            chains.add(i);
+        Collections.shuffle(chains, random);
+        return chains.subList(0, Math.min(includesPerFile, chains.size()));
+    }
+
+    private String pick(List<String> types) {
+        return types.get(random.nextInt(types.size()));
+    }
+}
@@ -0,0 +1,90 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.both;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+
+/**
+ * Tests for the generator of IDL corpora.
+ */
+public class IdlCorpusGeneratorTestCase extends TempDirectoryTestBase {
+
+    private File root;
+
+    @Before
+    public void setUp() throws Exception {
+        root = createTempDirectory("corpus");
+    }
+
+    @Test
+    public void whenSameSeed_generateSameFiles() throws Exception {
+        List<File> first = new IdlCorpusGenerator(42).generate(new File(root, "a/idl"), new File(root, "a/include"));
+        List<File> second = new IdlCorpusGenerator(42).generate(new File(root, "b/idl"), new File(root, "b/include"));
+
+        assertThat(FileUtils.fileRead(second.get(3)), equalTo(FileUtils.fileRead(first.get(3))));
+    }
+
+    @Test
+    public void whenDifferentSeed_generateDifferentFiles() throws Exception {
+        List<File> first = new IdlCorpusGenerator(1).generate(new File(root, "a/idl"), new File(root, "a/include"));
+        List<File> second = new IdlCorpusGenerator(2).generate(new File(root, "b/idl"), new File(root, "b/include"));
+
+        assertThat(FileUtils.fileRead(second.get(3)), not(equalTo(FileUtils.fileRead(first.get(3)))));
+    }
+
+    @Test
+    public void whenDefinitionCountRequested_generateEnoughModules() throws Exception {
+        IdlCorpusGenerator generator = IdlCorpusGenerator.withDefinitions(7, 10000);
+
+        assertThat(generator.getDefinitionCount(), both(greaterThan(9950)).and(lessThan(10050)));
+    }
+
+    @Test
+    public void generatedFilesAreAcceptedByJacorb() throws Exception {
+        File sourceDirectory = new File(root, "idl");
+        File includeDirectory = new File(root, "include");
+        List<File> files = new IdlCorpusGenerator(3).modules(5).sharedIncludes(3, 3).includesPerFile(2)
+                .generate(sourceDirectory, includeDirectory);
+
+        List<String> args = new ArrayList<>();
+        args.add("-d");
+        args.add(new File(root, "generated").getPath());
+        args.add("-I" + includeDirectory.getPath());
+        for (File file : files)
+            args.add(file.getPath());
+
+        assertThat(org.jacorb.idl.parser.compileAndHandle(args.toArray(new String[args.size()])), equalTo(true));
+        assertThat(files, hasSize(5));
+    }
+}
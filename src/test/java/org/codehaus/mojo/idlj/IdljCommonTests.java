@@ -3,6 +3,14 @@ package org.codehaus.mojo.idlj;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.junit.Test;
 
+import java.io.File;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.equalTo;
+
 /**
  * Created by russgold on 12/21/16.
  */
@@ -126,4 +134,80 @@ public class IdljCommonTests extends IDLJTestBase {
         mojo.execute();
         assertArgumentsContains("-arg1", "arg2");
     }
+
+    @Test
+    public void whenMultipleFilesAreStale_translateEachConcurrently() throws Exception {
+        defineThreads(2);
+        defineStaleSources("src/main/idl/a.idl", "src/main/idl/b.idl", "src/main/idl/c.idl");
+        mojo.execute();
+        assertThat(getCompiledFiles(), containsInAnyOrder(endsWith("a.idl"), endsWith("b.idl"), endsWith("c.idl")));
+        assertThat(getRecordedFiles(), containsInAnyOrder(new File("src/main/idl/a.idl"),
+                new File("src/main/idl/b.idl"), new File("src/main/idl/c.idl")));
+    }
+
+    @Test
+    public void whenThreadsDefined_scanWithThatParallelism() throws Exception {
+        defineThreads(3);
+        mojo.execute();
+        assertThat(getScanParallelism(), equalTo(3));
+    }
+
+    @Test
+    public void whenFileTranslated_recordStateReadBeforeCompiling() throws Exception {
+        defineStaleSources("src/main/idl/a.idl");
+        mojo.execute();
+        assertThat(getCompiledCountsAtSnapshots(), contains(0));
+        assertThat(getRecordedFiles(), contains(new File("src/main/idl/a.idl")));
+    }
+
+    @Test
+    public void whenConfigurationUnchanged_translateOnlyStaleFiles() throws Exception {
+        useTimestampDirectory(createTempDirectory("timestamps"));
+        defineStaleSources("src/main/idl/a.idl");
+        defineAllSources("src/main/idl/a.idl", "src/main/idl/b.idl");
+        mojo.execute();
+        getCompiledFiles().clear();
+
+        mojo.execute();
+        assertThat(getCompiledFiles(), containsInAnyOrder(endsWith("a.idl")));
+    }
+
+    @Test
+    public void whenConfigurationChanged_translateAllFiles() throws Exception {
+        useTimestampDirectory(createTempDirectory("timestamps"));
+        defineStaleSources("src/main/idl/a.idl");
+        defineAllSources("src/main/idl/a.idl", "src/main/idl/b.idl");
+        Source source = createSource();
+        mojo.execute();
+        getCompiledFiles().clear();
+
+        defineAdditionalArguments(source, "-arg1");
+        mojo.execute();
+        assertThat(getCompiledFiles(), containsInAnyOrder(endsWith("a.idl"), endsWith("b.idl")));
+    }
+
+    @Test
+    public void whenAnotherExecutionSharesTimestampDirectory_translateOnlyStaleFiles() throws Exception {
+        useTimestampDirectory(createTempDirectory("timestamps"));
+        defineStaleSources("src/main/idl/a.idl");
+        defineAllSources("src/main/idl/a.idl", "src/main/idl/b.idl");
+        mojo.execute();
+
+        useOutputDirectory("target/other/generatedSources/idl");
+        mojo.execute();
+        getCompiledFiles().clear();
+
+        useOutputDirectory("target/main/generatedSources/idl");
+        mojo.execute();
+        assertThat(getCompiledFiles(), containsInAnyOrder(endsWith("a.idl")));
+    }
+
+    @Test(expected = MojoExecutionException.class)
+    public void whenErrorMessageGeneratedConcurrently_failMojoStep() throws Exception {
+        setFailOnError();
+        defineThreads(2);
+        defineStaleSources("src/main/idl/a.idl", "src/main/idl/b.idl");
+        TestIdlCompiler.defineErrorMessage("(line 30): oops");
+        mojo.execute();
+    }
 }
@@ -0,0 +1,129 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.resolver.ArtifactResolver;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+
+/**
+ * Tests for the selection and resolution of the dependencies whose jars hold included IDL files.
+ */
+public class IncludeDependenciesTestCase extends IDLJTestBase {
+
+    private File repository;
+    private List<String> resolved = new ArrayList<>();
+
+    @Before
+    public void setUpDependencies() throws Exception {
+        repository = createTempDirectory("repository");
+        Set<Artifact> artifacts = new HashSet<>();
+        artifacts.add(createArtifact("shared-idl", null));
+        artifacts.add(createArtifact("library", null));
+        artifacts.add(createArtifact("types", "idl"));
+        getProject().setArtifacts(artifacts);
+        defineArtifactResolver(createResolver());
+    }
+
+    private Artifact createArtifact(String artifactId, String classifier) {
+        return new DefaultArtifact("com.example", artifactId, VersionRange.createFromVersion("1.0"), "compile",
+                                   "jar", classifier, new DefaultArtifactHandler("jar"));
+    }
+
+    private File getJar(String artifactId) {
+        return new File(repository, artifactId + ".jar");
+    }
+
+    /**
+     * Creates a resolver which records the ids of the artifacts it resolves, and resolves them to empty files.
+     */
+    private ArtifactResolver createResolver() {
+        return (ArtifactResolver) Proxy.newProxyInstance(getClass().getClassLoader(),
+                                                         new Class<?>[]{ArtifactResolver.class},
+                                                         new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                Artifact artifact = (Artifact) args[0];
+                File jar = getJar(artifact.getArtifactId());
+                jar.createNewFile();
+                artifact.setFile(jar);
+                artifact.setResolved(true);
+                resolved.add(artifact.getArtifactId());
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void whenNoIncludeDependencies_resolveNothing() throws Exception {
+        assertThat(mojo.getIncludeJars(), empty());
+        assertThat(resolved, empty());
+    }
+
+    @Test
+    public void whenIncludeDependencyListed_resolveOnlyIt() throws Exception {
+        defineIncludeDependencies("com.example:shared-idl");
+
+        assertThat(mojo.getIncludeJars(), contains(getJar("shared-idl")));
+        assertThat(resolved, contains("shared-idl"));
+    }
+
+    @Test
+    public void whenIncludeClassifierDefined_resolveOnlyMatchingDependencies() throws Exception {
+        defineIncludeClassifier("idl");
+
+        assertThat(mojo.getIncludeJars(), contains(getJar("types")));
+        assertThat(resolved, contains("types"));
+    }
+
+    @Test
+    public void whenIncludeDependencyAlreadyResolved_doNotResolveItAgain() throws Exception {
+        defineIncludeDependencies("com.example:shared-idl");
+        mojo.getIncludeJars();
+        resolved.clear();
+
+        assertThat(mojo.getIncludeJars(), contains(getJar("shared-idl")));
+        assertThat(resolved, empty());
+    }
+
+    @Test(expected = MojoExecutionException.class)
+    public void whenIncludeDependencyNotInProject_throwException() throws Exception {
+        defineIncludeDependencies("com.example:unknown");
+
+        mojo.getIncludeJars();
+    }
+}
@@ -0,0 +1,122 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+
+/**
+ * Tests for the detection of IDL files affected by changes to the files they include.
+ */
+public class IncludeGraphTestCase extends TempDirectoryTestBase {
+
+    private File sourceDir;
+    private File includeDir;
+    private File graphFile;
+
+    @Before
+    public void setUp() throws Exception {
+        File root = createTempDirectory("includes");
+        sourceDir = new File(root, "idl");
+        includeDir = new File(root, "shared");
+        graphFile = new File(root, "includes.graph");
+
+        write(new File(sourceDir, "a.idl"), "#include \"common/mid.idl\"\nmodule A {};\n");
+        write(new File(sourceDir, "b.idl"), "module B {};\n");
+        write(new File(sourceDir, "common/mid.idl"), "  #include <base.idl>\nmodule M {};\n");
+        write(new File(includeDir, "base.idl"), "module Base {};\n");
+        recordGraph();
+    }
+
+    private void write(File file, String contents) throws IOException {
+        file.getParentFile().mkdirs();
+        FileUtils.fileWrite(file, "UTF-8", contents);
+    }
+
+    private void recordGraph() throws IOException {
+        IncludeGraph graph = IncludeGraph.load(graphFile);
+        graph.update(sourceDir, new File[]{includeDir});
+        graph.save(graphFile);
+    }
+
+    private Set<File> getAffectedFiles() throws IOException {
+        IncludeGraph graph = IncludeGraph.load(graphFile);
+        return graph.getIncluders(graph.update(sourceDir, new File[]{includeDir}));
+    }
+
+    @Test
+    public void whenNoGraphRecorded_reportNoChanges() throws Exception {
+        IncludeGraph graph = IncludeGraph.load(new File(graphFile.getParentFile(), "missing.graph"));
+
+        assertThat(graph.update(sourceDir, new File[]{includeDir}), empty());
+    }
+
+    @Test
+    public void whenNothingChanged_reportNoAffectedFiles() throws Exception {
+        assertThat(getAffectedFiles(), empty());
+    }
+
+    @Test
+    public void whenSharedIncludeChanges_reportTransitiveIncluders() throws Exception {
+        File base = new File(includeDir, "base.idl");
+        write(base, "module Base { struct S { long a; }; };\n");
+        base.setLastModified(base.lastModified() + 10000);
+
+        assertThat(getAffectedFiles(), containsInAnyOrder(new File(sourceDir, "a.idl").getCanonicalFile(),
+                new File(sourceDir, "common/mid.idl").getCanonicalFile()));
+    }
+
+    @Test
+    public void whenIncludedFileRemoved_reportIncluders() throws Exception {
+        new File(includeDir, "base.idl").delete();
+
+        assertThat(getAffectedFiles(), containsInAnyOrder(new File(sourceDir, "a.idl").getCanonicalFile(),
+                new File(sourceDir, "common/mid.idl").getCanonicalFile()));
+    }
+
+    @Test
+    public void whenNewFileHidesIncludedFile_reportIncluders() throws Exception {
+        write(new File(sourceDir, "base.idl"), "module Base {};\n");
+
+        assertThat(getAffectedFiles(), containsInAnyOrder(new File(sourceDir, "a.idl").getCanonicalFile(),
+                new File(sourceDir, "common/mid.idl").getCanonicalFile()));
+    }
+
+    @Test
+    public void whenMissingIncludeAppears_reportIncluders() throws Exception {
+        File b = new File(sourceDir, "b.idl");
+        write(b, "#include <extra.idl>\nmodule B {};\n");
+        b.setLastModified(b.lastModified() + 10000);
+        recordGraph();
+
+        write(new File(includeDir, "extra.idl"), "module Extra {};\n");
+
+        assertThat(getAffectedFiles(), containsInAnyOrder(b.getCanonicalFile()));
+    }
+}
@@ -0,0 +1,128 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.sun.tools.corba.ee.idl.toJavaPortable.Compile;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * Tests for the private copies of compilers used by concurrent in-process compilations.
+ */
+public class IsolatedCompilerLoadersTestCase extends TempDirectoryTestBase {
+
+    private IsolatedCompilerLoaders loaders = new IsolatedCompilerLoaders();
+
+    @After
+    public void tearDown() throws Exception {
+        loaders.close();
+    }
+
+    @Test
+    public void whenCopiesInUse_loadAnotherWithItsOwnState() throws Exception {
+        Class<?> first = loaders.borrow(StatefulCompiler.class);
+        Class<?> second = loaders.borrow(StatefulCompiler.class);
+
+        CompilerRegistry.run(first, "main", "first");
+        CompilerRegistry.run(second, "main", "second");
+
+        assertThat(second, not(sameInstance((Object) first)));
+        assertThat(first.getField("lastFile").get(null), equalTo((Object) "first"));
+        assertThat(second.getField("lastFile").get(null), equalTo((Object) "second"));
+        assertThat(StatefulCompiler.lastFile, nullValue());
+    }
+
+    @Test
+    public void whenCopyReleased_reuseIt() throws Exception {
+        Class<?> first = loaders.borrow(StatefulCompiler.class);
+        loaders.release(StatefulCompiler.class, first);
+
+        assertThat(loaders.borrow(StatefulCompiler.class), sameInstance((Object) first));
+        assertThat(loaders.getLoadedCount(), equalTo(1));
+    }
+
+    @Test
+    public void whenClosed_doNotLendCopies() throws Exception {
+        loaders.close();
+
+        assertThat(loaders.borrow(StatefulCompiler.class), nullValue());
+    }
+
+    @Test
+    public void whenCompilingConcurrently_eachCompilationProducesItsOwnFiles() throws Exception {
+        final File root = createTempDirectory("isolated");
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                final int index = i;
+                results.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        compile(root, index);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> result : results)
+                result.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int i = 0; i < 8; i++)
+            assertThat(new File(root, "out" + i + "/M" + i + "/I" + i + ".java").isFile(), equalTo(true));
+        assertThat(loaders.getLoadedCount() <= 4, equalTo(true));
+    }
+
+    private void compile(File root, int index) throws Exception {
+        File idlFile = new File(root, "file" + index + ".idl");
+        FileUtils.fileWrite(idlFile, "UTF-8", "module M" + index + " { interface I" + index + " { void f(); }; };");
+        Class<?> copy = loaders.borrow(Compile.class);
+        try {
+            CompilerRegistry.run(copy, "main", "-td", new File(root, "out" + index).getPath(), idlFile.getPath());
+        } finally {
+            loaders.release(Compile.class, copy);
+        }
+    }
+
+    public static class StatefulCompiler {
+        public static String lastFile;
+
+        public static void main(String... args) {
+            lastFile = args[args.length - 1];
+        }
+    }
+}
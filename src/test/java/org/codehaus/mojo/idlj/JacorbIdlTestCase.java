@@ -4,7 +4,13 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 public class JacorbIdlTestCase extends IDLJTestBase {
 
@@ -103,4 +109,28 @@ public class JacorbIdlTestCase extends IDLJTestBase {
         assertArgumentsContains("-arg1", "arg2");
         assertArgumentsContains("-sloppy_names");
     }
+
+    @Test
+    public void whenBatchSizeSpecified_compileSeveralFilesPerInvocation() throws Exception {
+        defineBatchSize(3);
+        defineStaleSources("src/main/idl/a.idl", "src/main/idl/b.idl", "src/main/idl/c.idl");
+        mojo.execute();
+        assertArgumentsContains("src/main/idl/a.idl", "src/main/idl/b.idl", "src/main/idl/c.idl");
+        assertThat(getCompiledFiles(), hasSize(1));
+    }
+
+    @Test
+    public void whenBatchFails_recordOnlyFilesCompiledBeforeFailure() throws Exception {
+        setFailOnError();
+        defineBatchSize(3);
+        defineStaleSources("src/main/idl/a.idl", "src/main/idl/b.idl", "src/main/idl/c.idl");
+        TestIdlCompiler.defineErrorMessage("(line 30): oops");
+        TestIdlCompiler.defineFailingFile("src/main/idl/b.idl");
+        try {
+            mojo.execute();
+            fail("Did not report compilation failure");
+        } catch (MojoExecutionException e) {
+            assertThat(getRecordedFiles(), contains(new File("src/main/idl/a.idl")));
+        }
+    }
 }
@@ -0,0 +1,148 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+
+/**
+ * Tests for the generator of marshalling benchmarks.
+ */
+public class MarshallingBenchmarkGeneratorTestCase extends TempDirectoryTestBase {
+
+    private static final String IDL = "module demo {\n"
+            + "  struct Point { long x; long y; string label; };\n"
+            + "  typedef Point Location;\n"
+            + "  typedef sequence<Point> Path;\n"
+            + "  typedef sequence<long> Readings;\n"
+            + "  typedef sequence<long, 10> RecentReadings;\n"
+            + "  enum Color { RED, GREEN };\n"
+            + "  union Shape switch (Color) { case RED: Point p; case GREEN: string name; };\n"
+            + "  exception Failure { string reason; };\n"
+            + "  typedef long Matrix[2][2];\n"
+            + "  interface Painter { void paint(in Shape s) raises (Failure); };\n"
+            + "};\n";
+
+    private File root;
+    private File generatedDir;
+    private List<String> generatedFiles;
+
+    @Before
+    public void setUp() throws Exception {
+        root = createTempDirectory("benchmarks");
+        generatedDir = new File(root, "generated");
+        File idlFile = new File(root, "demo.idl");
+        FileUtils.fileWrite(idlFile, "UTF-8", IDL);
+
+        String[] args = {"-d", generatedDir.getPath(), idlFile.getPath()};
+        assertThat(org.jacorb.idl.parser.compileAndHandle(args), equalTo(true));
+
+        generatedFiles = new ArrayList<>();
+        for (Object file : FileUtils.getFileNames(generatedDir, "**/*.java", null, false))
+            generatedFiles.add((String) file);
+    }
+
+    private Map<String, MarshallingBenchmarkGenerator.MarshalledType> findTypes() throws Exception {
+        return new MarshallingBenchmarkGenerator(generatedDir, 42, 8).findTypes(generatedFiles);
+    }
+
+    @Test
+    public void findStructsUnionsAndSequences() throws Exception {
+        assertThat(findTypes().keySet(), containsInAnyOrder("demo.PointHelper", "demo.ShapeHelper", "demo.PathHelper",
+                "demo.ReadingsHelper", "demo.RecentReadingsHelper"));
+    }
+
+    @Test
+    public void identifyKindOfType() throws Exception {
+        Map<String, MarshallingBenchmarkGenerator.MarshalledType> types = findTypes();
+
+        assertThat(types.get("demo.PointHelper").getKind(), equalTo(MarshallingBenchmarkGenerator.Kind.STRUCT));
+        assertThat(types.get("demo.ShapeHelper").getKind(), equalTo(MarshallingBenchmarkGenerator.Kind.UNION));
+        assertThat(types.get("demo.PathHelper").getKind(), equalTo(MarshallingBenchmarkGenerator.Kind.SEQUENCE));
+        assertThat(types.get("demo.PathHelper").getValueType(), equalTo("demo.Point[]"));
+        assertThat(types.get("demo.ReadingsHelper").getValueType(), equalTo("int[]"));
+        assertThat(types.get("demo.RecentReadingsHelper").getValueType(), equalTo("int[]"));
+    }
+
+    @Test
+    public void writeBenchmarkPerTypeAndRandomValuesPerPackage() throws Exception {
+        File benchmarkDir = new File(root, "benchmarks");
+        List<String> written = new MarshallingBenchmarkGenerator(generatedDir, 42, 8)
+                .generate(findTypes().values(), benchmarkDir);
+
+        assertThat(written, containsInAnyOrder(path("PointMarshallingBenchmark"), path("ShapeMarshallingBenchmark"),
+                path("PathMarshallingBenchmark"), path("ReadingsMarshallingBenchmark"),
+                path("RecentReadingsMarshallingBenchmark"), path("IdlRandomValues")));
+    }
+
+    @Test
+    public void benchmarkUsesHelperAndSettings() throws Exception {
+        File benchmarkDir = new File(root, "benchmarks");
+        new MarshallingBenchmarkGenerator(generatedDir, 7, 3).generate(findTypes().values(), benchmarkDir);
+
+        String benchmark = FileUtils.fileRead(new File(benchmarkDir, path("PathMarshallingBenchmark")));
+        assertThat(benchmark, containsString("package demo;"));
+        assertThat(benchmark, containsString("public class PathMarshallingBenchmark"));
+        assertThat(benchmark, containsString("demo.PathHelper.write("));
+        assertThat(benchmark, containsString("(demo.Point[]) IdlRandomValues.create( orb, demo.Point[].class"));
+        assertThat(benchmark, containsString("@Param(\"7\")"));
+        assertThat(benchmark, containsString("@Param(\"3\")"));
+    }
+
+    @Test
+    public void whenTypeInDefaultPackage_omitPackageDeclaration() throws Exception {
+        File benchmarkDir = new File(root, "benchmarks");
+        MarshallingBenchmarkGenerator.MarshalledType type = new MarshallingBenchmarkGenerator.MarshalledType(
+                "", "PlainHelper", "Plain", MarshallingBenchmarkGenerator.Kind.STRUCT);
+        List<String> written = new MarshallingBenchmarkGenerator(generatedDir, 42, 8)
+                .generate(Collections.singletonList(type), benchmarkDir);
+
+        assertThat(written, hasItem("PlainMarshallingBenchmark.java"));
+        assertThat(FileUtils.fileRead(new File(benchmarkDir, "IdlRandomValues.java")).startsWith("package"),
+                equalTo(false));
+    }
+
+    @Test
+    public void whenTemplateHasWindowsLineEndings_omitPackageDeclarationForDefaultPackage() throws Exception {
+        String template = "package ${package};\r\n\r\nclass Plain {}\r\n";
+
+        assertThat(MarshallingBenchmarkGenerator.setPackage(template, ""), equalTo("class Plain {}\r\n"));
+        assertThat(MarshallingBenchmarkGenerator.setPackage(template, "demo"),
+                equalTo("package demo;\r\n\r\nclass Plain {}\r\n"));
+    }
+
+    private static String path(String className) {
+        return "demo" + File.separator + className + ".java";
+    }
+}
@@ -0,0 +1,122 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+/**
+ * Tests for the thread-confined capture of the standard streams.
+ */
+public class OutputCaptureTestCase {
+
+    private PrintStream savedOut;
+    private PrintStream savedErr;
+    private ByteArrayOutputStream console = new ByteArrayOutputStream();
+
+    @Before
+    public void setUp() {
+        savedOut = System.out;
+        savedErr = System.err;
+        System.setOut(new PrintStream(console, true));
+    }
+
+    @After
+    public void tearDown() {
+        System.setOut(savedOut);
+        System.setErr(savedErr);
+    }
+
+    @Test
+    public void whileCapturing_outputGoesToBuffers() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+        OutputCapture capture = OutputCapture.start(out, err);
+        System.out.print("to out");
+        System.err.print("to err");
+        capture.stop();
+
+        assertThat(out.toString(), equalTo("to out"));
+        assertThat(err.toString(), equalTo("to err"));
+    }
+
+    @Test
+    public void afterCapturing_outputGoesToOriginalStream() {
+        OutputCapture capture = OutputCapture.start(new ByteArrayOutputStream(), new ByteArrayOutputStream());
+        capture.stop();
+        System.out.print("after");
+
+        assertThat(console.toString(), equalTo("after"));
+    }
+
+    @Test
+    public void whenCapturingOnDifferentThreads_eachSeesOnlyItsOwnOutput() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        CapturingThread first = new CapturingThread("first", started);
+        CapturingThread second = new CapturingThread("second", started);
+
+        first.start();
+        second.start();
+        first.join();
+        second.join();
+
+        assertThat(first.out.toString(), containsString("first"));
+        assertThat(first.out.toString(), not(containsString("second")));
+        assertThat(second.out.toString(), containsString("second"));
+        assertThat(second.out.toString(), not(containsString("first")));
+        assertThat(console.toString(), equalTo(""));
+    }
+
+    private static class CapturingThread extends Thread {
+        private final String marker;
+        private final CountDownLatch started;
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        CapturingThread(String marker, CountDownLatch started) {
+            this.marker = marker;
+            this.started = started;
+        }
+
+        @Override
+        public void run() {
+            OutputCapture capture = OutputCapture.start(out, new ByteArrayOutputStream());
+            try {
+                started.countDown();
+                started.await();
+                for (int i = 0; i < 100; i++)
+                    System.out.println(marker);
+            } catch (InterruptedException ignored) {
+            } finally {
+                capture.stop();
+            }
+        }
+    }
+}
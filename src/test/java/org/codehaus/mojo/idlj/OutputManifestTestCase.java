@@ -0,0 +1,137 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+
+/**
+ * Tests for the record of files generated from each IDL file.
+ */
+public class OutputManifestTestCase extends TempDirectoryTestBase {
+
+    private File sourceDir;
+    private File manifestFile;
+
+    @Before
+    public void setUp() throws Exception {
+        File root = createTempDirectory("manifest");
+        sourceDir = new File(root, "idl");
+        manifestFile = new File(root, "outputs.manifest");
+
+        FileUtils.forceMkdir(new File(sourceDir, "sub"));
+        FileUtils.fileWrite(new File(sourceDir, "a.idl"), "UTF-8", "module A {};\n");
+        FileUtils.fileWrite(new File(sourceDir, "sub/b.idl"), "UTF-8", "module B {};\n");
+    }
+
+    @Test
+    public void whenNoManifestSaved_reportNoOutputs() throws Exception {
+        assertThat(OutputManifest.load(manifestFile).getAllOutputs(), empty());
+    }
+
+    @Test
+    public void whenManifestSaved_reloadRecordedOutputs() throws Exception {
+        OutputManifest manifest = new OutputManifest();
+        manifest.record("a.idl", Arrays.asList("A/One.java", "A/Two.java"));
+        manifest.record("sub/b.idl", Arrays.asList("B/Three.java"));
+        manifest.save(manifestFile);
+
+        assertThat(OutputManifest.load(manifestFile).getAllOutputs(),
+                   contains("A/One.java", "A/Two.java", "B/Three.java"));
+    }
+
+    @Test
+    public void whenFileRecompiled_replacePreviousOutputs() throws Exception {
+        OutputManifest manifest = new OutputManifest();
+        manifest.record("a.idl", Arrays.asList("A/One.java", "A/Two.java"));
+        manifest.record("a.idl", Arrays.asList("A/Renamed.java"));
+
+        assertThat(manifest.getAllOutputs(), contains("A/Renamed.java"));
+    }
+
+    @Test
+    public void whenSourceDeleted_forgetItsOutputs() throws Exception {
+        OutputManifest manifest = new OutputManifest();
+        manifest.record("a.idl", Arrays.asList("A/One.java"));
+        manifest.record("sub/b.idl", Arrays.asList("B/Three.java"));
+        new File(sourceDir, "sub/b.idl").delete();
+
+        manifest.retainExistingSources(sourceDir);
+
+        assertThat(manifest.getAllOutputs(), contains("A/One.java"));
+    }
+
+    @Test
+    public void whenFileOfBatchChanged_recompileRestOfBatch() throws Exception {
+        FileUtils.fileWrite(new File(sourceDir, "c.idl"), "UTF-8", "module C {};\n");
+        OutputManifest manifest = new OutputManifest();
+        manifest.recordBatch(Arrays.asList("a.idl", "sub/b.idl"), Arrays.asList("A/One.java", "B/Three.java"));
+        manifest.record("c.idl", Arrays.asList("C/Four.java"));
+
+        assertThat(manifest.getBatchMatesToRecompile(Arrays.asList("a.idl"), sourceDir), contains("sub/b.idl"));
+    }
+
+    @Test
+    public void whenFileOfBatchDeleted_recompileRestOfBatch() throws Exception {
+        OutputManifest manifest = new OutputManifest();
+        manifest.recordBatch(Arrays.asList("a.idl", "sub/b.idl"), Arrays.asList("A/One.java", "B/Three.java"));
+        new File(sourceDir, "sub/b.idl").delete();
+
+        assertThat(manifest.getBatchMatesToRecompile(Collections.<String>emptyList(), sourceDir), contains("a.idl"));
+    }
+
+    @Test
+    public void whenBatchUnchanged_recompileNothing() throws Exception {
+        OutputManifest manifest = new OutputManifest();
+        manifest.recordBatch(Arrays.asList("a.idl", "sub/b.idl"), Arrays.asList("A/One.java", "B/Three.java"));
+
+        assertThat(manifest.getBatchMatesToRecompile(Collections.<String>emptyList(), sourceDir), empty());
+    }
+
+    @Test
+    public void whenManifestSaved_reloadBatches() throws Exception {
+        OutputManifest manifest = new OutputManifest();
+        manifest.recordBatch(Arrays.asList("a.idl", "sub/b.idl"), Arrays.asList("A/One.java", "B/Three.java"));
+        manifest.save(manifestFile);
+
+        OutputManifest reloaded = OutputManifest.load(manifestFile);
+        assertThat(reloaded.getAllOutputs(), contains("A/One.java", "B/Three.java"));
+        assertThat(reloaded.getBatchMatesToRecompile(Arrays.asList("sub/b.idl"), sourceDir), contains("a.idl"));
+    }
+
+    @Test
+    public void whenFileOfBatchRecompiledAlone_doNotRecompileItForItsFormerBatch() throws Exception {
+        OutputManifest manifest = new OutputManifest();
+        manifest.recordBatch(Arrays.asList("a.idl", "sub/b.idl"), Arrays.asList("A/One.java", "B/Three.java"));
+        manifest.record("a.idl", Arrays.asList("A/One.java"));
+        manifest.record("sub/b.idl", Arrays.asList("B/Three.java"));
+
+        assertThat(manifest.getBatchMatesToRecompile(Arrays.asList("a.idl"), sourceDir), empty());
+    }
+}
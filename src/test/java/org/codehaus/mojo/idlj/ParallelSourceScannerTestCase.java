@@ -0,0 +1,117 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * Tests for the selection of source files.
+ */
+public class ParallelSourceScannerTestCase extends TempDirectoryTestBase {
+
+    private File sourceDir;
+
+    @Before
+    public void setUp() throws Exception {
+        sourceDir = createTempDirectory("scan");
+        for (String path : Arrays.asList("a.idl", "b.txt", "sub/c.idl", "sub/deep/d.idl", "skip/e.idl", ".svn/f.idl"))
+            createFile(path);
+    }
+
+    private void createFile(String path) throws Exception {
+        File file = new File(sourceDir, path);
+        FileUtils.forceMkdir(file.getParentFile());
+        FileUtils.fileWrite(file, "UTF-8", "module M {};\n");
+    }
+
+    private Set<File> scan(Set<String> includes, Set<String> excludes) throws Exception {
+        return new ParallelSourceScanner(includes, excludes, 4).getIncludedSources(sourceDir, null);
+    }
+
+    private File source(String path) {
+        return new File(sourceDir, path);
+    }
+
+    private static Set<String> patterns(String... patterns) {
+        return new HashSet<>(Arrays.asList(patterns));
+    }
+
+    @Test
+    public void whenIncludingAllIdlFiles_selectIdlFilesAtAnyDepth() throws Exception {
+        assertThat(scan(patterns("**/*.idl"), Collections.<String>emptySet()),
+                   containsInAnyOrder(source("a.idl"), source("sub/c.idl"), source("sub/deep/d.idl"),
+                                      source("skip/e.idl")));
+    }
+
+    @Test
+    public void whenScanningSequentially_selectSameFiles() throws Exception {
+        Set<File> selected = new ParallelSourceScanner(patterns("**/*.idl"), Collections.<String>emptySet(), 1)
+                .getIncludedSources(sourceDir, null);
+
+        assertThat(selected, equalTo(scan(patterns("**/*.idl"), Collections.<String>emptySet())));
+    }
+
+    @Test
+    public void whenScanningWithSameParallelism_shareOnePool() throws Exception {
+        ForkJoinPool pool = ParallelSourceScanner.getPool(3);
+
+        assertThat(ParallelSourceScanner.getPool(3), sameInstance(pool));
+        assertThat(pool.getParallelism(), equalTo(3));
+        assertThat(ParallelSourceScanner.getPool(2), not(sameInstance(pool)));
+    }
+
+    @Test
+    public void whenExcludingDirectory_skipItsContents() throws Exception {
+        assertThat(scan(patterns("**/*.idl"), patterns("skip/", "**/deep/**")),
+                   containsInAnyOrder(source("a.idl"), source("sub/c.idl")));
+    }
+
+    @Test
+    public void whenPatternHasSingleLevelWildcards_matchOnlyThatLevel() throws Exception {
+        assertThat(scan(patterns("*/?.idl"), Collections.<String>emptySet()),
+                   containsInAnyOrder(source("sub/c.idl"), source("skip/e.idl")));
+    }
+
+    @Test
+    public void whenPatternHasInnerDoubleWildcard_matchAnyNumberOfDirectories() throws Exception {
+        assertThat(scan(patterns("sub/**/*.idl"), Collections.<String>emptySet()),
+                   containsInAnyOrder(source("sub/c.idl"), source("sub/deep/d.idl")));
+    }
+
+    @Test
+    public void whenNoIncludes_selectAllFiles() throws Exception {
+        assertThat(scan(Collections.<String>emptySet(), patterns("**/*.idl")), containsInAnyOrder(source("b.txt")));
+    }
+}
@@ -0,0 +1,249 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import com.sun.tools.corba.ee.idl.toJavaPortable.Compile;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URLClassLoader;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+/**
+ * Tests for the rewriting of the operation dispatch of generated skeletons.
+ */
+public class SkeletonDispatchRewriterTestCase extends TempDirectoryTestBase {
+
+    private static final String BAD_OPERATION =
+            "throw new org.omg.CORBA.BAD_OPERATION (0, org.omg.CORBA.CompletionStatus.COMPLETED_MAYBE);\n";
+
+    private static final String INVOKE =
+            "  public org.omg.CORBA.portable.OutputStream _invoke (String $method,\n" +
+            "                                org.omg.CORBA.portable.InputStream in,\n" +
+            "                                org.omg.CORBA.portable.ResponseHandler $rh)\n" +
+            "  {\n" +
+            "    org.omg.CORBA.portable.OutputStream out = null;\n" +
+            "%s" +
+            "    if (__method == null)\n" +
+            "      " + BAD_OPERATION +
+            "\n" +
+            "    switch (__method.intValue ())\n" +
+            "    {\n" +
+            "       case 0:  // N/I/ping\n" +
+            "       {\n" +
+            "         this.ping ();\n" +
+            "         out = $rh.createReply();\n" +
+            "         break;\n" +
+            "       }\n" +
+            "\n" +
+            "       default:\n" +
+            "         " + BAD_OPERATION +
+            "    }\n" +
+            "\n" +
+            "    return out;\n" +
+            "  } // _invoke\n";
+
+    private static final String GLASSFISH_SKELETON =
+            "public abstract class IPOA extends org.omg.PortableServer.Servant\n" +
+            "{\n" +
+            "  private static java.util.Map<String,Integer> _methods = new java.util.HashMap<String,Integer> ();\n" +
+            "  static\n" +
+            "  {\n" +
+            "    _methods.put (\"ping\", 0);\n" +
+            "    _methods.put (\"Aa\", 1);\n" +
+            "    _methods.put (\"BB\", 2);\n" +
+            "  }\n" +
+            "\n" +
+            String.format(INVOKE, "    java.lang.Integer __method = _methods.get($method);\n") +
+            "}\n";
+
+    private static final String JDK_SKELETON =
+            "public abstract class IPOA extends org.omg.PortableServer.Servant\n" +
+            "{\n" +
+            "  private static java.util.Hashtable _methods = new java.util.Hashtable ();\n" +
+            "  static\n" +
+            "  {\n" +
+            "    _methods.put (\"ping\", new java.lang.Integer (0));\n" +
+            "  }\n" +
+            "\n" +
+            String.format(INVOKE,
+                          "    java.lang.Integer __method = (java.lang.Integer)_methods.get ($method);\n") +
+            "}\n";
+
+    private static final String GLASSFISH_IDL = "module N { interface I { void ping(); long Aa(in long x); void BB(); }; };";
+
+    /**
+     * A servant for the generated skeleton, which reports the operation to which a request was dispatched, or the
+     * exception thrown for it.
+     */
+    private static final String DISPATCHER =
+            "package N;\n" +
+            "public class Dispatcher extends IPOA {\n" +
+            "    private String called;\n" +
+            "    public void ping() { called = \"ping\"; }\n" +
+            "    public int Aa(int x) { called = \"Aa \" + x; return x; }\n" +
+            "    public void BB() { called = \"BB\"; }\n" +
+            "    public static String dispatch(String operation) {\n" +
+            "        Dispatcher servant = new Dispatcher();\n" +
+            "        try {\n" +
+            "            servant._invoke(operation, new Input(), new Replies());\n" +
+            "            return servant.called;\n" +
+            "        } catch (RuntimeException e) {\n" +
+            "            return e.getClass().getSimpleName();\n" +
+            "        }\n" +
+            "    }\n" +
+            "    static class Input extends org.omg.CORBA.portable.InputStream {\n" +
+            "        public int read() { return -1; }\n" +
+            "        public int read_long() { return 7; }\n" +
+            "        public void read_long_array(int[] value, int offset, int length) {}\n" +
+            "        public org.omg.CORBA.Object read_Object(Class type) { return null; }\n" +
+            "    }\n" +
+            "    static class Output extends org.omg.CORBA.portable.OutputStream {\n" +
+            "        public void write(int b) {}\n" +
+            "        public org.omg.CORBA.portable.InputStream create_input_stream() { return new Input(); }\n" +
+            "        public void write_long(int value) {}\n" +
+            "        public void write_long_array(int[] value, int offset, int length) {}\n" +
+            "        public void write_Object(org.omg.CORBA.Object value) {}\n" +
+            "    }\n" +
+            "    static class Replies implements org.omg.CORBA.portable.ResponseHandler {\n" +
+            "        public org.omg.CORBA.portable.OutputStream createReply() { return new Output(); }\n" +
+            "        public org.omg.CORBA.portable.OutputStream createExceptionReply() { return new Output(); }\n" +
+            "    }\n" +
+            "}\n";
+
+    private SkeletonDispatchRewriter rewriter = new SkeletonDispatchRewriter();
+
+    @Test
+    public void replaceMethodTableWithIndexMethod() {
+        String rewritten = rewriter.rewrite(GLASSFISH_SKELETON);
+
+        assertThat(rewritten, not(containsString("_methods")));
+        assertThat(rewritten, containsString("    switch (__method ($method))\n    {\n       case 0:  // N/I/ping\n"));
+    }
+
+    @Test
+    public void dispatchOnHashCodeOfOperationName() {
+        String rewritten = rewriter.rewrite(GLASSFISH_SKELETON);
+
+        assertThat(rewritten, containsString(
+                "      case " + "ping".hashCode() + ":\n" +
+                "        if ($method.equals (\"ping\"))\n" +
+                "          return 0;\n" +
+                "        break;\n"));
+    }
+
+    @Test
+    public void whenOperationNamesShareHashCode_compareEach() {
+        String rewritten = rewriter.rewrite(GLASSFISH_SKELETON);
+
+        assertThat(rewritten, containsString(
+                "      case " + "Aa".hashCode() + ":\n" +
+                "        if ($method.equals (\"Aa\"))\n" +
+                "          return 1;\n" +
+                "        if ($method.equals (\"BB\"))\n" +
+                "          return 2;\n" +
+                "        break;\n"));
+    }
+
+    @Test
+    public void whenOperationUnknown_reachGeneratedDefaultCase() {
+        String rewritten = rewriter.rewrite(GLASSFISH_SKELETON);
+
+        assertThat(rewritten, containsString("    }\n    return -1;\n  }\n"));
+        assertThat(rewritten, containsString("       default:\n         " + BAD_OPERATION));
+    }
+
+    @Test
+    public void rewriteJdkSkeleton() {
+        String rewritten = rewriter.rewrite(JDK_SKELETON);
+
+        assertThat(rewritten, not(containsString("java.util.Hashtable")));
+        assertThat(rewritten, containsString("          return 0;\n"));
+        assertThat(rewritten, containsString("    switch (__method ($method))\n"));
+    }
+
+    @Test
+    public void whenGlassfishSkeletonGivenNullOperation_reachGeneratedDefaultCase() {
+        String rewritten = rewriter.rewrite(GLASSFISH_SKELETON);
+
+        assertThat(rewritten, containsString("    if ($method == null)\n      return -1;\n"));
+    }
+
+    @Test
+    public void whenJdkSkeletonGivenNullOperation_throwNullPointerException() {
+        String rewritten = rewriter.rewrite(JDK_SKELETON);
+
+        assertThat(rewritten, not(containsString("$method == null")));
+        assertThat(rewritten, containsString("    switch ($method.hashCode ())\n"));
+    }
+
+    @Test
+    public void whenAlreadyRewritten_leaveUnchanged() {
+        String rewritten = rewriter.rewrite(GLASSFISH_SKELETON);
+
+        assertThat(rewriter.rewrite(rewritten), equalTo(rewritten));
+    }
+
+    @Test
+    public void whenDefaultCaseMissing_leaveUnchanged() {
+        String skeleton = GLASSFISH_SKELETON.replace("       default:\n         " + BAD_OPERATION, "");
+
+        assertThat(rewriter.rewrite(skeleton), equalTo(skeleton));
+    }
+
+    @Test
+    public void whenGlassfishSkeletonRewritten_dispatchAsGenerated() throws Exception {
+        File root = createTempDirectory("glassfish-skeleton");
+        File originalClasses = compileGlassfishSkeleton(root, "original", false);
+        File rewrittenClasses = compileGlassfishSkeleton(root, "rewritten", true);
+
+        assertThat(dispatch(rewrittenClasses, "Aa"), equalTo("Aa 7"));
+        assertThat(dispatch(rewrittenClasses, "C#"), equalTo("BAD_OPERATION"));
+        for (String operation : new String[]{"ping", "Aa", "BB", "C#", "unknown", "", null})
+            assertThat(dispatch(rewrittenClasses, operation), equalTo(dispatch(originalClasses, operation)));
+    }
+
+    private File compileGlassfishSkeleton(File root, String name, boolean rewrite) throws Exception {
+        File idlFile = new File(root, "i.idl");
+        FileUtils.fileWrite(idlFile, "UTF-8", GLASSFISH_IDL);
+        File sourceDir = new File(root, name);
+        CompilerRegistry.run(Compile.class, "main", "-fall", "-td", sourceDir.getPath(), idlFile.getPath());
+        FileUtils.fileWrite(new File(sourceDir, "N/Dispatcher.java"), "UTF-8", DISPATCHER);
+        if (rewrite)
+            assertThat(GeneratedFiles.rewrite(sourceDir, Collections.<SourceRewriter>singletonList(rewriter)),
+                       equalTo(1));
+
+        File classesDir = new File(root, name + "-classes");
+        GeneratedCodeCompiler.compile(sourceDir, classesDir);
+        return classesDir;
+    }
+
+    private static String dispatch(File classesDir, String operation) throws Exception {
+        try (URLClassLoader loader = GeneratedCodeCompiler.createClassLoader(classesDir)) {
+            return (String) loader.loadClass("N.Dispatcher").getMethod("dispatch", String.class).invoke(null, operation);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Tests for the record of the state of IDL files.
+ */
+public class StalenessIndexTestCase extends TempDirectoryTestBase {
+
+    private File root;
+    private File idlFile;
+    private File indexFile;
+
+    @Before
+    public void setUp() throws Exception {
+        root = createTempDirectory("index");
+        idlFile = new File(root, "a.idl");
+        indexFile = new File(root, "staleness.index");
+
+        FileUtils.fileWrite(idlFile, "UTF-8", "module A {};\n");
+        try (StalenessIndex index = StalenessIndex.open(indexFile)) {
+            index.record(idlFile);
+        }
+    }
+
+    private boolean isUnchanged(File file) throws Exception {
+        try (StalenessIndex index = StalenessIndex.open(indexFile)) {
+            return index.isUnchanged(file);
+        }
+    }
+
+    private boolean isStale(File file) throws Exception {
+        try (StalenessIndex index = StalenessIndex.open(indexFile)) {
+            return index.isStale(file, 0);
+        }
+    }
+
+    @Test
+    public void whenFileNotRecorded_reportChanged() throws Exception {
+        indexFile.delete();
+
+        assertThat(isUnchanged(idlFile), is(false));
+        assertThat(isStale(idlFile), is(true));
+    }
+
+    @Test
+    public void whenFileUntouched_reportUnchanged() throws Exception {
+        assertThat(isUnchanged(idlFile), is(true));
+        assertThat(isStale(idlFile), is(false));
+    }
+
+    @Test
+    public void whenOnlyModificationTimeChanges_reportUnchangedContents() throws Exception {
+        idlFile.setLastModified(idlFile.lastModified() + 10000);
+
+        assertThat(isStale(idlFile), is(true));
+        assertThat(isUnchanged(idlFile), is(true));
+        assertThat(isStale(idlFile), is(false));
+    }
+
+    @Test
+    public void whenContentsChangeWithSameSize_reportChanged() throws Exception {
+        long lastModified = idlFile.lastModified();
+        FileUtils.fileWrite(idlFile, "UTF-8", "module B {};\n");
+        idlFile.setLastModified(lastModified + 10000);
+
+        assertThat(isUnchanged(idlFile), is(false));
+    }
+
+    @Test
+    public void whenSizeChanges_reportChanged() throws Exception {
+        FileUtils.fileWrite(idlFile, "UTF-8", "module Changed {};\n");
+
+        assertThat(isUnchanged(idlFile), is(false));
+    }
+
+    @Test
+    public void whenFileChangesAfterSnapshot_recordStateFromSnapshot() throws Exception {
+        StalenessIndex.Snapshot snapshot = StalenessIndex.snapshot(idlFile);
+        FileUtils.fileWrite(idlFile, "UTF-8", "module Changed {};\n");
+        idlFile.setLastModified(snapshot.getFile().lastModified() + 10000);
+        try (StalenessIndex index = StalenessIndex.open(indexFile)) {
+            index.record(snapshot);
+        }
+
+        assertThat(isStale(idlFile), is(true));
+        assertThat(isUnchanged(idlFile), is(false));
+    }
+
+    @Test
+    public void whenManyFilesRecorded_growIndex() throws Exception {
+        File directory = new File(root, "many");
+        FileUtils.forceMkdir(directory);
+        try (StalenessIndex index = StalenessIndex.open(indexFile)) {
+            for (int i = 0; i < 2000; i++) {
+                File file = new File(directory, "file_with_a_fairly_long_name_" + i + ".idl");
+                FileUtils.fileWrite(file, "UTF-8", "module M" + i + " {};\n");
+                index.record(file);
+            }
+        }
+
+        assertThat(isUnchanged(new File(directory, "file_with_a_fairly_long_name_1999.idl")), is(true));
+        assertThat(isUnchanged(idlFile), is(true));
+    }
+
+    @Test
+    public void whenRecordedFileDeleted_forgetIt() throws Exception {
+        File other = new File(root, "b.idl");
+        FileUtils.fileWrite(other, "UTF-8", "module B {};\n");
+        try (StalenessIndex index = StalenessIndex.open(indexFile)) {
+            index.record(other);
+        }
+        long lastModified = other.lastModified();
+        other.delete();
+
+        try (StalenessIndex index = StalenessIndex.open(indexFile)) {
+            assertThat(index.retainExistingFiles(), equalTo(1));
+        }
+        FileUtils.fileWrite(other, "UTF-8", "module B {};\n");
+        other.setLastModified(lastModified);
+
+        assertThat(isUnchanged(other), is(false));
+        assertThat(isUnchanged(idlFile), is(true));
+    }
+
+    @Test
+    public void whenFewRecordedFilesDeleted_keepTheirRecords() throws Exception {
+        List<File> files = recordFiles(4);
+        files.get(0).delete();
+
+        try (StalenessIndex index = StalenessIndex.open(indexFile)) {
+            int dataSize = index.getDataSize();
+            index.retainExistingFiles();
+            assertThat(index.getDataSize(), equalTo(dataSize));
+        }
+        assertThat(isUnchanged(files.get(1)), is(true));
+    }
+
+    @Test
+    public void whenMostRecordedFilesDeleted_compactIndex() throws Exception {
+        List<File> files = recordFiles(10);
+        int dataSize;
+        try (StalenessIndex index = StalenessIndex.open(indexFile)) {
+            dataSize = index.getDataSize();
+        }
+        for (File file : files.subList(0, 8))
+            file.delete();
+
+        try (StalenessIndex index = StalenessIndex.open(indexFile)) {
+            assertThat(index.retainExistingFiles(), equalTo(8));
+            assertThat(index.getDataSize() < dataSize / 2, is(true));
+        }
+        assertThat(isUnchanged(idlFile), is(true));
+        assertThat(isUnchanged(files.get(8)), is(true));
+        assertThat(isUnchanged(files.get(9)), is(true));
+        assertThat(isStale(files.get(9)), is(false));
+    }
+
+    @Test
+    public void afterCompaction_recordNewFiles() throws Exception {
+        List<File> files = recordFiles(10);
+        for (File file : files.subList(0, 9))
+            file.delete();
+        try (StalenessIndex index = StalenessIndex.open(indexFile)) {
+            index.retainExistingFiles();
+        }
+
+        File added = new File(root, "added.idl");
+        FileUtils.fileWrite(added, "UTF-8", "module Added {};\n");
+        try (StalenessIndex index = StalenessIndex.open(indexFile)) {
+            index.record(added);
+        }
+
+        assertThat(isUnchanged(added), is(true));
+        assertThat(isUnchanged(files.get(9)), is(true));
+        assertThat(isUnchanged(idlFile), is(true));
+    }
+
+    private List<File> recordFiles(int count) throws Exception {
+        List<File> files = new ArrayList<>();
+        try (StalenessIndex index = StalenessIndex.open(indexFile)) {
+            for (int i = 0; i < count; i++) {
+                File file = new File(root, "recorded_" + i + ".idl");
+                FileUtils.fileWrite(file, "UTF-8", "module R" + i + " {};\n");
+                index.record(file);
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    @Test
+    public void whenIndexFileCorrupt_reportChanged() throws Exception {
+        FileUtils.fileWrite(indexFile, "UTF-8", "not an index");
+
+        assertThat(isUnchanged(idlFile), is(false));
+    }
+
+    @Test
+    public void whenTimestampCopiesPresent_migrateAndDeleteThem() throws Exception {
+        File sourceDir = new File(root, "idl");
+        File timestampDir = new File(root, "timestamps");
+        FileUtils.forceMkdir(new File(sourceDir, "sub"));
+        FileUtils.forceMkdir(new File(timestampDir, "sub"));
+        File source = new File(sourceDir, "sub/b.idl");
+        File copy = new File(timestampDir, "sub/b.idl");
+        FileUtils.fileWrite(source, "UTF-8", "module B {};\n");
+        FileUtils.copyFile(source, copy);
+        copy.setLastModified(source.lastModified());
+        indexFile.delete();
+
+        try (StalenessIndex index = StalenessIndex.open(indexFile)) {
+            assertThat(index.migrate(timestampDir, sourceDir, new File(timestampDir, "contents.digests")), equalTo(1));
+        }
+
+        assertThat(isStale(source), is(false));
+        assertThat(isUnchanged(source), is(true));
+        assertThat(copy.exists(), is(false));
+    }
+}
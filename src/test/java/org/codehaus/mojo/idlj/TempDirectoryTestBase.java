@@ -0,0 +1,53 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.After;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A base for tests which need directories of their own. The directories are created in <code>target</code> and
+ * deleted after each test.
+ */
+public abstract class TempDirectoryTestBase {
+
+    private final List<File> tempDirectories = new ArrayList<>();
+
+    final File createTempDirectory(String prefix) throws IOException {
+        File target = new File("target");
+        target.mkdirs();
+        File directory = Files.createTempDirectory(target.toPath(), prefix).toFile();
+        tempDirectories.add(directory);
+        return directory;
+    }
+
+    @After
+    public void deleteTempDirectories() throws IOException {
+        for (File directory : tempDirectories)
+            FileUtils.deleteDirectory(directory);
+        tempDirectories.clear();
+    }
+}
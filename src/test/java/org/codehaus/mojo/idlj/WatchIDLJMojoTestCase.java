@@ -0,0 +1,198 @@
+package org.codehaus.mojo.idlj;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.Watchable;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Tests for the goal which processes the IDL files again whenever they change.
+ */
+public class WatchIDLJMojoTestCase extends IDLJTestBase {
+
+    private static final int QUIET_MS = 500;
+
+    private File sourceDir;
+    private WatchService watcher;
+    private WatchIDLJMojo watchMojo;
+
+    @Override
+    IDLJMojo createMojo(AbstractIDLJMojo.DependenciesFacade dependenciesFacade) {
+        return new WatchIDLJMojo(dependenciesFacade);
+    }
+
+    @Before
+    public void setUpWatcher() throws Exception {
+        sourceDir = createTempDirectory("watched");
+        useSourceDirectory(sourceDir.getPath());
+        defineWatchQuietMs(QUIET_MS);
+        watchMojo = (WatchIDLJMojo) mojo;
+        watcher = FileSystems.getDefault().newWatchService();
+        watchMojo.watch(watcher);
+    }
+
+    @After
+    public void closeWatcher() throws IOException {
+        watcher.close();
+    }
+
+    private boolean processNextChanges() throws Exception {
+        WatchKey key = watcher.poll(10, TimeUnit.SECONDS);
+        assertThat(key, notNullValue());
+        return watchMojo.processChanges(watcher, key);
+    }
+
+    private void write(File file) throws IOException {
+        FileUtils.fileWrite(file, "UTF-8", "module M {};\n");
+    }
+
+    @Test
+    public void whenBurstOfChanges_regenerateOnce() throws Exception {
+        Thread writer = new Thread() {
+            public void run() {
+                try {
+                    for (String name : new String[]{"a.idl", "b.idl", "c.idl"}) {
+                        write(new File(sourceDir, name));
+                        Thread.sleep(QUIET_MS / 5);
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        writer.start();
+
+        assertThat(processNextChanges(), equalTo(true));
+        writer.join();
+        assertThat(getCompiledFiles(), hasSize(1));
+        assertThat(watcher.poll(QUIET_MS, TimeUnit.MILLISECONDS), nullValue());
+    }
+
+    @Test
+    public void whenOnlyEditorFilesChange_doNotRegenerate() throws Exception {
+        write(new File(sourceDir, ".a.idl.swp"));
+        write(new File(sourceDir, "a.idl~"));
+
+        assertThat(processNextChanges(), equalTo(false));
+        assertThat(getCompiledFiles(), empty());
+    }
+
+    @Test
+    public void whenSubdirectoryCreated_watchItsFiles() throws Exception {
+        File subdirectory = new File(sourceDir, "sub");
+        subdirectory.mkdir();
+        processNextChanges();
+        getCompiledFiles().clear();
+
+        write(new File(subdirectory, "a.idl"));
+
+        assertThat(processNextChanges(), equalTo(true));
+        assertThat(getCompiledFiles(), hasSize(1));
+    }
+
+    @Test
+    public void whenRegenerationFails_logErrorAndKeepWatching() throws Exception {
+        setFailOnError();
+        TestIdlCompiler.defineErrorMessage("(line 30): oops");
+        write(new File(sourceDir, "a.idl"));
+        assertThat(processNextChanges(), equalTo(true));
+        assertThat(getLoggedErrors(), not(empty()));
+
+        TestIdlCompiler.defineErrorMessage(null);
+        getCompiledFiles().clear();
+        write(new File(sourceDir, "b.idl"));
+
+        assertThat(processNextChanges(), equalTo(true));
+        assertThat(getCompiledFiles(), hasSize(1));
+    }
+
+    @Test
+    public void whenEventsComeFromUnknownDirectory_regenerate() throws Exception {
+        Path other = createTempDirectory("unknown").toPath();
+        other.register(watcher, StandardWatchEventKinds.ENTRY_CREATE);
+        write(new File(other.toFile(), ".hidden"));
+
+        assertThat(processNextChanges(), equalTo(true));
+    }
+
+    @Test
+    public void whenEventsOverflow_reportChange() throws Exception {
+        assertThat(watchMojo.collectChanges(watcher, new OverflowKey()), equalTo(true));
+    }
+
+    /**
+     * A key whose events were lost.
+     */
+    private static class OverflowKey implements WatchKey {
+        public boolean isValid() {
+            return true;
+        }
+
+        public List<WatchEvent<?>> pollEvents() {
+            return Collections.<WatchEvent<?>>singletonList(new WatchEvent<Object>() {
+                public Kind<Object> kind() {
+                    return StandardWatchEventKinds.OVERFLOW;
+                }
+
+                public int count() {
+                    return 1;
+                }
+
+                public Object context() {
+                    return null;
+                }
+            });
+        }
+
+        public boolean reset() {
+            return true;
+        }
+
+        public void cancel() {
+        }
+
+        public Watchable watchable() {
+            return null;
+        }
+    }
+}